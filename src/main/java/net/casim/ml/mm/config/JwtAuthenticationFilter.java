@@ -1,5 +1,7 @@
 package net.casim.ml.mm.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -8,8 +10,10 @@ import lombok.NonNull;
 import net.casim.ml.mm.data.User;
 import net.casim.ml.mm.service.JwtService;
 import net.casim.ml.mm.service.UserService;
+import net.casim.ml.mm.service.UserTokenVersionCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.GrantedAuthority;
@@ -23,22 +27,41 @@ import org.springframework.web.servlet.HandlerExceptionResolver;
 import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+/**
+ * Authenticates requests carrying a bearer token. The time spent checking a token is published as
+ * {@code jwt.filter}, tagged with whether it authenticated the request, was rejected by the user check, or was
+ * invalid.
+ */
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final HandlerExceptionResolver handlerExceptionResolver;
     private final JwtService jwtService;
     private final UserService userService;
+    private final UserTokenVersionCache tokenVersionCache;
+    private final boolean stateless;
+    private final Timer authenticatedTimer;
+    private final Timer rejectedTimer;
+    private final Timer invalidTimer;
 
     public JwtAuthenticationFilter(
             JwtService jwtService,
             HandlerExceptionResolver handlerExceptionResolver,
-            @Lazy UserService userService
+            @Lazy UserService userService,
+            UserTokenVersionCache tokenVersionCache,
+            @Value("${security.jwt.stateless:false}") boolean stateless,
+            MeterRegistry meterRegistry
     ) {
         this.jwtService = jwtService;
         this.userService = userService;
         this.handlerExceptionResolver = handlerExceptionResolver;
+        this.tokenVersionCache = tokenVersionCache;
+        this.stateless = stateless;
+        this.authenticatedTimer = timer(meterRegistry, "authenticated");
+        this.rejectedTimer = timer(meterRegistry, "rejected");
+        this.invalidTimer = timer(meterRegistry, "invalid");
     }
 
     @Override
@@ -54,36 +77,67 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
+        long startedAt = System.nanoTime();
+        // Recorded once the token is checked, or by the exception handler if checking it failed
+        Timer outcome = invalidTimer;
         try {
             final String jwt = authHeader.substring(7);
-            final String username = jwtService.extractUsername(jwt);
+            final JwtService.VerifiedToken token = jwtService.verify(jwt);
+            final String username = token.getUsername();
+            outcome = rejectedTimer;
 
             if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                Optional<User> user = userService.getUserByUsername(username);
-
-                if (user.isPresent() && jwtService.isTokenValid(jwt, user.get())) {
-                    List<GrantedAuthority> authorities = user.get().getRoles().stream()
-                            .map(role -> {
-                                if (role.startsWith("ROLE_"))
-                                    return new SimpleGrantedAuthority(role);
-                                 else
-                                    return new SimpleGrantedAuthority("ROLE_" + role);
-
-                            })
-                            .collect(Collectors.toList());
-
-                    UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                            user.get(), null, authorities
-                    );
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
+                if (stateless) {
+                    // Authorities come from the verified claims; only the token version is checked against the user
+                    if (tokenVersionCache.isCurrent(username, token.getVersion())) {
+                        User principal = new User();
+                        principal.setUsername(username);
+                        principal.setRoles(token.getRoles());
+                        authenticate(request, principal, token.getRoles());
+                        outcome = authenticatedTimer;
+                    }
+                } else {
+                    Optional<User> user = userService.getUserByUsername(username);
+                    if (user.isPresent() && user.get().getTokenVersion() == token.getVersion()) {
+                        authenticate(request, user.get(), user.get().getRoles());
+                        outcome = authenticatedTimer;
+                    }
                 }
             }
+            outcome.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            outcome = null;
 
             filterChain.doFilter(request, response);
         } catch (Exception exception) {
+            if (outcome != null) {
+                outcome.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            }
             handlerExceptionResolver.resolveException(request, response, null, exception);
         }
     }
-}
 
+    private static Timer timer(MeterRegistry meterRegistry, String result) {
+        return Timer.builder("jwt.filter")
+                .description("Time spent checking bearer tokens")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private void authenticate(HttpServletRequest request, User principal, List<String> roles) {
+        List<GrantedAuthority> authorities = roles.stream()
+                .map(role -> {
+                    if (role.startsWith("ROLE_"))
+                        return new SimpleGrantedAuthority(role);
+                     else
+                        return new SimpleGrantedAuthority("ROLE_" + role);
+
+                })
+                .collect(Collectors.toList());
+
+        UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                principal, null, authorities
+        );
+        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        SecurityContextHolder.getContext().setAuthentication(authToken);
+    }
+}
@@ -0,0 +1,46 @@
+package net.casim.ml.mm.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Slf4j
+public class QueryCountFilter extends OncePerRequestFilter {
+
+    public static final String QUERY_COUNT_ATTRIBUTE = QueryCountFilter.class.getName() + ".queryCount";
+
+    @Value("${jpa.query-count.warn-threshold:20}")
+    private long warnThreshold;
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain
+    ) throws ServletException, IOException {
+        QueryCountInspector.reset();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            long queries = QueryCountInspector.currentCount();
+            request.setAttribute(QUERY_COUNT_ATTRIBUTE, queries);
+            if (queries > warnThreshold) {
+                log.warn("{} {} executed {} SQL statements", request.getMethod(), request.getRequestURI(), queries);
+            } else {
+                log.debug("{} {} executed {} SQL statements", request.getMethod(), request.getRequestURI(), queries);
+            }
+        }
+    }
+}
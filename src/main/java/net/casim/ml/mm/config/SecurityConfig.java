@@ -1,5 +1,7 @@
 package net.casim.ml.mm.config;
 
+import jakarta.servlet.DispatcherType;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
@@ -38,15 +40,23 @@ public class SecurityConfig {
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .headers(headers -> headers.frameOptions(HeadersConfigurer.FrameOptionsConfig::sameOrigin))
                 .authorizeHttpRequests(auth -> auth
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
                         .requestMatchers("/auth/**").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/.well-known/jwks.json").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         .requestMatchers("/h2-console/**").permitAll()
                         .requestMatchers("/swagger-ui/**", "/v3/api-docs/**", "/swagger-resources/**", "/webjars/**").permitAll()
                         .requestMatchers(HttpMethod.POST, "/models").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.POST, "/models/{modelId}/upload").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.PUT, "/models/{modelId}/upload/stream").hasRole("ADMIN")
+                        .requestMatchers("/models/{modelId}/uploads/**").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.POST, "/models/{modelId}/train").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.POST, "/models/{modelId}/predict", "/models/{modelId}/predict/batch")
+                                .hasAnyRole("USER", "ADMIN")
                         .requestMatchers(HttpMethod.DELETE, "/models/{modelId}").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.DELETE, "/models/{trainingDataId}").hasRole("ADMIN")
                         .requestMatchers("/models/{modelId}").hasAnyRole("USER", "ADMIN")
+                        .requestMatchers("/users/**").hasRole("ADMIN")
                         .anyRequest().authenticated()
                 )
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
@@ -56,8 +66,8 @@ public class SecurityConfig {
     }
 
     @Bean
-    public BCryptPasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BCryptPasswordEncoder passwordEncoder(@Value("${security.bcrypt.strength:10}") int strength) {
+        return new BCryptPasswordEncoder(strength);
     }
 
     @Bean
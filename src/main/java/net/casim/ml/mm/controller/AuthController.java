@@ -1,11 +1,15 @@
 package net.casim.ml.mm.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import net.casim.ml.mm.data.User;
 import net.casim.ml.mm.data.request.AuthRequest;
 import net.casim.ml.mm.data.request.RegisterRequest;
+import net.casim.ml.mm.exception.TooManyRequestsException;
 import net.casim.ml.mm.service.JwtService;
+import net.casim.ml.mm.service.LoginService;
 import net.casim.ml.mm.service.UserService;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -13,45 +17,45 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/auth")
 public class AuthController {
 
-    private final PasswordEncoder passwordEncoder;
+    private final LoginService loginService;
     private final JwtService jwtService;
 
     private final UserService userService;
 
-    public AuthController(PasswordEncoder passwordEncoder, JwtService jwtService, UserService userService) {
-        this.passwordEncoder = passwordEncoder;
+    public AuthController(LoginService loginService, JwtService jwtService, UserService userService) {
+        this.loginService = loginService;
         this.jwtService = jwtService;
         this.userService = userService;
     }
 
     @PostMapping("/login")
-    public ResponseEntity<Map<String, String>> authenticateUser(@Valid @RequestBody AuthRequest authRequest) {
-        Optional<User> user = userService.getUserByUsername(authRequest.getUsername());
-
-        if (user.isEmpty())
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Invalid username or password"));
-
-        if (!passwordEncoder.matches(authRequest.getPassword(), user.get().getPassword())) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Invalid username or password"));
+    public CompletableFuture<ResponseEntity<Map<String, String>>> authenticateUser(
+            @Valid @RequestBody AuthRequest authRequest, HttpServletRequest request) {
+        try {
+            return loginService.authenticate(authRequest.getUsername(), authRequest.getPassword(),
+                            request.getRemoteAddr())
+                    .thenApply(user -> user
+                            .map(u -> ResponseEntity.ok(Map.of("token", jwtService.generateToken(u))))
+                            .orElseGet(() -> ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                                    .body(Map.of("error", "Invalid username or password"))));
+        } catch (TooManyRequestsException e) {
+            long retryAfterSeconds = Math.max(1, (e.getRetryAfter().toMillis() + 999) / 1000);
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                    .body(Map.of("error", e.getMessage())));
         }
-
-        String jwtToken = jwtService.generateToken(user.get());
-
-        // Wrap token in an object instead of returning it as plain text
-        return ResponseEntity.ok(Map.of("token", jwtToken));
     }
 
 
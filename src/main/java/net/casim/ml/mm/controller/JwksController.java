@@ -0,0 +1,40 @@
+package net.casim.ml.mm.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import net.casim.ml.mm.service.JwtKeyRing;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+@Tag(name = "Token Keys", description = "Public keys for verifying issued tokens")
+@RestController
+public class JwksController {
+
+    private final JwtKeyRing keyRing;
+
+    public JwksController(JwtKeyRing keyRing) {
+        this.keyRing = keyRing;
+    }
+
+    @Operation(summary = "Get the JSON Web Key Set", description = "Public keys, by kid, that verify tokens issued by this service. Empty when tokens are signed with HS256")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Key set returned"),
+            @ApiResponse(responseCode = "304", description = "Key set unchanged")
+    })
+    @GetMapping(value = "/.well-known/jwks.json", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> getJwks(WebRequest request) {
+        String etag = "\"" + keyRing.getJwksTag() + "\"";
+        CacheControl cacheControl = CacheControl.maxAge(keyRing.getJwksMaxAge()).cachePublic();
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl).body(keyRing.getJwks());
+    }
+}
@@ -1,27 +1,45 @@
 package net.casim.ml.mm.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import net.casim.ml.mm.data.LLMModel;
+import net.casim.ml.mm.data.ModelLayer;
 import net.casim.ml.mm.data.TrainingData;
 import net.casim.ml.mm.data.request.CreateModelRequest;
-import net.casim.ml.mm.repository.ModelRepository;
-import net.casim.ml.mm.repository.TrainingDataRepository;
+import net.casim.ml.mm.data.request.InitiateUploadRequest;
+import net.casim.ml.mm.data.request.PredictionRequest;
+import net.casim.ml.mm.data.response.BatchPredictionResponse;
+import net.casim.ml.mm.data.response.ModelPage;
+import net.casim.ml.mm.data.response.PredictionResponse;
+import net.casim.ml.mm.data.response.TrainingSchedulerStats;
+import net.casim.ml.mm.data.response.UploadSessionStatus;
+import net.casim.ml.mm.exception.ResourceNotFoundException;
+import net.casim.ml.mm.service.BatchPredictionService;
+import net.casim.ml.mm.service.ChunkedUploadService;
+import net.casim.ml.mm.service.FileDownloadService;
 import net.casim.ml.mm.service.FileUploadService;
 import net.casim.ml.mm.service.ModelService;
+import net.casim.ml.mm.service.TrainingScheduler;
+import net.casim.ml.mm.training.Prediction;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.io.File;
 import java.io.IOException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Tag(name = "Model Management", description = "APIs for managing machine learning models")
@@ -31,12 +49,16 @@ public class ModelController {
 
     private final ModelService modelService;
     private final FileUploadService fileUploadService;
-    private final TrainingDataRepository trainingDataRepository;
+    private final ChunkedUploadService chunkedUploadService;
+    private final FileDownloadService fileDownloadService;
+    private final BatchPredictionService batchPredictionService;
 
-    public ModelController(ModelService modelService, FileUploadService fileUploadService, ModelRepository modelRepository, TrainingDataRepository trainingDataRepository) {
+    public ModelController(ModelService modelService, FileUploadService fileUploadService, ChunkedUploadService chunkedUploadService, FileDownloadService fileDownloadService, BatchPredictionService batchPredictionService) {
         this.modelService = modelService;
         this.fileUploadService = fileUploadService;
-        this.trainingDataRepository = trainingDataRepository;
+        this.chunkedUploadService = chunkedUploadService;
+        this.fileDownloadService = fileDownloadService;
+        this.batchPredictionService = batchPredictionService;
     }
 
     @Operation(summary = "Get all models", description = "Retrieve a list of all machine learning models")
@@ -49,6 +71,21 @@ public class ModelController {
         return modelService.getAllModels();
     }
 
+    @Operation(summary = "Get a page of models", description = "Keyset-paginated model summaries, optionally filtered by status and layer")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Model page"),
+            @ApiResponse(responseCode = "400", description = "Invalid request")
+    })
+    @GetMapping("/page")
+    public ModelPage getModelPage(
+            @RequestParam(value = "status", required = false) String status,
+            @RequestParam(value = "layer", required = false) ModelLayer layer,
+            @RequestParam(value = "after", required = false) UUID after,
+            @RequestParam(value = "limit", defaultValue = "50") int limit,
+            @RequestParam(value = "includeTotal", defaultValue = "false") boolean includeTotal) {
+        return modelService.getModelPage(status, layer, after, limit, includeTotal);
+    }
+
     @Operation(summary = "Create a new model", description = "Create a new machine learning model with the given details")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Model created"),
@@ -60,33 +97,123 @@ public class ModelController {
         return ResponseEntity.ok(model.getName() + " created successfully");
     }
 
-    @Operation(summary = "Get model by ID", description = "Retrieve a specific model by its UUID")
+    @Operation(summary = "Get model by ID", description = "Retrieve a specific model by its UUID. The model is served "
+            + "from a short-lived cache unless fresh=true")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Model"),
             @ApiResponse(responseCode = "400", description = "Invalid request")
     })
     @GetMapping("/{modelId}")
-    public ResponseEntity<LLMModel> getModelById(@PathVariable UUID modelId) {
-        LLMModel model = modelService.getModelById(modelId);
+    public ResponseEntity<LLMModel> getModelById(
+            @PathVariable UUID modelId,
+            @RequestParam(value = "fresh", defaultValue = "false") boolean fresh) {
+        LLMModel model = modelService.getModelById(modelId, fresh);
         return ResponseEntity.ok(model);
     }
 
-    @Operation(summary = "Train a model", description = "Initiate training of a specific model")
+    @Operation(summary = "Train a model", description = "Queue training of a specific model. A model trained before "
+            + "is trained only on the training data uploaded since, unless full=true")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Training started"),
-            @ApiResponse(responseCode = "400", description = "Invalid request")
+            @ApiResponse(responseCode = "202", description = "Training queued"),
+            @ApiResponse(responseCode = "200", description = "Training already queued or running"),
+            @ApiResponse(responseCode = "409", description = "No training engine supports the model's layers"),
+            @ApiResponse(responseCode = "503", description = "Training queue is full")
     })
     @PostMapping("/{modelId}/train")
     public ResponseEntity<String> trainModel(
-            @PathVariable UUID modelId) {
-        synchronized (this) {
-            if (modelService.isTraining()) {
-                return ResponseEntity.status(HttpStatus.CONFLICT)
-                        .body("Training server is busy, try again later.");
-            }
+            @PathVariable UUID modelId,
+            @RequestParam(value = "priority", defaultValue = "0") int priority,
+            @RequestParam(value = "full", defaultValue = "false") boolean full) {
+        TrainingScheduler.Submission submission;
+        try {
+            submission = modelService.trainModel(modelId, priority, full);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+        switch (submission) {
+            case ALREADY_QUEUED:
+                return ResponseEntity.ok("Training is already queued or running for this model.");
+            case QUEUE_FULL:
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .body("Training queue is full, try again later.");
+            default:
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body("Training queued successfully!");
+        }
+    }
+
+    @Operation(summary = "Predict with a model", description = "Classify text with a trained model. The model is "
+            + "loaded into memory on its first prediction and kept loaded for the following ones")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Prediction"),
+            @ApiResponse(responseCode = "404", description = "Model not found"),
+            @ApiResponse(responseCode = "409", description = "Model has not been trained")
+    })
+    @PostMapping("/{modelId}/predict")
+    public ResponseEntity<?> predict(@PathVariable UUID modelId, @Valid @RequestBody PredictionRequest request) {
+        try {
+            Prediction prediction = modelService.predict(modelId, request.getText());
+            return ResponseEntity.ok(new PredictionResponse(modelId, prediction.getLabel(), prediction.getConfidence()));
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+    }
+
+    @Operation(summary = "Predict a batch with a model", description = "Classify a JSON array of records in one call")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Predictions, in the order of the records"),
+            @ApiResponse(responseCode = "400", description = "Too many records or a record without text"),
+            @ApiResponse(responseCode = "404", description = "Model not found"),
+            @ApiResponse(responseCode = "409", description = "Model has not been trained")
+    })
+    @PostMapping(value = "/{modelId}/predict/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> predictBatch(@PathVariable UUID modelId, @RequestBody List<PredictionRequest> records) {
+        try {
+            return ResponseEntity.ok(new BatchPredictionResponse(modelId,
+                    batchPredictionService.predict(modelId, records)));
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
         }
-        modelService.trainModel(modelId);
-        return ResponseEntity.ok("Training started successfully!");
+    }
+
+    @Operation(summary = "Predict a stream with a model", description = "Classify newline-delimited JSON records of "
+            + "any number; predictions are streamed back as newline-delimited JSON while the body is read")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "One prediction per line, in the order of the records"),
+            @ApiResponse(responseCode = "400", description = "Malformed record or a record without text"),
+            @ApiResponse(responseCode = "404", description = "Model not found"),
+            @ApiResponse(responseCode = "409", description = "Model has not been trained")
+    })
+    @PostMapping(value = "/{modelId}/predict/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public void predictStream(
+            @PathVariable UUID modelId,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        try {
+            batchPredictionService.stream(modelId, request.getInputStream(), response);
+        } catch (ResourceNotFoundException e) {
+            sendError(response, HttpStatus.NOT_FOUND, e);
+        } catch (IllegalArgumentException e) {
+            sendError(response, HttpStatus.BAD_REQUEST, e);
+        } catch (IllegalStateException e) {
+            sendError(response, HttpStatus.CONFLICT, e);
+        } catch (JsonProcessingException e) {
+            sendError(response, HttpStatus.BAD_REQUEST, e);
+        }
+    }
+
+    @Operation(summary = "Get training scheduler stats", description = "Queue depth, throughput and queue wait times of the training scheduler")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Training scheduler stats"),
+    })
+    @GetMapping("/training/stats")
+    public TrainingSchedulerStats getTrainingStats() {
+        return modelService.getTrainingStats();
     }
 
     @Operation(summary = "Upload training data", description = "Upload a file to be used as training data for a model")
@@ -103,16 +230,10 @@ public class ModelController {
             if (file == null)
                 return ResponseEntity.badRequest().body("No file provided");
 
-            LLMModel model = modelService.getModelById(modelId);
-            File savedFile = fileUploadService.saveFile(file);
-
-            TrainingData trainingData = new TrainingData();
-            trainingData.setName(file.getOriginalFilename());
-            trainingData.setSize(file.getSize());
-            trainingData.setFilePath(savedFile.getAbsolutePath());
-            trainingData.setUploadDate(LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME));
-            trainingData.setModel(model);
-            trainingDataRepository.save(trainingData);
+            LLMModel model = modelService.getModelForUpdate(modelId);
+            try (InputStream in = file.getInputStream()) {
+                fileUploadService.saveTrainingData(model, file.getOriginalFilename(), in, null);
+            }
 
             return ResponseEntity.ok("File uploaded successfully!");
         } catch (IOException e) {
@@ -120,13 +241,128 @@ public class ModelController {
         }
     }
 
-    @Operation(summary = "Get training status", description = "Check the training status of a specific model")
+    @Operation(summary = "Stream training data", description = "Upload training data as the raw request body, written to disk as it arrives without a size limit. "
+            + "If sha256 is given and that content is already stored, the body is not read and the stored copy is attached instead.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Training data uploaded, body is its SHA-256"),
+            @ApiResponse(responseCode = "400", description = "Invalid hash or content does not match sha256")
+    })
+    @CrossOrigin(origins = "http://localhost:3000")
+    @PutMapping(value = "/{modelId}/upload/stream", consumes = MediaType.ALL_VALUE)
+    public ResponseEntity<String> streamAttachment(
+            @PathVariable UUID modelId,
+            @RequestParam(value = "name") String name,
+            @RequestParam(value = "sha256", required = false) String sha256,
+            HttpServletRequest request) {
+        try {
+            LLMModel model = modelService.getModelForUpdate(modelId);
+            Optional<TrainingData> existing = sha256 == null
+                    ? Optional.empty()
+                    : fileUploadService.attachExisting(model, name, sha256);
+            TrainingData trainingData = existing.isPresent()
+                    ? existing.get()
+                    : fileUploadService.saveTrainingData(model, name, request.getInputStream(), sha256);
+
+            return ResponseEntity.ok(trainingData.getContentHash());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body("File upload failed: " + e.getMessage());
+        }
+    }
+
+    @Operation(summary = "Initiate a resumable upload", description = "Start a chunked upload of the given size; chunks are then PUT with a Content-Range header and the upload is committed")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Upload session"),
+            @ApiResponse(responseCode = "400", description = "Invalid size or hash")
+    })
+    @PostMapping("/{modelId}/uploads")
+    public ResponseEntity<?> initiateUpload(@PathVariable UUID modelId, @Valid @RequestBody InitiateUploadRequest request) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(chunkedUploadService.initiate(modelId, request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body("Upload could not be initiated: " + e.getMessage());
+        }
+    }
+
+    @Operation(summary = "Upload a chunk", description = "Write one chunk of a resumable upload; chunks may be sent in any order and in parallel")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Upload session after the chunk was written"),
+            @ApiResponse(responseCode = "400", description = "Range is not a chunk of this upload or the body does not match it"),
+            @ApiResponse(responseCode = "409", description = "Upload is already committed or aborted")
+    })
+    @PutMapping(value = "/{modelId}/uploads/{uploadId}", consumes = MediaType.ALL_VALUE)
+    public ResponseEntity<?> uploadChunk(
+            @PathVariable UUID modelId,
+            @PathVariable UUID uploadId,
+            @RequestHeader(HttpHeaders.CONTENT_RANGE) String contentRange,
+            HttpServletRequest request) {
+        try {
+            return ResponseEntity.ok(chunkedUploadService.writeChunk(modelId, uploadId, contentRange, request.getInputStream()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body("Chunk upload failed: " + e.getMessage());
+        }
+    }
+
+    @Operation(summary = "Get upload status", description = "Received bytes and missing chunks of a resumable upload")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Upload session"),
+    })
+    @GetMapping("/{modelId}/uploads/{uploadId}")
+    public UploadSessionStatus getUploadStatus(@PathVariable UUID modelId, @PathVariable UUID uploadId) {
+        return chunkedUploadService.getStatus(modelId, uploadId);
+    }
+
+    @Operation(summary = "Commit a resumable upload", description = "Attach a fully received upload to the model as training data")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Training data created, body is its SHA-256"),
+            @ApiResponse(responseCode = "400", description = "Content does not match the announced sha256"),
+            @ApiResponse(responseCode = "409", description = "Chunks are missing or the upload is already committed")
+    })
+    @PostMapping("/{modelId}/uploads/{uploadId}/commit")
+    public ResponseEntity<String> commitUpload(@PathVariable UUID modelId, @PathVariable UUID uploadId) {
+        try {
+            return ResponseEntity.ok(chunkedUploadService.commit(modelId, uploadId).getContentHash());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body("Upload commit failed: " + e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/{modelId}/uploads/{uploadId}")
+    public ResponseEntity<?> abortUpload(@PathVariable UUID modelId, @PathVariable UUID uploadId) throws IOException {
+        chunkedUploadService.abort(modelId, uploadId);
+        return ResponseEntity.ok().build();
+    }
+
+    @Operation(summary = "Get training status", description = "Check the training status of a specific model. The "
+            + "status is served from a short-lived cache unless fresh=true")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Training Status"),
     })
     @GetMapping("/{modelId}/status")
-    public String getTrainingStatus(@PathVariable UUID modelId) {
-        return modelService.getTrainingStatus(modelId);
+    public String getTrainingStatus(
+            @PathVariable UUID modelId,
+            @RequestParam(value = "fresh", defaultValue = "false") boolean fresh) {
+        return modelService.getTrainingStatus(modelId, fresh);
+    }
+
+    @Operation(summary = "Stream training status", description = "Server-Sent Events stream of training status transitions and progress of a specific model")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Training status event stream"),
+    })
+    @GetMapping(value = "/{modelId}/status/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamTrainingStatus(@PathVariable UUID modelId) {
+        return modelService.streamTrainingStatus(modelId);
     }
 
     @Operation(summary = "Delete model", description = "Delete Model")
@@ -139,6 +375,36 @@ public class ModelController {
         return ResponseEntity.ok("Model deleted successfully");
     }
 
+    @Operation(summary = "Download training data", description = "Download a training data file; supports a single byte Range and If-None-Match on its SHA-256 ETag")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "File content"),
+            @ApiResponse(responseCode = "206", description = "Requested byte range"),
+            @ApiResponse(responseCode = "304", description = "Not modified"),
+            @ApiResponse(responseCode = "416", description = "Range not satisfiable")
+    })
+    @GetMapping("/{modelId}/trainingData/{trainingDataId}/content")
+    public void downloadTrainingData(
+            @PathVariable UUID modelId,
+            @PathVariable UUID trainingDataId,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        TrainingData trainingData = modelService.getTrainingData(modelId, trainingDataId);
+        fileDownloadService.send(Path.of(trainingData.getFilePath()), trainingData.getContentHash(),
+                trainingData.getName(), request, response);
+    }
+
+    // Errors after the first predictions were streamed can only end the response
+    private static <E extends Exception> void sendError(HttpServletResponse response, HttpStatus status, E e)
+            throws IOException, E {
+        if (response.isCommitted()) {
+            throw e;
+        }
+        response.resetBuffer();
+        response.setStatus(status.value());
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getWriter().write(e.getMessage());
+    }
+
     @DeleteMapping("/{modelId}/trainingData/{trainingDataId}")
     public ResponseEntity<?> deleteTD(@PathVariable UUID trainingDataId) {
         modelService.deleteTrainingData(trainingDataId);
@@ -0,0 +1,48 @@
+package net.casim.ml.mm.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import net.casim.ml.mm.service.UserService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@Tag(name = "User Management", description = "APIs for managing user roles and tokens")
+@RestController
+@RequestMapping("/users")
+public class UserController {
+
+    private final UserService userService;
+
+    public UserController(UserService userService) {
+        this.userService = userService;
+    }
+
+    @Operation(summary = "Change user roles", description = "Replace the roles of a user; tokens issued before the change stop working")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Roles changed"),
+            @ApiResponse(responseCode = "400", description = "Invalid role")
+    })
+    @PutMapping("/{username}/roles")
+    public ResponseEntity<String> updateRoles(@PathVariable String username, @RequestBody List<String> roles) {
+        try {
+            userService.updateRoles(username, roles);
+            return ResponseEntity.ok("Roles updated, user must log in again");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @Operation(summary = "Revoke user tokens", description = "Invalidate every token issued to a user so far")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Tokens revoked"),
+    })
+    @PostMapping("/{username}/revoke-tokens")
+    public ResponseEntity<String> revokeTokens(@PathVariable String username) {
+        userService.revokeTokens(username);
+        return ResponseEntity.ok("Tokens revoked");
+    }
+}
@@ -5,15 +5,19 @@ import lombok.Data;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
-import net.casim.ml.mm.utils.MapToJsonConverter;
+import net.casim.ml.mm.utils.TrainingResultsConverter;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
+import org.hibernate.annotations.Mutability;
+import org.hibernate.type.descriptor.java.Immutability;
 
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
 
 @Entity
 @Getter
 @Setter
+@Table(indexes = @Index(name = "idx_llm_model_status_id", columnList = "status, id"))
 public class LLMModel {
 
     @Id
@@ -24,24 +28,34 @@ public class LLMModel {
 
     @ElementCollection(targetClass = ModelLayer.class)
     @Enumerated(EnumType.STRING)
-    @CollectionTable(name = "model_layers")
+    @CollectionTable(name = "model_layers", indexes = @Index(name = "idx_model_layers_layer", columnList = "layer, llmmodel_id"))
     @Column(name = "layer")
+    @Fetch(FetchMode.SUBSELECT)
     private List<ModelLayer> layers;
 
     private String status;
 
-    @Convert(converter = MapToJsonConverter.class)
-    private Map<String, Object> trainingResults;
+    // Replaced as a whole, so Hibernate neither copies it for dirty checking nor decodes it on load. A LOB, as neither
+    // the labels an engine reports on nor the metrics it adds have a bounded size
+    @Convert(converter = TrainingResultsConverter.class)
+    @Mutability(Immutability.class)
+    @Lob
+    private TrainingResults trainingResults = TrainingResults.empty();
 
     @OneToMany(mappedBy = "model", cascade = CascadeType.ALL, orphanRemoval = true)
+    @Fetch(FetchMode.SUBSELECT)
     private List<TrainingData> attachments;
 
     @OneToMany(mappedBy = "model", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @JsonManagedReference
+    @Fetch(FetchMode.SUBSELECT)
     private List<TrainingData> trainingDataList;
 
     private int trainingDuration;
 
     private double accuracyPercentage;
 
+    // Upload date of the newest training data included in the last successful training
+    private String trainingWatermark;
+
 }
@@ -8,6 +8,7 @@ import jakarta.persistence.*;
 import java.util.UUID;
 
 @Entity
+@Table(indexes = @Index(name = "idx_training_data_content_hash", columnList = "content_hash"))
 @Data
 public class TrainingData {
 
@@ -19,6 +20,9 @@ public class TrainingData {
 
     private long size;
 
+    @Column(length = 64)
+    private String contentHash;
+
     private String uploadDate;
 
     @ManyToOne
@@ -28,5 +32,8 @@ public class TrainingData {
 
     private String filePath;
 
+    // Directory of the tokenized form written by DatasetIngestService, once it is ready
+    private String columnarPath;
+
 }
 
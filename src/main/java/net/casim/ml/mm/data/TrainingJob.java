@@ -0,0 +1,51 @@
+package net.casim.ml.mm.data;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Getter
+@Setter
+@Table(name = "training_job", indexes = {
+        @Index(name = "idx_training_job_state_priority", columnList = "state, priority, createdAt"),
+        @Index(name = "idx_training_job_model", columnList = "modelId")
+})
+public class TrainingJob {
+
+    @Id
+    @GeneratedValue
+    private UUID id;
+
+    @Column(nullable = false)
+    private UUID modelId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private TrainingJobState state;
+
+    private int priority;
+
+    private int attempts;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    private Instant startedAt;
+
+    private Instant finishedAt;
+
+    private String leaseOwner;
+
+    private Instant leaseExpiresAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    // Train on all training data even if the model could be trained incrementally
+    private boolean fullRetrain;
+
+}
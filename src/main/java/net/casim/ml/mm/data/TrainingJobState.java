@@ -0,0 +1,8 @@
+package net.casim.ml.mm.data;
+
+public enum TrainingJobState {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED
+}
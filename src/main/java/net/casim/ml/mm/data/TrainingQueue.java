@@ -0,0 +1,29 @@
+package net.casim.ml.mm.data;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * The single row that submissions lock, so that checking for an active job of the model and the queue depth and
+ * inserting the job happen one submission at a time across all instances.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "training_queue")
+public class TrainingQueue {
+
+    public static final int ID = 1;
+
+    @Id
+    private int id;
+
+    public TrainingQueue(int id) {
+        this.id = id;
+    }
+}
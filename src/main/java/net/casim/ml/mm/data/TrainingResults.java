@@ -0,0 +1,255 @@
+package net.casim.ml.mm.data;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import lombok.Data;
+import lombok.Value;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Metrics of a model's last training, as reported by its training engine. Results loaded from the database keep their
+ * stored encoding and are only decoded when read, so loading a model does not parse them, and neither does writing it
+ * as JSON when they were stored as JSON. Instances are immutable: training replaces them as a whole.
+ */
+@JsonSerialize(using = TrainingResults.Serializer.class)
+public final class TrainingResults {
+
+    public enum Encoding {
+        JSON,
+        SMILE
+    }
+
+    private static final TrainingResults EMPTY = new TrainingResults(null, null, Map.of());
+
+    // Written by SmileGenerator unless WRITE_HEADER is disabled, and never the start of a JSON document
+    private static final byte[] SMILE_HEADER = {':', ')', '\n'};
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    private static final ObjectMapper SMILE_MAPPER = new ObjectMapper(new SmileFactory())
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    private static final TypeReference<LinkedHashMap<String, Object>> MAP_TYPE = new TypeReference<>() { };
+    private static final ObjectReader JSON_MAP_READER = JSON_MAPPER.readerFor(MAP_TYPE);
+    private static final ObjectReader SMILE_MAP_READER = SMILE_MAPPER.readerFor(MAP_TYPE);
+    private static final ObjectReader JSON_SUMMARY_READER = JSON_MAPPER.readerFor(Summary.class);
+    private static final ObjectReader SMILE_SUMMARY_READER = SMILE_MAPPER.readerFor(Summary.class);
+    private static final ObjectWriter JSON_WRITER = JSON_MAPPER.writer();
+    private static final ObjectWriter SMILE_WRITER = SMILE_MAPPER.writer();
+
+    // Stored form, null for results created in memory
+    private final byte[] encoded;
+    private final Encoding encoding;
+    private volatile Map<String, Object> metrics;
+    private volatile Summary summary;
+
+    private TrainingResults(byte[] encoded, Encoding encoding, Map<String, Object> metrics) {
+        this.encoded = encoded;
+        this.encoding = encoding;
+        this.metrics = metrics;
+    }
+
+    public static TrainingResults empty() {
+        return EMPTY;
+    }
+
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public static TrainingResults of(Map<String, Object> metrics) {
+        return metrics == null || metrics.isEmpty() ? EMPTY
+                : new TrainingResults(null, null, Collections.unmodifiableMap(metrics));
+    }
+
+    /**
+     * Wraps results stored as JSON text or Smile, telling them apart by the Smile header. Nothing is parsed until the
+     * results are read.
+     */
+    public static TrainingResults decode(byte[] encoded) {
+        if (encoded == null || encoded.length == 0) {
+            return EMPTY;
+        }
+        boolean smile = encoded.length >= SMILE_HEADER.length
+                && Arrays.equals(encoded, 0, SMILE_HEADER.length, SMILE_HEADER, 0, SMILE_HEADER.length);
+        return new TrainingResults(encoded, smile ? Encoding.SMILE : Encoding.JSON, null);
+    }
+
+    /**
+     * Returns the results in {@code target} encoding, reusing the stored bytes when they are already in it.
+     */
+    public byte[] encode(Encoding target) {
+        if (encoded != null && encoding == target) {
+            return encoded;
+        }
+        try {
+            return (target == Encoding.SMILE ? SMILE_WRITER : JSON_WRITER).writeValueAsBytes(getMetrics());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not encode training results as " + target, e);
+        }
+    }
+
+    /**
+     * All metrics, decoded on first access. The map must not be modified.
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> result = metrics;
+        if (result == null) {
+            try {
+                result = Collections.unmodifiableMap(
+                        (encoding == Encoding.SMILE ? SMILE_MAP_READER : JSON_MAP_READER).readValue(encoded));
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Could not decode training results", e);
+            }
+            metrics = result;
+        }
+        return result;
+    }
+
+    /**
+     * Whether the full metrics map has been built, either by {@link #getMetrics()} or because the results were
+     * created in memory.
+     */
+    public boolean isDecoded() {
+        return metrics != null;
+    }
+
+    /**
+     * Whether these are {@link #empty()}, which is what empty maps and columns become. Does not decode.
+     */
+    public boolean isEmpty() {
+        return this == EMPTY;
+    }
+
+    /**
+     * Fraction of held-out rows predicted correctly, or null if the engine did not report it.
+     */
+    public Double getAccuracy() {
+        return summary().accuracy;
+    }
+
+    public Double getMacroF1() {
+        return summary().macroF1;
+    }
+
+    /**
+     * Metrics of the classes the engine reported on, by label; empty if it did not report any.
+     */
+    public Map<String, ClassMetrics> getPerClass() {
+        Map<String, ClassMetrics> perClass = summary().perClass;
+        return perClass == null ? Map.of() : Collections.unmodifiableMap(perClass);
+    }
+
+    // Reads only the typed fields, skipping the rest of the stored document, unless the map is already at hand
+    private Summary summary() {
+        Summary result = summary;
+        if (result == null) {
+            try {
+                Map<String, Object> decoded = metrics;
+                result = decoded != null ? JSON_MAPPER.convertValue(decoded, Summary.class)
+                        : (encoding == Encoding.SMILE ? SMILE_SUMMARY_READER : JSON_SUMMARY_READER).readValue(encoded);
+            } catch (IOException | IllegalArgumentException e) {
+                throw new IllegalArgumentException("Could not decode training results", e);
+            }
+            summary = result;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TrainingResults other)) {
+            return false;
+        }
+        if (encoded != null && other.encoded != null && encoding == other.encoding) {
+            return Arrays.equals(encoded, other.encoded);
+        }
+        return getMetrics().equals(other.getMetrics());
+    }
+
+    @Override
+    public int hashCode() {
+        return getMetrics().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "TrainingResults" + getMetrics();
+    }
+
+    @Value
+    public static class ClassMetrics {
+        double precision;
+        double recall;
+        double f1;
+        long support;
+
+        @JsonCreator
+        public ClassMetrics(@JsonProperty("precision") double precision, @JsonProperty("recall") double recall,
+                            @JsonProperty("f1") double f1, @JsonProperty("support") long support) {
+            this.precision = precision;
+            this.recall = recall;
+            this.f1 = f1;
+            this.support = support;
+        }
+    }
+
+    @Data
+    private static class Summary {
+        private Double accuracy;
+        private Double macroF1;
+        private Map<String, ClassMetrics> perClass;
+    }
+
+    /**
+     * Writes the metrics as a JSON object. Undecoded results are copied token by token from their stored form, or
+     * verbatim when both are JSON text, so serializing a loaded model does not build the map.
+     */
+    static class Serializer extends StdSerializer<TrainingResults> {
+
+        Serializer() {
+            super(TrainingResults.class);
+        }
+
+        @Override
+        public void serialize(TrainingResults value, JsonGenerator gen, SerializerProvider provider)
+                throws IOException {
+            Map<String, Object> decoded = value.metrics;
+            if (decoded != null) {
+                provider.defaultSerializeValue(decoded, gen);
+            } else if (value.encoding == Encoding.JSON && gen instanceof JsonGeneratorImpl) {
+                gen.writeRawValue(new String(value.encoded, StandardCharsets.UTF_8));
+            } else {
+                JsonFactory factory = value.encoding == Encoding.SMILE ? SMILE_MAPPER.getFactory()
+                        : JSON_MAPPER.getFactory();
+                try (JsonParser parser = factory.createParser(value.encoded)) {
+                    parser.nextToken();
+                    gen.copyCurrentStructure(parser);
+                }
+            }
+        }
+
+        @Override
+        public boolean isEmpty(SerializerProvider provider, TrainingResults value) {
+            return value == null || value.isEmpty();
+        }
+    }
+}
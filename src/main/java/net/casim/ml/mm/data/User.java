@@ -25,6 +25,10 @@ public class User {
     @Column(name = "role")
     private List<String> roles;
 
+    // Tokens carrying an older version are rejected; bumped on role changes and revocation
+    @Column(nullable = false)
+    private int tokenVersion;
+
     public void addRole(String role) {
         if (role.equalsIgnoreCase("ADMIN") || role.equalsIgnoreCase("USER")) {
             this.roles.add(role);
@@ -0,0 +1,15 @@
+package net.casim.ml.mm.data.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+
+@Data
+public class InitiateUploadRequest {
+    @NotBlank(message = "File name is required")
+    private String name;
+    @Positive(message = "Size must be positive")
+    private long size;
+    private String sha256;
+
+}
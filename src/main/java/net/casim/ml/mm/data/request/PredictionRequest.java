@@ -0,0 +1,10 @@
+package net.casim.ml.mm.data.request;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+@Data
+public class PredictionRequest {
+    @NotNull(message = "Text is required")
+    private String text;
+}
@@ -0,0 +1,13 @@
+package net.casim.ml.mm.data.response;
+
+import lombok.Value;
+import net.casim.ml.mm.training.Prediction;
+
+import java.util.List;
+import java.util.UUID;
+
+@Value
+public class BatchPredictionResponse {
+    UUID modelId;
+    List<Prediction> predictions;
+}
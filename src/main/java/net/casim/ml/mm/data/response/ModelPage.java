@@ -0,0 +1,13 @@
+package net.casim.ml.mm.data.response;
+
+import lombok.Value;
+
+import java.util.List;
+import java.util.UUID;
+
+@Value
+public class ModelPage {
+    List<ModelSummary> items;
+    UUID nextCursor;
+    Long total;
+}
@@ -0,0 +1,14 @@
+package net.casim.ml.mm.data.response;
+
+import lombok.Value;
+
+import java.util.UUID;
+
+@Value
+public class ModelSummary {
+    UUID id;
+    String name;
+    String status;
+    int trainingDuration;
+    double accuracyPercentage;
+}
@@ -0,0 +1,12 @@
+package net.casim.ml.mm.data.response;
+
+import lombok.Value;
+
+import java.util.UUID;
+
+@Value
+public class PredictionResponse {
+    UUID modelId;
+    String label;
+    double confidence;
+}
@@ -0,0 +1,19 @@
+package net.casim.ml.mm.data.response;
+
+import lombok.Value;
+
+@Value
+public class TrainingSchedulerStats {
+    int slots;
+    int queueCapacity;
+    int queued;
+    int running;
+    long submitted;
+    long completed;
+    long failed;
+    long rejected;
+    long deduplicated;
+    long completedLastMinute;
+    long averageQueueWaitMillis;
+    long maxQueueWaitMillis;
+}
@@ -0,0 +1,27 @@
+package net.casim.ml.mm.data.response;
+
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Value
+public class TrainingStatusEvent {
+    public static final String STATUS = "status";
+    public static final String PROGRESS = "progress";
+
+    String type;
+    UUID modelId;
+    String status;
+    int progress;
+    Double accuracyPercentage;
+    Instant timestamp;
+
+    public static TrainingStatusEvent status(UUID modelId, String status, int progress, Double accuracyPercentage) {
+        return new TrainingStatusEvent(STATUS, modelId, status, progress, accuracyPercentage, Instant.now());
+    }
+
+    public static TrainingStatusEvent progress(UUID modelId, String status, int progress) {
+        return new TrainingStatusEvent(PROGRESS, modelId, status, progress, null, Instant.now());
+    }
+}
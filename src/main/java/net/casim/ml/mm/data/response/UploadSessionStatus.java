@@ -0,0 +1,18 @@
+package net.casim.ml.mm.data.response;
+
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Value
+public class UploadSessionStatus {
+    UUID uploadId;
+    String name;
+    long totalSize;
+    long chunkSize;
+    long receivedBytes;
+    List<Integer> missingChunks;
+    Instant expiresAt;
+}
@@ -0,0 +1,200 @@
+package net.casim.ml.mm.dataset;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * View of a run of UTF-8 bytes in a {@link ByteBuffer}, decoded to a string only when {@link #toString()} is called.
+ * Slices handed out by {@link DatasetReader} and {@link DatasetRecord} are reused for the next record; call
+ * {@link #copy()} to keep one. Equality and hash code are defined by content.
+ */
+public final class ByteSlice {
+
+    private static final ByteSlice EMPTY = wrap(new byte[0]);
+
+    private ByteBuffer buffer;
+    private int offset;
+    private int length;
+    private String decoded;
+
+    ByteSlice() {
+    }
+
+    private ByteSlice(ByteBuffer buffer, int offset, int length) {
+        set(buffer, offset, length);
+    }
+
+    public static ByteSlice of(String value) {
+        ByteSlice slice = wrap(value.getBytes(StandardCharsets.UTF_8));
+        slice.decoded = value;
+        return slice;
+    }
+
+    public static ByteSlice wrap(byte[] bytes) {
+        return new ByteSlice(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    public static ByteSlice empty() {
+        return EMPTY;
+    }
+
+    ByteSlice set(ByteBuffer buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        this.decoded = null;
+        return this;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    public byte byteAt(int index) {
+        return buffer.get(offset + index);
+    }
+
+    /**
+     * @return the index of the first {@code value} at or after {@code from}, or -1
+     */
+    public int indexOf(byte value, int from) {
+        for (int i = from; i < length; i++) {
+            if (buffer.get(offset + i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean isBlank() {
+        for (int i = 0; i < length; i++) {
+            byte b = buffer.get(offset + i);
+            if (b != ' ' && b != '\t' && b != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the code point starting at {@code index}. Malformed sequences decode to U+FFFD, one byte at a time.
+     */
+    public int codePointAt(int index) {
+        int lead = byteAt(index) & 0xff;
+        int size = sequenceLength(lead);
+        if (size == 1) {
+            return lead < 0x80 ? lead : 0xfffd;
+        }
+        if (index + size > length) {
+            return 0xfffd;
+        }
+        int codePoint = lead & (0xff >> (size + 1));
+        for (int i = 1; i < size; i++) {
+            int next = byteAt(index + i) & 0xff;
+            if ((next & 0xc0) != 0x80) {
+                return 0xfffd;
+            }
+            codePoint = (codePoint << 6) | (next & 0x3f);
+        }
+        return codePoint;
+    }
+
+    /**
+     * Length of the UTF-8 sequence that starts with {@code lead}; 1 for ASCII and for bytes that cannot start one.
+     */
+    public static int sequenceLength(int lead) {
+        if (lead >= 0xf0 && lead < 0xf8) {
+            return 4;
+        }
+        if (lead >= 0xe0) {
+            return lead < 0xf0 ? 3 : 1;
+        }
+        return lead >= 0xc0 ? 2 : 1;
+    }
+
+    public boolean contentEquals(String ascii) {
+        if (ascii.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(offset + i) != ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean equalsIgnoreCaseAscii(String ascii) {
+        if (ascii.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            int b = buffer.get(offset + i);
+            if (Character.toLowerCase(b) != Character.toLowerCase(ascii.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies the bytes to the start of {@code scratch}, or of a larger array if it is too small.
+     *
+     * @return the array holding the bytes
+     */
+    public byte[] copyTo(byte[] scratch) {
+        byte[] target = scratch.length >= length ? scratch : new byte[Math.max(length, scratch.length * 2)];
+        buffer.get(offset, target, 0, length);
+        return target;
+    }
+
+    /**
+     * Copies the bytes into a slice of its own that stays valid after the reader moves on.
+     */
+    public ByteSlice copy() {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        ByteSlice copy = wrap(bytes);
+        copy.decoded = decoded;
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        if (decoded == null) {
+            byte[] bytes = new byte[length];
+            buffer.get(offset, bytes);
+            decoded = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return decoded;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ByteSlice other) || other.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(offset + i) != other.buffer.get(other.offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + buffer.get(offset + i);
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,32 @@
+package net.casim.ml.mm.dataset;
+
+import java.util.Locale;
+
+/**
+ * Line-oriented layouts a dataset file can have.
+ */
+public enum DatasetFormat {
+    /** Comma-separated values with RFC 4180 quoting. */
+    CSV,
+    /** Tab-separated values, quoted like CSV. */
+    TSV,
+    /** One JSON object per line. */
+    JSONL,
+    /** Plain text, one record per line with the whole line as its only field. */
+    TEXT;
+
+    /**
+     * Picks the format from the file name, and for other files from whether {@code firstLine} contains a tab.
+     * {@link #TEXT} is never detected; files are only read as plain text when asked for.
+     */
+    public static DatasetFormat detect(String name, ByteSlice firstLine) {
+        String lowerName = name.toLowerCase(Locale.ROOT);
+        if (lowerName.endsWith(".jsonl") || lowerName.endsWith(".ndjson") || lowerName.endsWith(".json")) {
+            return JSONL;
+        }
+        if (lowerName.endsWith(".tsv") || firstLine.indexOf((byte) '\t', 0) >= 0) {
+            return TSV;
+        }
+        return CSV;
+    }
+}
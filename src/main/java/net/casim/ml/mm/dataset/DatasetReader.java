@@ -0,0 +1,211 @@
+package net.casim.ml.mm.dataset;
+
+import net.casim.ml.mm.utils.LongLongHashMap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Iterates the records of a line-oriented dataset file (CSV, TSV, JSON lines or plain text) by memory-mapping it one
+ * segment at a time, so files larger than the heap are scanned with constant memory and without a string per line.
+ * Records are handed out as a reused {@link DatasetRecord} whose fields are decoded only when asked for.
+ * <p>
+ * A reader can be limited to a byte range of the file. It then returns exactly the records whose line starts inside
+ * the range, so readers over adjacent ranges (see {@link #split}) together return every record once and can run in
+ * parallel. Blank lines are not records.
+ */
+public class DatasetReader implements Closeable {
+
+    public static final long DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final long start;
+    private final long end;
+    private final long segmentSize;
+    private final DatasetRecord record;
+
+    private MappedByteBuffer segment;
+    private long segmentOffset;
+    private int position;
+    private int lineStart;
+    private int lineEnd;
+    private long lineOffset;
+
+    private long sampleThreshold = -1;
+    private long sampleSeed;
+
+    public DatasetReader(Path file, String name) throws IOException {
+        this(file, name, null, 0, Long.MAX_VALUE, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param format      layout of the file, or null to {@link DatasetFormat#detect detect} it
+     * @param start       first byte of the range to read
+     * @param end         end of the range; lines starting before it are read to their end
+     * @param segmentSize bytes mapped at a time; lines longer than this are mapped whole
+     */
+    public DatasetReader(Path file, String name, DatasetFormat format, long start, long end, long segmentSize)
+            throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            this.fileSize = channel.size();
+            this.start = Math.min(start, fileSize);
+            this.end = Math.min(end, fileSize);
+            this.segmentSize = Math.max(1, Math.min(segmentSize, Integer.MAX_VALUE));
+            if (format == null) {
+                map(0);
+                format = DatasetFormat.detect(name == null ? file.getFileName().toString() : name,
+                        nextLine() ? new ByteSlice().set(segment, lineStart, lineEnd - lineStart) : ByteSlice.empty());
+            }
+            this.record = new DatasetRecord(format);
+            // A line belongs to the range its first byte is in, so skip the line that started before the range
+            map(Math.max(0, this.start - 1));
+            if (this.start > 0) {
+                nextLine();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Keeps only about {@code fraction} of the records, chosen by a hash of their offset and {@code seed}. The choice
+     * is the same for every reader of the file, whatever range it covers.
+     */
+    public DatasetReader sample(double fraction, long seed) {
+        if (fraction < 0 || fraction > 1) {
+            throw new IllegalArgumentException("Sample fraction must be between 0 and 1");
+        }
+        this.sampleThreshold = fraction == 1 ? -1 : (long) (fraction * 0x1p63) << 1;
+        this.sampleSeed = seed;
+        return this;
+    }
+
+    public DatasetFormat getFormat() {
+        return record.getFormat();
+    }
+
+    /**
+     * Advances to the next record.
+     *
+     * @return false at the end of the range
+     */
+    public boolean next() throws IOException {
+        while (segmentOffset + position < end && nextLine()) {
+            if (isBlankLine() || !isSampled(lineOffset)) {
+                continue;
+            }
+            record.reset(segment, lineStart, lineEnd, lineOffset);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Skips up to {@code records} records without decoding them.
+     *
+     * @return the number of records skipped, less than requested at the end of the range
+     */
+    public long skip(long records) throws IOException {
+        long skipped = 0;
+        while (skipped < records && next()) {
+            skipped++;
+        }
+        return skipped;
+    }
+
+    public DatasetRecord getRecord() {
+        return record;
+    }
+
+    /**
+     * Bytes from the start of the range to the end of the current record.
+     */
+    public long getBytesRead() {
+        return segmentOffset + position - start;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Splits a file of {@code size} bytes into at most {@code count} ranges of similar size, returned as their
+     * boundaries. Boundaries may fall inside lines; readers over the ranges still return each record once.
+     */
+    public static long[] split(long size, int count) {
+        int ranges = (int) Math.max(1, Math.min(count, size));
+        long[] boundaries = new long[ranges + 1];
+        for (int i = 0; i <= ranges; i++) {
+            boundaries[i] = size * i / ranges;
+        }
+        return boundaries;
+    }
+
+    private boolean nextLine() throws IOException {
+        lineOffset = segmentOffset + position;
+        if (lineOffset >= fileSize) {
+            return false;
+        }
+        int scanFrom = position;
+        while (true) {
+            int limit = segment.limit();
+            for (int i = scanFrom; i < limit; i++) {
+                if (segment.get(i) == '\n') {
+                    setLine(position, i);
+                    position = i + 1;
+                    return true;
+                }
+            }
+            if (segmentOffset + limit >= fileSize) {
+                setLine(position, limit);
+                position = limit;
+                return true;
+            }
+            // The line runs past the segment: map again from its start, wide enough to hold what was scanned so far
+            int scanned = limit - position;
+            map(lineOffset, Math.max(segmentSize, 2L * scanned));
+            scanFrom = scanned;
+        }
+    }
+
+    private void setLine(int from, int to) {
+        lineStart = from;
+        lineEnd = to > from && segment.get(to - 1) == '\r' ? to - 1 : to;
+    }
+
+    private void map(long offset) throws IOException {
+        map(offset, segmentSize);
+    }
+
+    private void map(long offset, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Line at offset " + offset + " is longer than " + Integer.MAX_VALUE + " bytes");
+        }
+        segment = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(size, fileSize - offset));
+        segmentOffset = offset;
+        position = 0;
+    }
+
+    private boolean isBlankLine() {
+        for (int i = lineStart; i < lineEnd; i++) {
+            byte b = segment.get(i);
+            if (b != ' ' && b != '\t' && b != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isSampled(long offset) {
+        return sampleThreshold < 0
+                || Long.compareUnsigned(LongLongHashMap.mix(offset ^ sampleSeed), sampleThreshold) < 0;
+    }
+}
@@ -0,0 +1,418 @@
+package net.casim.ml.mm.dataset;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The current record of a {@link DatasetReader}. Fields are located the first time one is asked for and are returned
+ * as {@link ByteSlice} views of the mapped file, so reading a field copies nothing unless it contains escapes (doubled
+ * quotes in CSV, backslash escapes in JSON), which are decoded into a slice of their own. Leading and trailing blanks
+ * around delimited fields are dropped.
+ * <p>
+ * The record and every slice it returns are only valid until the reader moves to the next record.
+ */
+public final class DatasetRecord {
+
+    private static final byte PLAIN = 0;
+    private static final byte ESCAPED = 1;
+    private static final byte ABSENT = 2;
+
+    private final DatasetFormat format;
+    private final byte delimiter;
+    private final ByteSlice line = new ByteSlice();
+    private final ByteSlice remainder = new ByteSlice();
+
+    private ByteBuffer buffer;
+    private int lineStart;
+    private int lineEnd;
+    private long offset;
+
+    private boolean parsed;
+    private boolean valid;
+    private int fieldCount;
+    private int[] rawStarts = new int[8];
+    private int[] starts = new int[8];
+    private int[] ends = new int[8];
+    private int[] keyStarts = new int[8];
+    private int[] keyEnds = new int[8];
+    private byte[] kinds = new byte[8];
+    private ByteSlice[] slices = new ByteSlice[8];
+
+    DatasetRecord(DatasetFormat format) {
+        this.format = format;
+        this.delimiter = format == DatasetFormat.TSV ? (byte) '\t' : (byte) ',';
+    }
+
+    void reset(ByteBuffer buffer, int lineStart, int lineEnd, long offset) {
+        this.buffer = buffer;
+        this.lineStart = lineStart;
+        this.lineEnd = lineEnd;
+        this.offset = offset;
+        this.parsed = false;
+        line.set(buffer, lineStart, lineEnd - lineStart);
+    }
+
+    public DatasetFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Offset of the record's first byte in the file.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * The whole line, without its line terminator.
+     */
+    public ByteSlice getLine() {
+        return line;
+    }
+
+    /**
+     * Whether the line could be parsed; only JSON lines can be invalid.
+     */
+    public boolean isValid() {
+        parse();
+        return valid;
+    }
+
+    public int getFieldCount() {
+        parse();
+        return fieldCount;
+    }
+
+    /**
+     * The value of field {@code index}: the column of a delimited line, the line itself for plain text, or the
+     * {@code index}th member of a JSON object.
+     *
+     * @return null if there is no such field, or if the JSON value is null, an object or an array
+     */
+    public ByteSlice getField(int index) {
+        parse();
+        if (index < 0 || index >= fieldCount || kinds[index] == ABSENT) {
+            return null;
+        }
+        if (slices[index] == null) {
+            slices[index] = new ByteSlice();
+        }
+        if (kinds[index] == ESCAPED) {
+            byte[] value = unescape(index);
+            return slices[index].set(ByteBuffer.wrap(value), 0, value.length);
+        }
+        return slices[index].set(buffer, starts[index], ends[index] - starts[index]);
+    }
+
+    /**
+     * The value of the JSON member {@code name}.
+     *
+     * @return null if the member is missing, null, an object or an array
+     * @throws IllegalStateException if the file is not JSON lines
+     */
+    public ByteSlice getField(String name) {
+        if (format != DatasetFormat.JSONL) {
+            throw new IllegalStateException("Fields of " + format + " records have no names");
+        }
+        parse();
+        for (int i = 0; i < fieldCount; i++) {
+            if (keyEnds[i] - keyStarts[i] == name.length() && regionMatches(keyStarts[i], name)) {
+                return getField(i);
+            }
+        }
+        return null;
+    }
+
+    public String getString(int index) {
+        ByteSlice field = getField(index);
+        return field == null ? null : field.toString();
+    }
+
+    public String getString(String name) {
+        ByteSlice field = getField(name);
+        return field == null ? null : field.toString();
+    }
+
+    /**
+     * Everything from field {@code index} to the end of a delimited line, delimiters included, for layouts whose last
+     * column is free text that was written without quoting. If field {@code index} is the last one this is the same
+     * as {@link #getField(int)}.
+     */
+    public ByteSlice getRemainder(int index) {
+        parse();
+        if (format == DatasetFormat.JSONL) {
+            throw new IllegalStateException("JSON records have no remainder");
+        }
+        if (index < 0 || index >= fieldCount) {
+            return null;
+        }
+        if (index == fieldCount - 1) {
+            return getField(index);
+        }
+        int start = rawStarts[index];
+        while (start < lineEnd && isBlank(buffer.get(start))) {
+            start++;
+        }
+        int end = trimEnd(start, lineEnd);
+        return remainder.set(buffer, start, end - start);
+    }
+
+    private void parse() {
+        if (parsed) {
+            return;
+        }
+        parsed = true;
+        fieldCount = 0;
+        if (format == DatasetFormat.JSONL) {
+            valid = parseJson();
+        } else if (format == DatasetFormat.TEXT) {
+            valid = true;
+            addField(lineStart, lineStart, lineEnd, PLAIN);
+        } else {
+            valid = true;
+            parseDelimited();
+        }
+    }
+
+    private void parseDelimited() {
+        int i = lineStart;
+        while (true) {
+            int rawStart = i;
+            while (i < lineEnd && isBlank(buffer.get(i)) && buffer.get(i) != delimiter) {
+                i++;
+            }
+            int next;
+            if (i < lineEnd && buffer.get(i) == '"') {
+                int close = i + 1;
+                byte kind = PLAIN;
+                while (close < lineEnd) {
+                    if (buffer.get(close) == '"') {
+                        if (close + 1 < lineEnd && buffer.get(close + 1) == '"') {
+                            kind = ESCAPED;
+                            close += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    close++;
+                }
+                if (close < lineEnd) {
+                    next = indexOf(delimiter, close + 1);
+                    addField(rawStart, i + 1, close, kind);
+                } else {
+                    // No closing quote: read the field as if it were not quoted
+                    next = indexOf(delimiter, i);
+                    addField(rawStart, i, trimEnd(i, next), PLAIN);
+                }
+            } else {
+                next = indexOf(delimiter, i);
+                addField(rawStart, i, trimEnd(i, next), PLAIN);
+            }
+            if (next == lineEnd) {
+                return;
+            }
+            i = next + 1;
+        }
+    }
+
+    private boolean parseJson() {
+        int i = skipWhitespace(lineStart);
+        if (i >= lineEnd || buffer.get(i) != '{') {
+            return false;
+        }
+        i = skipWhitespace(i + 1);
+        if (i < lineEnd && buffer.get(i) == '}') {
+            return skipWhitespace(i + 1) == lineEnd;
+        }
+        while (true) {
+            if (i >= lineEnd || buffer.get(i) != '"') {
+                return false;
+            }
+            int keyEnd = stringEnd(i);
+            if (keyEnd < 0) {
+                return false;
+            }
+            int keyStart = i + 1;
+            i = skipWhitespace(keyEnd + 1);
+            if (i >= lineEnd || buffer.get(i) != ':') {
+                return false;
+            }
+            i = skipWhitespace(i + 1);
+            if (i >= lineEnd) {
+                return false;
+            }
+            byte first = buffer.get(i);
+            int valueEnd;
+            if (first == '"') {
+                valueEnd = stringEnd(i);
+                if (valueEnd < 0) {
+                    return false;
+                }
+                addField(i, i + 1, valueEnd, indexOf((byte) '\\', i + 1) < valueEnd ? ESCAPED : PLAIN);
+                valueEnd++;
+            } else if (first == '{' || first == '[') {
+                valueEnd = compositeEnd(i);
+                if (valueEnd < 0) {
+                    return false;
+                }
+                addField(i, i, valueEnd, ABSENT);
+            } else {
+                valueEnd = i;
+                while (valueEnd < lineEnd && !isJsonSeparator(buffer.get(valueEnd))) {
+                    valueEnd++;
+                }
+                if (valueEnd == i) {
+                    return false;
+                }
+                boolean isNull = valueEnd - i == 4 && regionMatches(i, "null");
+                addField(i, i, valueEnd, isNull ? ABSENT : PLAIN);
+            }
+            keyStarts[fieldCount - 1] = keyStart;
+            keyEnds[fieldCount - 1] = keyEnd;
+
+            i = skipWhitespace(valueEnd);
+            if (i >= lineEnd) {
+                return false;
+            }
+            if (buffer.get(i) == '}') {
+                return skipWhitespace(i + 1) == lineEnd;
+            }
+            if (buffer.get(i) != ',') {
+                return false;
+            }
+            i = skipWhitespace(i + 1);
+        }
+    }
+
+    // Index of the quote that closes the string opened at quote, or -1
+    private int stringEnd(int quote) {
+        for (int i = quote + 1; i < lineEnd; i++) {
+            byte b = buffer.get(i);
+            if (b == '\\') {
+                i++;
+            } else if (b == '"') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Index just past the object or array opened at open, or -1
+    private int compositeEnd(int open) {
+        int depth = 0;
+        for (int i = open; i < lineEnd; i++) {
+            byte b = buffer.get(i);
+            if (b == '"') {
+                i = stringEnd(i);
+                if (i < 0) {
+                    return -1;
+                }
+            } else if (b == '{' || b == '[') {
+                depth++;
+            } else if ((b == '}' || b == ']') && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private void addField(int rawStart, int start, int end, byte kind) {
+        if (fieldCount == starts.length) {
+            int capacity = fieldCount * 2;
+            rawStarts = Arrays.copyOf(rawStarts, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            keyStarts = Arrays.copyOf(keyStarts, capacity);
+            keyEnds = Arrays.copyOf(keyEnds, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+            slices = Arrays.copyOf(slices, capacity);
+        }
+        rawStarts[fieldCount] = rawStart;
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        kinds[fieldCount] = kind;
+        fieldCount++;
+    }
+
+    private byte[] unescape(int index) {
+        String raw = new String(bytes(starts[index], ends[index]), StandardCharsets.UTF_8);
+        StringBuilder value = new StringBuilder(raw.length());
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (format != DatasetFormat.JSONL) {
+                value.append(c);
+                if (c == '"' && i + 1 < raw.length() && raw.charAt(i + 1) == '"') {
+                    i++;
+                }
+                continue;
+            }
+            if (c != '\\' || i + 1 == raw.length()) {
+                value.append(c);
+                continue;
+            }
+            char escaped = raw.charAt(++i);
+            switch (escaped) {
+                case 'b' -> value.append('\b');
+                case 'f' -> value.append('\f');
+                case 'n' -> value.append('\n');
+                case 'r' -> value.append('\r');
+                case 't' -> value.append('\t');
+                case 'u' -> {
+                    if (i + 4 < raw.length()) {
+                        value.append((char) Integer.parseInt(raw, i + 1, i + 5, 16));
+                        i += 4;
+                    }
+                }
+                default -> value.append(escaped);
+            }
+        }
+        return value.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] bytes(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return bytes;
+    }
+
+    private boolean regionMatches(int start, String ascii) {
+        for (int i = 0; i < ascii.length(); i++) {
+            if (buffer.get(start + i) != ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(byte value, int from) {
+        for (int i = from; i < lineEnd; i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return lineEnd;
+    }
+
+    private int trimEnd(int start, int end) {
+        while (end > start && isBlank(buffer.get(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private int skipWhitespace(int i) {
+        while (i < lineEnd && (isBlank(buffer.get(i)) || buffer.get(i) == '\n')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    private static boolean isJsonSeparator(byte b) {
+        return b == ',' || b == '}' || b == ']' || b == ' ' || b == '\t' || b == '\r';
+    }
+}
@@ -1,7 +1,12 @@
 package net.casim.ml.mm.repository;
 import net.casim.ml.mm.data.LLMModel;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.Optional;
 import java.util.UUID;
 
-public interface ModelRepository extends JpaRepository<LLMModel, UUID> {
+public interface ModelRepository extends JpaRepository<LLMModel, UUID>, ModelRepositoryCustom {
+
+    @EntityGraph(attributePaths = "layers")
+    Optional<LLMModel> findWithLayersById(UUID id);
 }
@@ -0,0 +1,24 @@
+package net.casim.ml.mm.repository;
+
+import net.casim.ml.mm.data.LLMModel;
+import net.casim.ml.mm.data.ModelLayer;
+import net.casim.ml.mm.data.response.ModelSummary;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface ModelRepositoryCustom {
+
+    List<ModelSummary> findSummaries(String status, ModelLayer layer, UUID after, int limit);
+
+    long countSummaries(String status, ModelLayer layer);
+
+    /**
+     * Loads the model with its layers and training data and detaches it, so it can be kept and serialized after the
+     * persistence context is closed.
+     */
+    @Transactional(readOnly = true)
+    Optional<LLMModel> findDetachedById(UUID id);
+}
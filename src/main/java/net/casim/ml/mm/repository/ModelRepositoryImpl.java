@@ -0,0 +1,82 @@
+package net.casim.ml.mm.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import net.casim.ml.mm.data.LLMModel;
+import net.casim.ml.mm.data.ModelLayer;
+import net.casim.ml.mm.data.response.ModelSummary;
+import org.hibernate.Hibernate;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Keyset-paginated model listing. Only the predicates that are actually filtered on are added to the query,
+ * so each filter combination gets its own plan over the (status, id) and (layer, model) indexes.
+ */
+public class ModelRepositoryImpl implements ModelRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<ModelSummary> findSummaries(String status, ModelLayer layer, UUID after, int limit) {
+        StringBuilder jpql = new StringBuilder("select new net.casim.ml.mm.data.response.ModelSummary(" +
+                "m.id, m.name, m.status, m.trainingDuration, m.accuracyPercentage) from LLMModel m where 1 = 1");
+        appendFilters(jpql, status, layer);
+        if (after != null) {
+            jpql.append(" and m.id > :after");
+        }
+        jpql.append(" order by m.id");
+
+        TypedQuery<ModelSummary> query = entityManager.createQuery(jpql.toString(), ModelSummary.class);
+        bindFilters(query, status, layer);
+        if (after != null) {
+            query.setParameter("after", after);
+        }
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public long countSummaries(String status, ModelLayer layer) {
+        StringBuilder jpql = new StringBuilder("select count(m) from LLMModel m where 1 = 1");
+        appendFilters(jpql, status, layer);
+
+        TypedQuery<Long> query = entityManager.createQuery(jpql.toString(), Long.class);
+        bindFilters(query, status, layer);
+        return query.getSingleResult();
+    }
+
+    @Override
+    public Optional<LLMModel> findDetachedById(UUID id) {
+        LLMModel model = entityManager.find(LLMModel.class, id);
+        if (model == null) {
+            return Optional.empty();
+        }
+        Hibernate.initialize(model.getLayers());
+        Hibernate.initialize(model.getAttachments());
+        Hibernate.initialize(model.getTrainingDataList());
+        entityManager.detach(model);
+        return Optional.of(model);
+    }
+
+    private void appendFilters(StringBuilder jpql, String status, ModelLayer layer) {
+        if (status != null) {
+            jpql.append(" and m.status = :status");
+        }
+        if (layer != null) {
+            jpql.append(" and :layer member of m.layers");
+        }
+    }
+
+    private void bindFilters(TypedQuery<?> query, String status, ModelLayer layer) {
+        if (status != null) {
+            query.setParameter("status", status);
+        }
+        if (layer != null) {
+            query.setParameter("layer", layer);
+        }
+    }
+}
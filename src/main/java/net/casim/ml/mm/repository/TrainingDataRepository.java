@@ -2,10 +2,24 @@ package net.casim.ml.mm.repository;
 
 import net.casim.ml.mm.data.TrainingData;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface TrainingDataRepository extends JpaRepository<TrainingData, UUID> {
     Optional<TrainingData> findByModelId(UUID modelId);
+
+    List<TrainingData> findAllByModelId(UUID modelId);
+
+    long countByContentHash(String contentHash);
+
+    @Transactional
+    @Modifying
+    @Query("update TrainingData t set t.columnarPath = :columnarPath where t.contentHash = :contentHash")
+    int updateColumnarPath(@Param("contentHash") String contentHash, @Param("columnarPath") String columnarPath);
 }
@@ -0,0 +1,77 @@
+package net.casim.ml.mm.repository;
+
+import net.casim.ml.mm.data.TrainingJob;
+import net.casim.ml.mm.data.TrainingJobState;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface TrainingJobRepository extends JpaRepository<TrainingJob, UUID>, TrainingJobRepositoryCustom {
+
+    boolean existsByModelIdAndStateIn(UUID modelId, Collection<TrainingJobState> states);
+
+    long countByState(TrainingJobState state);
+
+    List<TrainingJob> findByStateOrderByPriorityDescCreatedAtAsc(TrainingJobState state, Limit limit);
+
+    List<TrainingJob> findByStateAndLeaseExpiresAtBefore(TrainingJobState state, Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("update TrainingJob j set j.state = net.casim.ml.mm.data.TrainingJobState.RUNNING, j.leaseOwner = :owner, " +
+            "j.leaseExpiresAt = :leaseExpiresAt, j.startedAt = :now, j.attempts = j.attempts + 1 " +
+            "where j.id = :id and j.state = net.casim.ml.mm.data.TrainingJobState.QUEUED")
+    int claim(@Param("id") UUID id, @Param("owner") String owner, @Param("now") Instant now,
+              @Param("leaseExpiresAt") Instant leaseExpiresAt);
+
+    @Transactional
+    @Modifying
+    @Query("update TrainingJob j set j.leaseExpiresAt = :leaseExpiresAt " +
+            "where j.id in :ids and j.leaseOwner = :owner and j.state = net.casim.ml.mm.data.TrainingJobState.RUNNING")
+    int renewLeases(@Param("ids") Collection<UUID> ids, @Param("owner") String owner,
+                    @Param("leaseExpiresAt") Instant leaseExpiresAt);
+
+    @Transactional
+    @Modifying
+    @Query("update TrainingJob j set j.state = :state, j.finishedAt = :now, j.leaseOwner = null, j.leaseExpiresAt = null, " +
+            "j.lastError = :error where j.id = :id and j.leaseOwner = :owner " +
+            "and j.state = net.casim.ml.mm.data.TrainingJobState.RUNNING")
+    int finish(@Param("id") UUID id, @Param("owner") String owner, @Param("state") TrainingJobState state,
+               @Param("now") Instant now, @Param("error") String error);
+
+    @Transactional
+    @Modifying
+    @Query("update TrainingJob j set j.state = net.casim.ml.mm.data.TrainingJobState.QUEUED, j.leaseOwner = null, " +
+            "j.leaseExpiresAt = null, j.startedAt = null where j.id = :id and j.leaseOwner = :owner " +
+            "and j.state = net.casim.ml.mm.data.TrainingJobState.RUNNING")
+    int release(@Param("id") UUID id, @Param("owner") String owner);
+
+    @Transactional
+    @Modifying
+    @Query("update TrainingJob j set j.state = net.casim.ml.mm.data.TrainingJobState.QUEUED, j.leaseOwner = null, " +
+            "j.leaseExpiresAt = null, j.startedAt = null, j.lastError = :error where j.id = :id " +
+            "and j.leaseExpiresAt < :now and j.state = net.casim.ml.mm.data.TrainingJobState.RUNNING")
+    int requeueExpired(@Param("id") UUID id, @Param("now") Instant now, @Param("error") String error);
+
+    @Transactional
+    @Modifying
+    @Query("update TrainingJob j set j.state = net.casim.ml.mm.data.TrainingJobState.FAILED, j.leaseOwner = null, " +
+            "j.leaseExpiresAt = null, j.finishedAt = :now, j.lastError = :error where j.id = :id " +
+            "and j.leaseExpiresAt < :now and j.state = net.casim.ml.mm.data.TrainingJobState.RUNNING")
+    int failExpired(@Param("id") UUID id, @Param("now") Instant now, @Param("error") String error);
+
+    @Transactional
+    @Modifying
+    @Query("update TrainingJob j set j.state = net.casim.ml.mm.data.TrainingJobState.FAILED, j.leaseOwner = null, " +
+            "j.leaseExpiresAt = null, j.finishedAt = :now, j.lastError = :error where j.modelId = :modelId " +
+            "and j.state in (net.casim.ml.mm.data.TrainingJobState.QUEUED, net.casim.ml.mm.data.TrainingJobState.RUNNING)")
+    int failActive(@Param("modelId") UUID modelId, @Param("now") Instant now, @Param("error") String error);
+}
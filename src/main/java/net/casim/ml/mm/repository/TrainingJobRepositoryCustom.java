@@ -0,0 +1,16 @@
+package net.casim.ml.mm.repository;
+
+import net.casim.ml.mm.data.TrainingJob;
+import net.casim.ml.mm.service.TrainingScheduler;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface TrainingJobRepositoryCustom {
+
+    /**
+     * Saves {@code job} as queued unless its model already has a queued or running job or {@code capacity} jobs are
+     * queued. Holds a lock on the {@link net.casim.ml.mm.data.TrainingQueue} row while checking and inserting, so
+     * concurrent submissions from any instance cannot both pass the checks.
+     */
+    @Transactional
+    TrainingScheduler.Submission enqueue(TrainingJob job, int capacity);
+}
@@ -0,0 +1,44 @@
+package net.casim.ml.mm.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import net.casim.ml.mm.data.TrainingJob;
+import net.casim.ml.mm.data.TrainingJobState;
+import net.casim.ml.mm.data.TrainingQueue;
+import net.casim.ml.mm.service.TrainingScheduler;
+
+import java.util.List;
+
+public class TrainingJobRepositoryImpl implements TrainingJobRepositoryCustom {
+
+    private static final List<TrainingJobState> ACTIVE_STATES = List.of(TrainingJobState.QUEUED, TrainingJobState.RUNNING);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public TrainingScheduler.Submission enqueue(TrainingJob job, int capacity) {
+        if (entityManager.find(TrainingQueue.class, TrainingQueue.ID, LockModeType.PESSIMISTIC_WRITE) == null) {
+            // First submission ever; a concurrent one inserting the row too fails on the primary key and is retried
+            entityManager.persist(new TrainingQueue(TrainingQueue.ID));
+            entityManager.flush();
+        }
+        Long active = entityManager.createQuery("select count(j) from TrainingJob j "
+                        + "where j.modelId = :modelId and j.state in :states", Long.class)
+                .setParameter("modelId", job.getModelId())
+                .setParameter("states", ACTIVE_STATES)
+                .getSingleResult();
+        if (active > 0) {
+            return TrainingScheduler.Submission.ALREADY_QUEUED;
+        }
+        Long queued = entityManager.createQuery("select count(j) from TrainingJob j where j.state = :state", Long.class)
+                .setParameter("state", TrainingJobState.QUEUED)
+                .getSingleResult();
+        if (queued >= capacity) {
+            return TrainingScheduler.Submission.QUEUE_FULL;
+        }
+        entityManager.persist(job);
+        return TrainingScheduler.Submission.QUEUED;
+    }
+}
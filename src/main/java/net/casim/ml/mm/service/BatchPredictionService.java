@@ -0,0 +1,105 @@
+package net.casim.ml.mm.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.servlet.http.HttpServletResponse;
+import net.casim.ml.mm.data.request.PredictionRequest;
+import net.casim.ml.mm.training.Prediction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Predicts many records per request, in one pass over the model per batch. A JSON array is predicted at once and
+ * limited to {@code inference.batch.max-records} records; a newline-delimited JSON body is read, predicted and answered
+ * {@code inference.batch.stream-chunk-size} records at a time, so it may hold any number of records.
+ */
+@Service
+public class BatchPredictionService {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    // Records may carry other fields, such as the client's ids, as with the JSON bodies Spring reads
+    private static final ObjectReader RECORD_READER = OBJECT_MAPPER.readerFor(PredictionRequest.class)
+            .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    private final ModelRegistry modelRegistry;
+    private final int maxRecords;
+    private final int chunkSize;
+
+    public BatchPredictionService(ModelRegistry modelRegistry,
+                                  @Value("${inference.batch.max-records:10000}") int maxRecords,
+                                  @Value("${inference.batch.stream-chunk-size:1024}") int chunkSize) {
+        this.modelRegistry = modelRegistry;
+        this.maxRecords = maxRecords;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * @throws IllegalArgumentException if there are too many records or a record has no text
+     * @see ModelRegistry#predict(UUID, List)
+     */
+    public List<Prediction> predict(UUID modelId, List<PredictionRequest> records) {
+        if (records.size() > maxRecords) {
+            throw new IllegalArgumentException("A batch holds at most " + maxRecords + " records, stream more as "
+                    + MediaType.APPLICATION_NDJSON_VALUE);
+        }
+        List<String> texts = new ArrayList<>(records.size());
+        for (PredictionRequest record : records) {
+            texts.add(text(record, texts.size()));
+        }
+        return modelRegistry.predict(modelId, texts);
+    }
+
+    /**
+     * Reads one record per line from {@code in} and writes one prediction per line to {@code response}, in order. The
+     * first chunk is predicted before the response is started, so an unknown or untrained model fails the request as
+     * a whole; a malformed record later on ends the response early.
+     *
+     * @throws IllegalArgumentException if a record has no text
+     * @see ModelRegistry#predict(UUID, List)
+     */
+    public void stream(UUID modelId, InputStream in, HttpServletResponse response) throws IOException {
+        try (MappingIterator<PredictionRequest> records = RECORD_READER.readValues(in)) {
+            JsonGenerator out = null;
+            long count = 0;
+            List<String> texts = new ArrayList<>(chunkSize);
+            do {
+                texts.clear();
+                while (texts.size() < chunkSize && records.hasNextValue()) {
+                    texts.add(text(records.nextValue(), count++));
+                }
+                List<Prediction> predictions = modelRegistry.predict(modelId, texts);
+                if (out == null) {
+                    response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+                    out = OBJECT_MAPPER.getFactory().createGenerator(response.getOutputStream());
+                    out.setRootValueSeparator(null);
+                }
+                for (Prediction prediction : predictions) {
+                    out.writeStartObject();
+                    out.writeStringField("label", prediction.getLabel());
+                    out.writeNumberField("confidence", prediction.getConfidence());
+                    out.writeEndObject();
+                    out.writeRaw('\n');
+                }
+                out.flush();
+            } while (texts.size() == chunkSize);
+            out.close();
+        }
+    }
+
+    private static String text(PredictionRequest record, long index) {
+        if (record == null || record.getText() == null) {
+            throw new IllegalArgumentException("Record " + index + " has no text");
+        }
+        return record.getText();
+    }
+}
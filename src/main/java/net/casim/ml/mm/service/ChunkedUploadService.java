@@ -0,0 +1,314 @@
+package net.casim.ml.mm.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.casim.ml.mm.data.LLMModel;
+import net.casim.ml.mm.data.TrainingData;
+import net.casim.ml.mm.data.request.InitiateUploadRequest;
+import net.casim.ml.mm.data.response.UploadSessionStatus;
+import net.casim.ml.mm.exception.ResourceNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resumable uploads: a session preallocates a file of the announced size, chunks are written into it at their
+ * offsets with positional {@link FileChannel} writes (in any order and in parallel), and committing moves the file
+ * into the blob store without copying it. A commit that fails, for example on a hash mismatch, keeps the session and
+ * its chunks so the client can rewrite chunks and commit again; only a successful commit or an abort ends it. Sessions
+ * live in memory and are discarded, with their file, after {@code upload.chunked.session-timeout} without activity,
+ * checked every {@code upload.chunked.expiry-interval}.
+ */
+@Service
+@Slf4j
+public class ChunkedUploadService {
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+
+    private final ModelService modelService;
+    private final FileUploadService fileUploadService;
+    private final long chunkSize;
+    private final long maxSize;
+    private final Duration sessionTimeout;
+    private final Map<UUID, UploadSession> sessions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService expiry = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "upload-session-expiry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ChunkedUploadService(ModelService modelService, FileUploadService fileUploadService,
+                                @Value("${upload.chunked.chunk-size:8MB}") DataSize chunkSize,
+                                @Value("${upload.chunked.max-size:100GB}") DataSize maxSize,
+                                @Value("${upload.chunked.session-timeout:24h}") Duration sessionTimeout,
+                                @Value("${upload.chunked.expiry-interval:1m}") Duration expiryInterval) {
+        this.modelService = modelService;
+        this.fileUploadService = fileUploadService;
+        this.chunkSize = chunkSize.toBytes();
+        this.maxSize = maxSize.toBytes();
+        this.sessionTimeout = sessionTimeout;
+        expiry.scheduleWithFixedDelay(this::expireSessions, expiryInterval.toMillis(), expiryInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    public UploadSessionStatus initiate(UUID modelId, InitiateUploadRequest request) throws IOException {
+        modelService.getModelById(modelId);
+        if (request.getSize() <= 0 || request.getSize() > maxSize) {
+            throw new IllegalArgumentException("Upload size must be between 1 and " + maxSize + " bytes");
+        }
+        String sha256 = request.getSha256() == null ? null : FileUploadService.normalizeHash(request.getSha256());
+
+        Path file = fileUploadService.newTempFile();
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            channel.write(ByteBuffer.allocate(1), request.getSize() - 1);
+        } catch (IOException e) {
+            channel.close();
+            Files.deleteIfExists(file);
+            throw e;
+        }
+
+        UploadSession session = new UploadSession(UUID.randomUUID(), modelId, request.getName(), sha256,
+                request.getSize(), file, channel);
+        session.touch(sessionTimeout);
+        sessions.put(session.id, session);
+        log.info("Initiated upload {} of '{}' ({} bytes, {} chunks) for model {}",
+                session.id, session.name, session.totalSize, session.chunkCount, modelId);
+        return session.status();
+    }
+
+    /**
+     * Writes one chunk described by a {@code Content-Range: bytes start-end/total} header. Chunks must be aligned to
+     * the session's chunk size; rewriting a chunk that was already received is allowed.
+     */
+    public UploadSessionStatus writeChunk(UUID modelId, UUID uploadId, String contentRange, InputStream in)
+            throws IOException {
+        UploadSession session = find(modelId, uploadId);
+        Matcher range = CONTENT_RANGE.matcher(contentRange == null ? "" : contentRange.trim());
+        if (!range.matches()) {
+            throw new IllegalArgumentException("Content-Range must be 'bytes start-end/total'");
+        }
+        long start = Long.parseLong(range.group(1));
+        long end = Long.parseLong(range.group(2));
+        long total = Long.parseLong(range.group(3));
+        if (total != session.totalSize || start % chunkSize != 0 || start >= total
+                || end != Math.min(start + chunkSize, total) - 1) {
+            throw new IllegalArgumentException("Range " + start + "-" + end + "/" + total
+                    + " is not a chunk of this upload (chunk size " + chunkSize + ")");
+        }
+
+        session.lock.readLock().lock();
+        try {
+            session.checkOpen();
+            long startedAt = System.nanoTime();
+            writeAt(session.channel, in, start, end - start + 1);
+            fileUploadService.recordTransfer("chunk", end - start + 1, System.nanoTime() - startedAt);
+            session.markReceived((int) (start / chunkSize));
+            session.touch(sessionTimeout);
+        } finally {
+            session.lock.readLock().unlock();
+        }
+        return session.status();
+    }
+
+    public UploadSessionStatus getStatus(UUID modelId, UUID uploadId) {
+        return find(modelId, uploadId).status();
+    }
+
+    /**
+     * Stores the uploaded file as training data of the model. The session ends only once it is stored: if storing
+     * fails, its chunks are kept and the commit can be retried.
+     */
+    public TrainingData commit(UUID modelId, UUID uploadId) throws IOException {
+        UploadSession session = find(modelId, uploadId);
+        session.lock.writeLock().lock();
+        try {
+            session.checkOpen();
+            List<Integer> missing = session.missingChunks();
+            if (!missing.isEmpty()) {
+                throw new IllegalStateException("Upload is missing " + missing.size() + " chunks");
+            }
+            session.channel.force(false);
+            LLMModel model = modelService.getModelForUpdate(modelId);
+            TrainingData trainingData;
+            try {
+                trainingData = fileUploadService.saveTrainingData(model, session.name, session.file, session.sha256);
+            } catch (IOException | RuntimeException e) {
+                session.touch(sessionTimeout);
+                log.warn("Commit of upload {} failed, its chunks are kept: {}", uploadId, e.getMessage());
+                throw e;
+            }
+            session.close();
+            sessions.remove(uploadId);
+            log.info("Committed upload {} as blob {}", uploadId, trainingData.getContentHash());
+            return trainingData;
+        } finally {
+            session.lock.writeLock().unlock();
+        }
+    }
+
+    public void abort(UUID modelId, UUID uploadId) throws IOException {
+        UploadSession session = find(modelId, uploadId);
+        session.lock.writeLock().lock();
+        try {
+            discard(session);
+        } finally {
+            session.lock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        expiry.shutdownNow();
+        sessions.values().forEach(this::discardQuietly);
+    }
+
+    void expireSessions() {
+        Instant now = Instant.now();
+        for (UploadSession session : sessions.values()) {
+            if (session.expiresAt.isBefore(now) && session.lock.writeLock().tryLock()) {
+                try {
+                    log.info("Upload {} expired", session.id);
+                    discardQuietly(session);
+                } finally {
+                    session.lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    private void discard(UploadSession session) throws IOException {
+        if (session.closed) {
+            return;
+        }
+        session.close();
+        sessions.remove(session.id);
+        Files.deleteIfExists(session.file);
+    }
+
+    private void discardQuietly(UploadSession session) {
+        try {
+            discard(session);
+        } catch (IOException e) {
+            log.warn("Failed to discard upload {}", session.id, e);
+        }
+    }
+
+    private UploadSession find(UUID modelId, UUID uploadId) {
+        UploadSession session = sessions.get(uploadId);
+        if (session == null || !session.modelId.equals(modelId)) {
+            throw new ResourceNotFoundException("Upload not found with id " + uploadId);
+        }
+        return session;
+    }
+
+    private static void writeAt(FileChannel channel, InputStream in, long position, long length) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+        long written = 0;
+        while (written < length) {
+            int read = in.readNBytes(buffer, 0, (int) Math.min(BUFFER_SIZE, length - written));
+            if (read == 0) {
+                throw new IllegalArgumentException("Chunk ended after " + written + " of " + length + " bytes");
+            }
+            byteBuffer.clear().limit(read);
+            while (byteBuffer.hasRemaining()) {
+                written += channel.write(byteBuffer, position + written);
+            }
+        }
+        if (in.read() != -1) {
+            throw new IllegalArgumentException("Chunk is longer than its range of " + length + " bytes");
+        }
+    }
+
+    private final class UploadSession {
+
+        private final UUID id;
+        private final UUID modelId;
+        private final String name;
+        private final String sha256;
+        private final long totalSize;
+        private final int chunkCount;
+        private final Path file;
+        private final FileChannel channel;
+        private final BitSet received;
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private volatile Instant expiresAt;
+        private volatile boolean closed;
+
+        private UploadSession(UUID id, UUID modelId, String name, String sha256, long totalSize, Path file,
+                              FileChannel channel) {
+            this.id = id;
+            this.modelId = modelId;
+            this.name = name;
+            this.sha256 = sha256;
+            this.totalSize = totalSize;
+            this.chunkCount = Math.toIntExact((totalSize + chunkSize - 1) / chunkSize);
+            this.file = file;
+            this.channel = channel;
+            this.received = new BitSet(chunkCount);
+        }
+
+        private void touch(Duration timeout) {
+            expiresAt = Instant.now().plus(timeout);
+        }
+
+        private void checkOpen() {
+            if (closed) {
+                throw new IllegalStateException("Upload " + id + " is already committed or aborted");
+            }
+        }
+
+        private void close() throws IOException {
+            closed = true;
+            channel.force(false);
+            channel.close();
+        }
+
+        private synchronized void markReceived(int chunk) {
+            received.set(chunk);
+        }
+
+        private synchronized List<Integer> missingChunks() {
+            List<Integer> missing = new ArrayList<>();
+            for (int i = received.nextClearBit(0); i < chunkCount; i = received.nextClearBit(i + 1)) {
+                missing.add(i);
+            }
+            return missing;
+        }
+
+        private synchronized long receivedBytes() {
+            long bytes = received.cardinality() * chunkSize;
+            return received.get(chunkCount - 1) ? bytes - ((long) chunkCount * chunkSize - totalSize) : bytes;
+        }
+
+        private UploadSessionStatus status() {
+            return new UploadSessionStatus(id, name, totalSize, chunkSize, receivedBytes(), missingChunks(), expiresAt);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package net.casim.ml.mm.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.casim.ml.mm.data.TrainingData;
+import net.casim.ml.mm.repository.TrainingDataRepository;
+import net.casim.ml.mm.training.ColumnarDataset;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Converts uploaded training data into its {@link ColumnarDataset columnar form} once, in the background, so that
+ * every training run on it can skip parsing and tokenizing. The dataset is written next to the blob under a temporary
+ * name and renamed into place when complete, then recorded on every {@link TrainingData} row with the blob's hash.
+ * Until then, and if ingestion fails, training reads the original file.
+ */
+@Service
+@Slf4j
+public class DatasetIngestService {
+
+    private final TrainingDataRepository trainingDataRepository;
+    private final boolean enabled;
+    private final Map<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "dataset-ingest");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public DatasetIngestService(TrainingDataRepository trainingDataRepository,
+                                @Value("${training.ingest.enabled:true}") boolean enabled) {
+        this.trainingDataRepository = trainingDataRepository;
+        this.enabled = enabled;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTrainingDataStored(TrainingDataStoredEvent event) {
+        if (enabled) {
+            ingest(event.getTrainingData());
+        }
+    }
+
+    /**
+     * Ingests the blob of {@code trainingData} unless that is already done or under way.
+     *
+     * @return the directory of the columnar dataset, completed once it is written and recorded
+     */
+    public CompletableFuture<Path> ingest(TrainingData trainingData) {
+        String hash = trainingData.getContentHash();
+        Path blob = Path.of(trainingData.getFilePath());
+        String name = trainingData.getName();
+        CompletableFuture<Path> future = new CompletableFuture<>();
+        CompletableFuture<Path> running = inFlight.putIfAbsent(hash, future);
+        if (running != null) {
+            return running;
+        }
+        executor.execute(() -> {
+            Path directory = null;
+            Exception error = null;
+            try {
+                directory = ingest(hash, blob, name);
+            } catch (Exception e) {
+                log.warn("Could not ingest training data blob {}, training will read the original file", hash, e);
+                error = e;
+            }
+            // Stop sharing the future before completing it, so that later calls check the dataset again
+            inFlight.remove(hash, future);
+            if (error == null) {
+                future.complete(directory);
+            } else {
+                future.completeExceptionally(error);
+            }
+        });
+        return future;
+    }
+
+    private Path ingest(String hash, Path blob, String name) throws IOException {
+        Path directory = ColumnarDataset.directoryFor(blob);
+        ColumnarDataset existing = ColumnarDataset.open(directory);
+        if (existing == null || existing.getManifest().getSourceSize() != Files.size(blob)) {
+            long startedAt = System.nanoTime();
+            Path temp = directory.resolveSibling(directory.getFileName() + "." + UUID.randomUUID() + ".tmp");
+            try {
+                ColumnarDataset.Manifest manifest = ColumnarDataset.write(blob, name, temp);
+                FileUploadService.deleteDirectory(directory);
+                Files.move(temp, directory, StandardCopyOption.ATOMIC_MOVE);
+                log.info("Ingested training data blob {}: {} rows, {} labels, {} distinct tokens, {} bytes in {} ms",
+                        hash, manifest.getRows(), manifest.getLabels(), manifest.getVocabularySize(),
+                        manifest.getBlockOffsets()[manifest.getBlockOffsets().length - 1],
+                        (System.nanoTime() - startedAt) / 1_000_000);
+            } finally {
+                FileUploadService.deleteDirectory(temp);
+            }
+        }
+        if (trainingDataRepository.updateColumnarPath(hash, directory.toString()) == 0) {
+            // Every row was deleted while ingesting, and the blob with them
+            FileUploadService.deleteDirectory(directory);
+        }
+        return directory;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
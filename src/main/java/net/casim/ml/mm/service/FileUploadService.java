@@ -1,33 +1,345 @@
 package net.casim.ml.mm.service;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import net.casim.ml.mm.data.LLMModel;
+import net.casim.ml.mm.data.TrainingData;
+import net.casim.ml.mm.repository.TrainingDataRepository;
+import net.casim.ml.mm.training.ColumnarDataset;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.util.unit.DataSize;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
+/**
+ * Stores training data as content-addressed blobs under {@code <upload-dir>/blobs/<xx>/<sha256>}. A blob is shared
+ * by every {@link TrainingData} row with the same content hash and is deleted by {@link #release} once the last of
+ * those rows is gone. Publishing a blob, attaching it to a row and collecting it are serialized per hash so an
+ * upload cannot attach to a blob that is being deleted.
+ * <p>
+ * Every saved row is announced with a {@link TrainingDataStoredEvent}, so the blob can be ingested for training.
+ * The size of every received file is published as {@code uploads.size}, and the rate at which request bodies are
+ * received as {@code uploads.throughput}.
+ */
 @Service
 @Slf4j
 public class FileUploadService {
 
-    private static final String UPLOAD_DIR = "D:\\projects\\ML-Model-Management\\uploads";
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}");
 
-    public File saveFile(MultipartFile file) throws IOException {
-        log.debug("Saving uploaded file: {}", file.getOriginalFilename());
+    private final TrainingDataRepository trainingDataRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Path blobDir;
+    private final Path tempDir;
+    private final Object[] hashLocks = new Object[64];
+    private final DistributionSummary fileSizes;
+    private final Map<String, DistributionSummary> throughputs;
 
-        File uploadDir = new File(UPLOAD_DIR);
-        if (!uploadDir.exists()) {
-            boolean dirCreated = uploadDir.mkdirs();
-            log.debug("Upload directory created: {}", dirCreated);
+    public FileUploadService(TrainingDataRepository trainingDataRepository, ApplicationEventPublisher eventPublisher,
+                             @Value("${file.upload-dir:uploads}") String uploadDir, MeterRegistry meterRegistry) {
+        this.trainingDataRepository = trainingDataRepository;
+        this.eventPublisher = eventPublisher;
+        this.fileSizes = DistributionSummary.builder("uploads.size")
+                .description("Size of received training data files")
+                .baseUnit("bytes")
+                .minimumExpectedValue(1024.0)
+                .maximumExpectedValue((double) DataSize.ofGigabytes(100).toBytes())
+                .register(meterRegistry);
+        this.throughputs = Map.of("stream", throughput("stream", meterRegistry),
+                "chunk", throughput("chunk", meterRegistry));
+        Path root = Paths.get(uploadDir).toAbsolutePath();
+        this.blobDir = root.resolve("blobs");
+        this.tempDir = root.resolve("tmp");
+        for (int i = 0; i < hashLocks.length; i++) {
+            hashLocks[i] = new Object();
         }
+    }
+
+    /**
+     * Streams {@code in} into the blob store and returns the blob. Nothing references the blob until a
+     * {@link TrainingData} row is saved for it, so callers attaching data to a model should use
+     * {@link #saveTrainingData} instead.
+     */
+    public StoredFile store(InputStream in) throws IOException {
+        StoredFile upload = writeTemp(in);
+        try {
+            synchronized (lockFor(upload.getContentHash())) {
+                return publish(upload);
+            }
+        } finally {
+            Files.deleteIfExists(upload.getPath());
+        }
+    }
+
+    /**
+     * Streams {@code in} into the blob store and attaches it to {@code model}. If a blob with the same hash already
+     * exists the uploaded copy is discarded. When {@code expectedHash} is given and does not match the content, the
+     * upload is rejected with an {@link IllegalArgumentException}.
+     */
+    public TrainingData saveTrainingData(LLMModel model, String name, InputStream in, String expectedHash)
+            throws IOException {
+        String expected = expectedHash == null ? null : normalizeHash(expectedHash);
+        StoredFile upload = writeTemp(in);
+        try {
+            return attach(model, name, upload, expected);
+        } finally {
+            Files.deleteIfExists(upload.getPath());
+        }
+    }
+
+    /**
+     * Moves a fully written file, created with {@link #newTempFile}, into the blob store and attaches it to
+     * {@code model}. The file is hashed in place and renamed rather than copied. If this fails, the file is left where
+     * it was, so the caller can retry or discard it.
+     */
+    public TrainingData saveTrainingData(LLMModel model, String name, Path file, String expectedHash)
+            throws IOException {
+        String expected = expectedHash == null ? null : normalizeHash(expectedHash);
+        TrainingData trainingData = attach(model, name, new StoredFile(file, Files.size(file), hash(file)), expected);
+        // Still there if the blob was already stored
+        Files.deleteIfExists(file);
+        return trainingData;
+    }
+
+    /**
+     * Returns a path for a new, not yet created, file on the same file system as the blob store.
+     */
+    public Path newTempFile() throws IOException {
+        Files.createDirectories(tempDir);
+        return tempDir.resolve(UUID.randomUUID() + ".part");
+    }
+
+    /**
+     * Attaches an already stored blob to {@code model} without any upload. Returns empty if the blob is unknown.
+     */
+    public Optional<TrainingData> attachExisting(LLMModel model, String name, String contentHash) throws IOException {
+        String hash = normalizeHash(contentHash);
+        synchronized (lockFor(hash)) {
+            Path blob = blobPath(hash);
+            if (!Files.exists(blob)) {
+                return Optional.empty();
+            }
+            log.info("Attaching existing blob {} to model {}", hash, model.getId());
+            StoredFile storedFile = new StoredFile(blob, Files.size(blob), hash);
+            return Optional.of(saveTrainingData(newTrainingData(model, name, storedFile)));
+        }
+    }
+
+    /**
+     * Deletes the blobs for {@code contentHashes} that are no longer referenced by any {@link TrainingData} row.
+     * Must be called after the rows have been deleted.
+     */
+    public void release(Collection<String> contentHashes) {
+        for (String hash : new LinkedHashSet<>(contentHashes)) {
+            if (hash == null || !SHA256_HEX.matcher(hash).matches()) {
+                continue;
+            }
+            synchronized (lockFor(hash)) {
+                if (trainingDataRepository.countByContentHash(hash) > 0) {
+                    continue;
+                }
+                try {
+                    if (Files.deleteIfExists(blobPath(hash))) {
+                        log.info("Deleted unreferenced blob {}", hash);
+                    }
+                    deleteDirectory(ColumnarDataset.directoryFor(blobPath(hash)));
+                } catch (IOException e) {
+                    log.warn("Failed to delete unreferenced blob {}", hash, e);
+                }
+            }
+        }
+    }
+
+    private TrainingData attach(LLMModel model, String name, StoredFile upload, String expectedHash)
+            throws IOException {
+        if (expectedHash != null && !expectedHash.equals(upload.getContentHash())) {
+            throw new IllegalArgumentException("Content hash mismatch: expected " + expectedHash
+                    + " but received " + upload.getContentHash());
+        }
+        synchronized (lockFor(upload.getContentHash())) {
+            StoredFile blob = publish(upload);
+            TrainingData saved;
+            try {
+                saved = trainingDataRepository.save(newTrainingData(model, name, blob));
+            } catch (RuntimeException e) {
+                // Nothing references a blob this upload just created, so it is moved back to the caller's file
+                if (!Files.exists(upload.getPath())) {
+                    try {
+                        Files.move(blob.getPath(), upload.getPath(), StandardCopyOption.ATOMIC_MOVE);
+                    } catch (IOException moveBack) {
+                        e.addSuppressed(moveBack);
+                    }
+                }
+                throw e;
+            }
+            eventPublisher.publishEvent(new TrainingDataStoredEvent(saved));
+            return saved;
+        }
+    }
+
+    /**
+     * Records that {@code bytes} of an upload of the given {@code type}, {@code stream} or {@code chunk}, were
+     * received in {@code nanos}.
+     */
+    public void recordTransfer(String type, long bytes, long nanos) {
+        DistributionSummary throughput = throughputs.get(type);
+        if (throughput == null) {
+            throw new IllegalArgumentException("Unknown upload type: " + type);
+        }
+        if (bytes > 0 && nanos > 0) {
+            throughput.record(bytes * 1e9 / nanos);
+        }
+    }
+
+    private static DistributionSummary throughput(String type, MeterRegistry meterRegistry) {
+        return DistributionSummary.builder("uploads.throughput")
+                .description("Rate at which upload request bodies were received and written")
+                .baseUnit("bytes.per.second")
+                .minimumExpectedValue(1024.0)
+                .maximumExpectedValue((double) DataSize.ofGigabytes(10).toBytes())
+                .tag("type", type)
+                .register(meterRegistry);
+    }
 
-        File savedFile = new File(uploadDir, Objects.requireNonNull(file.getOriginalFilename()));
-        file.transferTo(savedFile);
+    /**
+     * Deletes {@code directory} and the files in it, if it exists.
+     */
+    public static void deleteDirectory(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    private TrainingData saveTrainingData(TrainingData trainingData) {
+        TrainingData saved = trainingDataRepository.save(trainingData);
+        eventPublisher.publishEvent(new TrainingDataStoredEvent(saved));
+        return saved;
+    }
+
+    private StoredFile writeTemp(InputStream in) throws IOException {
+        Path temp = newTempFile();
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+        long size = 0;
+        long startedAt = System.nanoTime();
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            int read;
+            while ((read = in.readNBytes(buffer, 0, BUFFER_SIZE)) > 0) {
+                digest.update(buffer, 0, read);
+                byteBuffer.clear().limit(read);
+                while (byteBuffer.hasRemaining()) {
+                    channel.write(byteBuffer);
+                }
+                size += read;
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        recordTransfer("stream", size, System.nanoTime() - startedAt);
+        return new StoredFile(temp, size, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    private static String hash(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private StoredFile publish(StoredFile upload) throws IOException {
+        fileSizes.record(upload.getSize());
+        Path blob = blobPath(upload.getContentHash());
+        if (Files.exists(blob)) {
+            log.info("Blob {} already stored, discarding duplicate upload of {} bytes",
+                    upload.getContentHash(), upload.getSize());
+        } else {
+            Files.createDirectories(blob.getParent());
+            Files.move(upload.getPath(), blob, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Stored blob {} ({} bytes) at '{}'", upload.getContentHash(), upload.getSize(), blob);
+        }
+        return new StoredFile(blob, upload.getSize(), upload.getContentHash());
+    }
+
+    private TrainingData newTrainingData(LLMModel model, String name, StoredFile storedFile) {
+        TrainingData trainingData = new TrainingData();
+        trainingData.setName(name);
+        trainingData.setSize(storedFile.getSize());
+        trainingData.setContentHash(storedFile.getContentHash());
+        trainingData.setFilePath(storedFile.getPath().toString());
+        trainingData.setUploadDate(LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME));
+        trainingData.setModel(model);
+        return trainingData;
+    }
+
+    private Path blobPath(String hash) {
+        return blobDir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private Object lockFor(String hash) {
+        return hashLocks[Math.floorMod(hash.hashCode(), hashLocks.length)];
+    }
+
+    public static String normalizeHash(String hash) {
+        String normalized = Objects.requireNonNull(hash).toLowerCase();
+        if (!SHA256_HEX.matcher(normalized).matches()) {
+            throw new IllegalArgumentException("Invalid SHA-256 hash: " + hash);
+        }
+        return normalized;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
 
-        log.info("File '{}' saved successfully at '{}'", file.getOriginalFilename(), savedFile.getAbsolutePath());
-        return savedFile;
+    @lombok.Value
+    public static class StoredFile {
+        Path path;
+        long size;
+        String contentHash;
     }
 
 }
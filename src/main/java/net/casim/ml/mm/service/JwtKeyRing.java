@@ -0,0 +1,477 @@
+package net.casim.ml.mm.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keys used to sign and verify JWTs. With {@code HS256} this is the single shared secret. With {@code RS256} or
+ * {@code ES256} the ring holds key pairs identified by the {@code kid} header: the active key signs new tokens, the
+ * next key is already published so verifiers caching the key set know it before it is used, and retired keys stay
+ * published until every token they signed has expired. Keys rotate every {@code security.jwt.rotation-interval}.
+ * <p>
+ * Key pairs live in {@code security.jwt.key-file}, which is required for them: keys kept only in memory would
+ * invalidate every token on restart and could not be shared. Instances sharing the file share the ring. Only the
+ * instance with {@code security.jwt.rotate=true} creates and rotates it; every instance re-reads the file every
+ * {@code security.jwt.reload-interval}, and when a token names a key it does not know, so tokens signed by another
+ * instance verify everywhere. The file is only readable by its owner, and a rotation that cannot be saved fails and
+ * keeps the current keys.
+ * <p>
+ * The ring is replaced as a whole on rotation and reload, so looking up a known key by id never locks.
+ */
+@Component
+@Slf4j
+public class JwtKeyRing {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final long RELOAD_ON_UNKNOWN_KEY_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private final SignatureAlgorithm algorithm;
+    private final String secretKey;
+    private final Duration tokenLifetime;
+    private final Duration rotationInterval;
+    private final Path keyFile;
+    private final boolean rotate;
+    private ScheduledExecutorService scheduler;
+
+    // Contents of the key file the ring was last loaded from or saved to, to tell whether it changed since
+    private byte[] keyFileContent;
+    private volatile long lastReloadCheck;
+
+    // Built on first use so a misconfigured HMAC key fails the first request rather than startup
+    private volatile SigningKey hmacKey;
+    private volatile Ring ring;
+
+    public JwtKeyRing(@Value("${security.jwt.algorithm:HS256}") String algorithm,
+                      @Value("${security.jwt.secret-key:}") String secretKey,
+                      @Value("${security.jwt.expiration-time}") long tokenLifetimeMillis,
+                      @Value("${security.jwt.rotation-interval:24h}") Duration rotationInterval,
+                      @Value("${security.jwt.key-file:}") String keyFile,
+                      @Value("${security.jwt.rotate:true}") boolean rotate,
+                      @Value("${security.jwt.reload-interval:1m}") Duration reloadInterval) {
+        this.algorithm = SignatureAlgorithm.forName(algorithm);
+        if (this.algorithm != SignatureAlgorithm.HS256 && this.algorithm != SignatureAlgorithm.RS256
+                && this.algorithm != SignatureAlgorithm.ES256) {
+            throw new IllegalArgumentException("Unsupported JWT algorithm " + algorithm + ", use HS256, RS256 or ES256");
+        }
+        this.secretKey = secretKey;
+        this.tokenLifetime = Duration.ofMillis(tokenLifetimeMillis);
+        this.rotationInterval = rotationInterval;
+        this.keyFile = keyFile.isBlank() ? null : Paths.get(keyFile).toAbsolutePath();
+        this.rotate = rotate;
+        this.lastReloadCheck = System.nanoTime() - RELOAD_ON_UNKNOWN_KEY_INTERVAL;
+
+        if (!isAsymmetric()) {
+            return;
+        }
+        if (this.keyFile == null) {
+            throw new IllegalStateException("security.jwt.key-file must be set for " + algorithm + ", keys kept in "
+                    + "memory would invalidate every token on restart and could not be shared between instances");
+        }
+        // The next key is published one rotation ahead, so every instance knows it before it signs
+        if (reloadInterval.compareTo(rotationInterval) >= 0) {
+            throw new IllegalArgumentException("security.jwt.reload-interval must be shorter than "
+                    + "security.jwt.rotation-interval");
+        }
+        this.ring = rotate ? loadOrCreate(Instant.now()) : loadShared();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "jwt-keys");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::maintainQuietly, reloadInterval.toMillis(), reloadInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isAsymmetric() {
+        return algorithm != SignatureAlgorithm.HS256;
+    }
+
+    /**
+     * The key new tokens are signed with.
+     */
+    public SigningKey activeKey() {
+        return isAsymmetric() ? ring.active : hmacKey();
+    }
+
+    /**
+     * Returns the key that verifies tokens carrying {@code kid}, or {@code null} if the key is unknown or has been
+     * dropped. An unknown key may have just been created by another instance, so the key file is re-read first, at
+     * most once a second.
+     */
+    public SigningKey verificationKey(String kid) {
+        if (!isAsymmetric()) {
+            return kid == null ? hmacKey() : null;
+        }
+        if (kid == null) {
+            return null;
+        }
+        SigningKey key = ring.keys.get(kid);
+        if (key == null && System.nanoTime() - lastReloadCheck >= RELOAD_ON_UNKNOWN_KEY_INTERVAL) {
+            reload();
+            key = ring.keys.get(kid);
+        }
+        return key;
+    }
+
+    /**
+     * The public keys of the ring as a JSON Web Key Set. Empty for {@code HS256}, whose key must never be published.
+     */
+    public String getJwks() {
+        return isAsymmetric() ? ring.jwks : "{\"keys\":[]}";
+    }
+
+    /**
+     * An ETag for {@link #getJwks()} that changes on every rotation.
+     */
+    public String getJwksTag() {
+        return isAsymmetric() ? ring.jwksTag : "empty";
+    }
+
+    /**
+     * How long verifiers may cache the key set. Shorter than the rotation interval, so the next key is always
+     * fetched before it starts signing.
+     */
+    public Duration getJwksMaxAge() {
+        return rotationInterval.dividedBy(2);
+    }
+
+    public void rotate() {
+        rotate(Instant.now());
+    }
+
+    synchronized void rotate(Instant now) {
+        if (!isAsymmetric()) {
+            throw new IllegalStateException("HS256 keys are not rotated, change security.jwt.secret-key instead");
+        }
+        List<SigningKey> keys = new ArrayList<>();
+        for (SigningKey key : ring.keys.values()) {
+            if (key == ring.active) {
+                keys.add(key.retire(now));
+            } else if (key == ring.next) {
+                keys.add(key.activate(now));
+            } else if (key.getRetiredAt().plus(tokenLifetime).isAfter(now)) {
+                keys.add(key);
+            } else {
+                log.info("Dropping JWT key {}, every token it signed has expired", key.getKid());
+            }
+        }
+        keys.add(generate());
+        Ring rotated = new Ring(keys);
+        // Saved first: a key that only this instance knows would sign tokens that others and restarts reject
+        save(rotated);
+        ring = rotated;
+        log.info("Rotated JWT signing key to {}, next key is {}", rotated.active.getKid(), rotated.next.getKid());
+    }
+
+    /**
+     * Picks up changes to the key file, then rotates if this instance rotates and the active key is due.
+     */
+    void maintain(Instant now) {
+        reload();
+        if (rotate && !now.isBefore(ring.active.getActivatedAt().plus(rotationInterval))) {
+            rotate(now);
+        }
+    }
+
+    /**
+     * Replaces the ring with the contents of the key file if the file changed since it was last loaded or saved.
+     *
+     * @return whether the ring was replaced
+     */
+    synchronized boolean reload() {
+        lastReloadCheck = System.nanoTime();
+        try {
+            byte[] content = Files.readAllBytes(keyFile);
+            if (Arrays.equals(content, keyFileContent)) {
+                return false;
+            }
+            Ring loaded = parse(content);
+            if (loaded.active.getAlgorithm() != algorithm) {
+                log.warn("JWT key file '{}' now holds {} keys but {} is configured, keeping key {}", keyFile,
+                        loaded.active.getAlgorithm(), algorithm, ring.active.getKid());
+                return false;
+            }
+            ring = loaded;
+            keyFileContent = content;
+            log.info("Reloaded {} JWT keys from '{}', active key is {}", loaded.keys.size(), keyFile,
+                    loaded.active.getKid());
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            log.warn("Failed to reload JWT keys from '{}', keeping key {}", keyFile, ring.active.getKid(), e);
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void maintainQuietly() {
+        try {
+            maintain(Instant.now());
+        } catch (RuntimeException e) {
+            log.error("JWT key maintenance failed, keeping key {}", ring.active.getKid(), e);
+        }
+    }
+
+    private SigningKey hmacKey() {
+        SigningKey key = hmacKey;
+        if (key == null) {
+            Key secret = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
+            key = new SigningKey(null, algorithm, secret, secret, null, null);
+            hmacKey = key;
+        }
+        return key;
+    }
+
+    private Ring loadShared() {
+        if (!Files.exists(keyFile)) {
+            throw new IllegalStateException("JWT key file '" + keyFile + "' does not exist, it is created by the "
+                    + "instance with security.jwt.rotate=true");
+        }
+        Ring loaded = load();
+        if (loaded.active.getAlgorithm() != algorithm) {
+            throw new IllegalStateException("JWT key file '" + keyFile + "' holds " + loaded.active.getAlgorithm()
+                    + " keys but " + algorithm + " is configured");
+        }
+        log.info("Loaded {} JWT keys from '{}', active key is {}", loaded.keys.size(), keyFile, loaded.active.getKid());
+        return loaded;
+    }
+
+    private Ring loadOrCreate(Instant now) {
+        if (Files.exists(keyFile)) {
+            Ring loaded = load();
+            if (loaded.active.getAlgorithm() == algorithm) {
+                log.info("Loaded {} JWT keys from '{}', active key is {}", loaded.keys.size(), keyFile,
+                        loaded.active.getKid());
+                return loaded;
+            }
+            log.warn("JWT key file '{}' holds {} keys but {} is configured, generating new keys",
+                    keyFile, loaded.active.getAlgorithm(), algorithm);
+        }
+        Ring created = new Ring(List.of(generate().activate(now), generate()));
+        save(created);
+        return created;
+    }
+
+    private SigningKey generate() {
+        KeyPair keyPair = Keys.keyPairFor(algorithm);
+        return new SigningKey(UUID.randomUUID().toString(), algorithm, keyPair.getPrivate(), keyPair.getPublic(),
+                null, null);
+    }
+
+    private Ring load() {
+        try {
+            byte[] content = Files.readAllBytes(keyFile);
+            Ring loaded = parse(content);
+            keyFileContent = content;
+            return loaded;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read JWT keys from '" + keyFile + "'", e);
+        }
+    }
+
+    private Ring parse(byte[] content) {
+        try {
+            List<StoredKey> stored = OBJECT_MAPPER.readValue(content, new TypeReference<List<StoredKey>>() {
+            });
+            List<SigningKey> keys = new ArrayList<>();
+            for (StoredKey key : stored) {
+                SignatureAlgorithm keyAlgorithm = SignatureAlgorithm.forName(key.getAlgorithm());
+                KeyFactory keyFactory = KeyFactory.getInstance(keyAlgorithm.getFamilyName().startsWith("RSA") ? "RSA" : "EC");
+                PrivateKey privateKey = keyFactory.generatePrivate(
+                        new PKCS8EncodedKeySpec(Base64.getDecoder().decode(key.getPrivateKey())));
+                PublicKey publicKey = keyFactory.generatePublic(
+                        new X509EncodedKeySpec(Base64.getDecoder().decode(key.getPublicKey())));
+                keys.add(new SigningKey(key.getKid(), keyAlgorithm, privateKey, publicKey,
+                        key.getActivatedAt() == null ? null : Instant.ofEpochMilli(key.getActivatedAt()),
+                        key.getRetiredAt() == null ? null : Instant.ofEpochMilli(key.getRetiredAt())));
+            }
+            return new Ring(keys);
+        } catch (IOException | GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to read JWT keys from '" + keyFile + "'", e);
+        }
+    }
+
+    private void save(Ring ring) {
+        List<StoredKey> stored = new ArrayList<>();
+        for (SigningKey key : ring.keys.values()) {
+            stored.add(new StoredKey(key.getKid(), key.getAlgorithm().getValue(),
+                    Base64.getEncoder().encodeToString(key.getSigningKey().getEncoded()),
+                    Base64.getEncoder().encodeToString(key.getVerificationKey().getEncoded()),
+                    key.getActivatedAt() == null ? null : key.getActivatedAt().toEpochMilli(),
+                    key.getRetiredAt() == null ? null : key.getRetiredAt().toEpochMilli()));
+        }
+        try {
+            Files.createDirectories(keyFile.getParent());
+            Path temp = keyFile.resolveSibling(keyFile.getFileName() + ".tmp");
+            byte[] content = OBJECT_MAPPER.writeValueAsBytes(stored);
+            Files.deleteIfExists(temp);
+            createOwnerOnly(temp);
+            Files.write(temp, content);
+            Files.move(temp, keyFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            keyFileContent = content;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to save JWT keys to '" + keyFile + "'", e);
+        }
+    }
+
+    // Restricted before the private keys are written, so they are never readable by others
+    private static void createOwnerOnly(Path file) throws IOException {
+        if (Files.getFileStore(file.getParent()).supportsFileAttributeView(PosixFileAttributeView.class)) {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+            return;
+        }
+        Files.createFile(file);
+        File created = file.toFile();
+        if (!(created.setReadable(false, false) && created.setReadable(true, true)
+                && created.setWritable(false, false) && created.setWritable(true, true))) {
+            Files.delete(file);
+            throw new IOException("Cannot restrict '" + file + "' to its owner");
+        }
+    }
+
+    private static Map<String, String> toJwk(SigningKey key) {
+        Map<String, String> jwk = new LinkedHashMap<>();
+        if (key.getVerificationKey() instanceof RSAPublicKey rsa) {
+            jwk.put("kty", "RSA");
+            jwk.put("n", base64Url(rsa.getModulus(), 0));
+            jwk.put("e", base64Url(rsa.getPublicExponent(), 0));
+        } else {
+            ECPublicKey ec = (ECPublicKey) key.getVerificationKey();
+            jwk.put("kty", "EC");
+            jwk.put("crv", "P-256");
+            jwk.put("x", base64Url(ec.getW().getAffineX(), 32));
+            jwk.put("y", base64Url(ec.getW().getAffineY(), 32));
+        }
+        jwk.put("kid", key.getKid());
+        jwk.put("use", "sig");
+        jwk.put("alg", key.getAlgorithm().getValue());
+        return jwk;
+    }
+
+    // Unsigned big-endian, left-padded to length for EC coordinates (RFC 7518 section 6)
+    private static String base64Url(BigInteger value, int length) {
+        byte[] bytes = value.toByteArray();
+        int start = bytes.length > 1 && bytes[0] == 0 ? 1 : 0;
+        int size = Math.max(length, bytes.length - start);
+        byte[] unsigned = new byte[size];
+        System.arraycopy(bytes, start, unsigned, size - (bytes.length - start), bytes.length - start);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(unsigned);
+    }
+
+    private static final class Ring {
+
+        private final Map<String, SigningKey> keys = new LinkedHashMap<>();
+        private final SigningKey active;
+        private final SigningKey next;
+        private final String jwks;
+        private final String jwksTag;
+
+        private Ring(List<SigningKey> keys) {
+            SigningKey active = null;
+            SigningKey next = null;
+            List<Map<String, String>> jwks = new ArrayList<>();
+            for (SigningKey key : keys) {
+                this.keys.put(key.getKid(), key);
+                if (key.getActivatedAt() == null) {
+                    next = key;
+                } else if (key.getRetiredAt() == null) {
+                    active = key;
+                }
+                jwks.add(toJwk(key));
+            }
+            if (active == null || next == null) {
+                throw new IllegalStateException("JWT key ring needs an active and a next key");
+            }
+            this.active = active;
+            this.next = next;
+            try {
+                this.jwks = OBJECT_MAPPER.writeValueAsString(Map.of("keys", jwks));
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(this.jwks.getBytes(StandardCharsets.UTF_8));
+                this.jwksTag = HexFormat.of().formatHex(digest, 0, 16);
+            } catch (IOException | NoSuchAlgorithmException e) {
+                throw new IllegalStateException("Failed to build the JWT key set", e);
+            }
+        }
+    }
+
+    @lombok.Value
+    public static class SigningKey {
+        String kid;
+        SignatureAlgorithm algorithm;
+        Key signingKey;
+        Key verificationKey;
+        Instant activatedAt;
+        Instant retiredAt;
+
+        SigningKey activate(Instant now) {
+            return new SigningKey(kid, algorithm, signingKey, verificationKey, now, null);
+        }
+
+        SigningKey retire(Instant now) {
+            return new SigningKey(kid, algorithm, signingKey, verificationKey, activatedAt, now);
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class StoredKey {
+        private String kid;
+        private String algorithm;
+        private String privateKey;
+        private String publicKey;
+        private Long activatedAt;
+        private Long retiredAt;
+    }
+}
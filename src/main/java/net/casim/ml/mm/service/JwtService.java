@@ -1,35 +1,117 @@
 package net.casim.ml.mm.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.io.Decoders;
-import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import net.casim.ml.mm.data.User;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 public class JwtService {
-    @Value("${security.jwt.secret-key}")
-    private String secretKey;
 
-    @Value("${security.jwt.expiration-time}")
-    private long jwtExpiration;
+    private final JwtKeyRing keyRing;
+    private final long jwtExpiration;
+    private final Cache<String, VerifiedToken> verifiedTokens;
+    private final JwtParser parser;
+    private final Clock clock;
+
+    @Autowired
+    public JwtService(JwtKeyRing keyRing,
+                      @Value("${security.jwt.expiration-time}") long jwtExpiration,
+                      @Value("${security.jwt.cache.max-size:10000}") long cacheMaxSize,
+                      MeterRegistry meterRegistry) {
+        this(keyRing, jwtExpiration, cacheMaxSize, meterRegistry, Clock.systemUTC());
+    }
+
+    /**
+     * Issues, verifies and expires cached tokens by {@code clock} rather than the system clock.
+     */
+    JwtService(JwtKeyRing keyRing, long jwtExpiration, long cacheMaxSize, MeterRegistry meterRegistry, Clock clock) {
+        this.keyRing = keyRing;
+        this.jwtExpiration = jwtExpiration;
+        this.clock = clock;
+        this.parser = Jwts.parserBuilder().setClock(() -> Date.from(clock.instant())).setSigningKeyResolver(new SigningKeyResolverAdapter() {
+            @Override
+            public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                JwtKeyRing.SigningKey key = keyRing.verificationKey(header.getKeyId());
+                if (key == null || !key.getAlgorithm().getValue().equals(header.getAlgorithm())) {
+                    throw new UnsupportedJwtException("Unknown signing key " + header.getKeyId()
+                            + " for algorithm " + header.getAlgorithm());
+                }
+                return key.getVerificationKey();
+            }
+        }).build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String hash, VerifiedToken token, long currentTime) {
+                        return token.timeToLive(clock).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String hash, VerifiedToken token, long currentTime,
+                                                  long currentDuration) {
+                        return token.timeToLive(clock).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String hash, VerifiedToken token, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                // Token expiry is wall-clock time, so cached tokens expire by the same clock that checks exp
+                .ticker(() -> TimeUnit.MILLISECONDS.toNanos(clock.millis()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwt.verified-tokens");
+    }
+
+    /**
+     * Verifies the signature and expiration of {@code token} with a single parse, using the key named by its
+     * {@code kid} header. Verified tokens are cached by their SHA-256 until they expire, so repeated requests with
+     * the same token skip parsing entirely.
+     *
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, forged or expired
+     */
+    public VerifiedToken verify(String token) {
+        return verifiedTokens.get(tokenHash(token), hash -> toVerifiedToken(parseClaims(token)));
+    }
 
     public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+        return verify(token).getUsername();
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
+        final Claims claims = parseClaims(token);
         return claimsResolver.apply(claims);
     }
 
@@ -39,6 +121,7 @@ public class JwtService {
         claims.put("roles", user.getRoles().stream()
                 .map(role -> "ROLE_" + role)
                 .collect(Collectors.toList()));
+        claims.put("ver", user.getTokenVersion());
         return buildToken(claims, user, jwtExpiration);
     }
 
@@ -52,41 +135,63 @@ public class JwtService {
             User user,
             long expiration
     ) {
-        return Jwts
+        JwtKeyRing.SigningKey key = keyRing.activeKey();
+        JwtBuilder builder = Jwts
                 .builder()
                 .setClaims(claims)
                 .setSubject(user.getUsername())
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSignInKey(), SignatureAlgorithm.HS256)
-                .compact();
+                .setIssuedAt(new Date(clock.millis()))
+                .setExpiration(new Date(clock.millis() + expiration));
+        if (key.getKid() != null) {
+            builder.setHeaderParam(JwsHeader.KEY_ID, key.getKid());
+        }
+        return builder.signWith(key.getSigningKey(), key.getAlgorithm()).compact();
     }
 
     public boolean isTokenValid(String token, User user) {
-        final String username = extractUsername(token);
-        return (username.equals(user.getUsername())) && !isTokenExpired(token);
+        return verify(token).getUsername().equals(user.getUsername());
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    /**
+     * Parses and verifies {@code token} without consulting the cache.
+     */
+    public Claims parseClaims(String token) {
+        return parser.parseClaimsJws(token).getBody();
     }
 
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    @SuppressWarnings("unchecked")
+    private static VerifiedToken toVerifiedToken(Claims claims) {
+        List<String> roles = claims.get("roles", List.class);
+        Integer version = claims.get("ver", Integer.class);
+        Date expiration = claims.getExpiration();
+        return new VerifiedToken(claims.getSubject(), roles == null ? List.of() : List.copyOf(roles),
+                version == null ? 0 : version, expiration == null ? null : expiration.toInstant());
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts
-                .parserBuilder()
-                .setSigningKey(getSignInKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    private static String tokenHash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 
-    private Key getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
-        return Keys.hmacShaKeyFor(keyBytes);
+    @lombok.Value
+    public static class VerifiedToken {
+        String username;
+        List<String> roles;
+        int version;
+        Instant expiresAt;
+
+        // Tokens without an expiration are verified on every request rather than cached forever
+        Duration timeToLive(Clock clock) {
+            if (expiresAt == null) {
+                return Duration.ZERO;
+            }
+            Duration remaining = Duration.between(clock.instant(), expiresAt);
+            return remaining.isNegative() ? Duration.ZERO : remaining;
+        }
     }
 
 }
@@ -0,0 +1,96 @@
+package net.casim.ml.mm.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.casim.ml.mm.data.User;
+import net.casim.ml.mm.exception.TooManyRequestsException;
+import net.casim.ml.mm.utils.TokenBucketRateLimiter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks login credentials off the request thread. Password hashes are compared on a small fixed pool with a
+ * bounded queue, so a login storm cannot occupy every servlet thread; when the queue is full, or a username or
+ * client address exceeds its rate limit, the attempt is rejected immediately with {@link TooManyRequestsException}.
+ */
+@Service
+@Slf4j
+public class LoginService {
+
+    private static final Duration SATURATED_RETRY_AFTER = Duration.ofSeconds(1);
+
+    private final UserService userService;
+    private final PasswordEncoder passwordEncoder;
+    private final TokenBucketRateLimiter usernameLimiter;
+    private final TokenBucketRateLimiter addressLimiter;
+    private final ThreadPoolExecutor hashingExecutor;
+
+    public LoginService(UserService userService, PasswordEncoder passwordEncoder,
+                        @Value("${security.login.hashing-threads:0}") int hashingThreads,
+                        @Value("${security.login.queue-capacity:100}") int queueCapacity,
+                        @Value("${security.login.rate-limit.username-capacity:10}") int usernameCapacity,
+                        @Value("${security.login.rate-limit.username-refill-per-minute:10}") double usernameRefillPerMinute,
+                        @Value("${security.login.rate-limit.address-capacity:50}") int addressCapacity,
+                        @Value("${security.login.rate-limit.address-refill-per-minute:300}") double addressRefillPerMinute) {
+        this.userService = userService;
+        this.passwordEncoder = passwordEncoder;
+        this.usernameLimiter = new TokenBucketRateLimiter(usernameCapacity, usernameRefillPerMinute, 100_000);
+        this.addressLimiter = new TokenBucketRateLimiter(addressCapacity, addressRefillPerMinute, 100_000);
+
+        int threads = hashingThreads > 0 ? hashingThreads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.hashingExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Completes with the user if the password matches, or empty if the user does not exist or the password is
+     * wrong.
+     *
+     * @throws TooManyRequestsException if the attempt is rate limited or the hashing pool is saturated
+     */
+    public CompletableFuture<Optional<User>> authenticate(String username, String password, String clientAddress) {
+        checkRateLimit(addressLimiter, clientAddress, "Too many login attempts from this address");
+        checkRateLimit(usernameLimiter, username, "Too many login attempts for this user");
+
+        // The lookup runs on the hashing thread too: under open-in-view a request thread that touched the database
+        // keeps its connection until the response is written, so queued logins would drain the connection pool
+        try {
+            return CompletableFuture.supplyAsync(() -> userService.getUserByUsername(username)
+                    .filter(user -> passwordEncoder.matches(password, user.getPassword())), hashingExecutor);
+        } catch (RejectedExecutionException e) {
+            log.debug("Password hashing pool saturated, rejecting login for '{}'", username);
+            throw new TooManyRequestsException("Login service is busy, try again later", SATURATED_RETRY_AFTER);
+        }
+    }
+
+    public int getQueuedChecks() {
+        return hashingExecutor.getQueue().size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashingExecutor.shutdownNow();
+    }
+
+    private static void checkRateLimit(TokenBucketRateLimiter limiter, String key, String message) {
+        Duration retryAfter = limiter.tryAcquire(key == null ? "" : key);
+        if (!retryAfter.isZero()) {
+            throw new TooManyRequestsException(message, retryAfter);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package net.casim.ml.mm.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import net.casim.ml.mm.data.LLMModel;
+import net.casim.ml.mm.data.response.TrainingStatusEvent;
+import net.casim.ml.mm.repository.ModelRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Models by id with their layers, status and training data, so detail views and status polling do not query the
+ * database on every request. Entries are detached copies that callers must not modify. Creating, training or deleting
+ * a model and uploading training data on this instance invalidate its entry once committed; changes made elsewhere are
+ * picked up within {@code models.cache.ttl}. {@link #reload} reads the database for callers that must see the latest
+ * state.
+ */
+@Component
+public class ModelCache {
+
+    private final ModelRepository modelRepository;
+    private final LoadingCache<UUID, LLMModel> models;
+
+    public ModelCache(ModelRepository modelRepository,
+                      @Value("${models.cache.ttl:10s}") Duration ttl,
+                      @Value("${models.cache.max-size:10000}") long maxSize,
+                      MeterRegistry meterRegistry) {
+        this.modelRepository = modelRepository;
+        this.models = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build(id -> modelRepository.findDetachedById(id).orElse(null));
+        CaffeineCacheMetrics.monitor(meterRegistry, models, "models.metadata");
+    }
+
+    public Optional<LLMModel> get(UUID id) {
+        return Optional.ofNullable(models.get(id));
+    }
+
+    /**
+     * Reads the model from the database, bypassing the cache, and caches the result.
+     */
+    public Optional<LLMModel> reload(UUID id) {
+        Optional<LLMModel> model = modelRepository.findDetachedById(id);
+        if (model.isPresent()) {
+            models.put(id, model.get());
+        } else {
+            models.invalidate(id);
+        }
+        return model;
+    }
+
+    public void invalidate(UUID id) {
+        models.invalidate(id);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTrainingStatus(TrainingStatusEvent event) {
+        if (TrainingStatusEvent.STATUS.equals(event.getType())) {
+            invalidate(event.getModelId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTrainingDataStored(TrainingDataStoredEvent event) {
+        invalidate(event.getTrainingData().getModel().getId());
+    }
+}
@@ -0,0 +1,161 @@
+package net.casim.ml.mm.service;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.casim.ml.mm.data.LLMModel;
+import net.casim.ml.mm.data.response.TrainingStatusEvent;
+import net.casim.ml.mm.exception.ResourceNotFoundException;
+import net.casim.ml.mm.repository.ModelRepository;
+import net.casim.ml.mm.training.Prediction;
+import net.casim.ml.mm.training.TrainedModel;
+import net.casim.ml.mm.training.TrainingEngine;
+import net.casim.ml.mm.training.TrainingEngines;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Trained models loaded into memory to serve predictions. A model is loaded from its training artifact on its first
+ * prediction and then stays loaded until it is trained again, deleted or evicted. The registry is bounded by the
+ * models' estimated heap size, {@code inference.registry.max-size}, rather than by their number; Caffeine picks what
+ * to evict by recency and frequency of use (W-TinyLFU). Loading is single-flight: concurrent predictions on a model
+ * that is not loaded wait for one load on the {@code model-loader} threads, and predictions on loaded models never
+ * wait for a load.
+ */
+@Service
+@Slf4j
+public class ModelRegistry {
+
+    private final ModelRepository modelRepository;
+    private final TrainingEngines trainingEngines;
+    private final ModelTrainer modelTrainer;
+    private final long maxSize;
+    private final ExecutorService loader;
+    private final AsyncLoadingCache<UUID, TrainedModel> models;
+
+    public ModelRegistry(ModelRepository modelRepository, TrainingEngines trainingEngines, ModelTrainer modelTrainer,
+                         @Value("${inference.registry.max-size:512MB}") DataSize maxSize,
+                         @Value("${inference.registry.loader-threads:2}") int loaderThreads,
+                         MeterRegistry meterRegistry) {
+        this.modelRepository = modelRepository;
+        this.trainingEngines = trainingEngines;
+        this.modelTrainer = modelTrainer;
+        this.maxSize = maxSize.toBytes();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.loader = Executors.newFixedThreadPool(Math.max(1, loaderThreads), runnable -> {
+            Thread thread = new Thread(runnable, "model-loader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.models = Caffeine.newBuilder()
+                .maximumWeight(this.maxSize)
+                .weigher((UUID modelId, TrainedModel model) -> (int) Math.min(Integer.MAX_VALUE, model.getSizeInBytes()))
+                .executor(loader)
+                .recordStats()
+                .buildAsync(this::load);
+        CaffeineCacheMetrics.monitor(meterRegistry, models, "inference.models");
+    }
+
+    /**
+     * Predicts the label of {@code text} with the model, loading it first if it is not loaded.
+     *
+     * @throws ResourceNotFoundException if the model does not exist
+     * @throws IllegalStateException     if the model has not been trained
+     */
+    public Prediction predict(UUID modelId, String text) {
+        return get(modelId).predict(text);
+    }
+
+    /**
+     * Predicts the labels of {@code texts}, in order, in one pass over the model.
+     *
+     * @throws ResourceNotFoundException if the model does not exist
+     * @throws IllegalStateException     if the model has not been trained
+     */
+    public List<Prediction> predict(UUID modelId, List<String> texts) {
+        return get(modelId).predict(texts);
+    }
+
+    /**
+     * Unloads the model, so that the next prediction loads it again.
+     */
+    public void evict(UUID modelId) {
+        models.synchronous().invalidate(modelId);
+    }
+
+    @EventListener
+    public void onTrainingStatus(TrainingStatusEvent event) {
+        if (TrainingStatusEvent.STATUS.equals(event.getType()) && "Trained".equals(event.getStatus())) {
+            evict(event.getModelId());
+        }
+    }
+
+    public long getLoadedModels() {
+        models.synchronous().cleanUp();
+        return models.synchronous().estimatedSize();
+    }
+
+    private TrainedModel get(UUID modelId) {
+        CompletableFuture<TrainedModel> future = models.get(modelId);
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // A failed load stays cached until Caffeine's maintenance removes it, so the next prediction would get the
+            // same failure even once the model is trained; drop it now, unless a new load has already replaced it
+            models.asMap().remove(modelId, future);
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof IOException cause) {
+                throw new UncheckedIOException(cause);
+            }
+            throw e;
+        }
+    }
+
+    private TrainedModel load(UUID modelId) throws IOException {
+        LLMModel model = modelRepository.findWithLayersById(modelId)
+                .orElseThrow(() -> new ResourceNotFoundException("Model not found with id: " + modelId));
+        TrainingEngine engine = trainingEngines.forLayers(model.getLayers()).getEngine();
+        Path artifact = modelTrainer.artifactPath(modelId, engine);
+        if (!Files.exists(artifact)) {
+            throw new IllegalStateException("Model '" + model.getName() + "' has not been trained");
+        }
+        long startedAt = System.nanoTime();
+        TrainedModel trainedModel;
+        try {
+            trainedModel = engine.load(artifact);
+        } catch (UnsupportedOperationException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        log.info("Loaded model '{}' with engine '{}' in {} ms, about {} bytes", model.getName(), engine.getName(),
+                (System.nanoTime() - startedAt) / 1_000_000, trainedModel.getSizeInBytes());
+        if (trainedModel.getSizeInBytes() > maxSize) {
+            log.warn("Model '{}' is larger than inference.registry.max-size and will be loaded again for every "
+                    + "prediction", model.getName());
+        }
+        return trainedModel;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loader.shutdownNow();
+    }
+}
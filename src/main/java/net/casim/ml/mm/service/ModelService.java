@@ -2,37 +2,58 @@ package net.casim.ml.mm.service;
 
 import lombok.extern.slf4j.Slf4j;
 import net.casim.ml.mm.data.LLMModel;
+import net.casim.ml.mm.data.ModelLayer;
 import net.casim.ml.mm.data.TrainingData;
 import net.casim.ml.mm.data.request.CreateModelRequest;
+import net.casim.ml.mm.data.response.ModelPage;
+import net.casim.ml.mm.data.response.ModelSummary;
+import net.casim.ml.mm.data.response.TrainingSchedulerStats;
+import net.casim.ml.mm.data.response.TrainingStatusEvent;
 import net.casim.ml.mm.exception.ResourceNotFoundException;
 import net.casim.ml.mm.repository.ModelRepository;
 import net.casim.ml.mm.repository.TrainingDataRepository;
-import org.springframework.scheduling.annotation.Async;
+import net.casim.ml.mm.training.Prediction;
+import net.casim.ml.mm.training.TrainingEngines;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
-import java.util.Random;
 import java.util.UUID;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 @Service
 @Slf4j
 public class ModelService {
 
+    private static final int MAX_PAGE_SIZE = 500;
+
     private final ModelRepository modelRepository;
     private final TrainingDataRepository trainingDataRepository;
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-    private volatile boolean isTraining = false;
-    private final Random random = new Random();
-
-    public ModelService(ModelRepository modelRepository, TrainingDataRepository trainingDataRepository) {
+    private final TrainingScheduler trainingScheduler;
+    private final TrainingStatusStreamService trainingStatusStreamService;
+    private final FileUploadService fileUploadService;
+    private final ModelTrainer modelTrainer;
+    private final ModelRegistry modelRegistry;
+    private final PredictionBatcher predictionBatcher;
+    private final ModelCache modelCache;
+    private final TrainingEngines trainingEngines;
+
+    public ModelService(ModelRepository modelRepository, TrainingDataRepository trainingDataRepository,
+                        TrainingScheduler trainingScheduler, TrainingStatusStreamService trainingStatusStreamService,
+                        FileUploadService fileUploadService, ModelTrainer modelTrainer, ModelRegistry modelRegistry,
+                        PredictionBatcher predictionBatcher, ModelCache modelCache, TrainingEngines trainingEngines) {
         this.modelRepository = modelRepository;
         this.trainingDataRepository = trainingDataRepository;
+        this.trainingScheduler = trainingScheduler;
+        this.trainingStatusStreamService = trainingStatusStreamService;
+        this.fileUploadService = fileUploadService;
+        this.modelTrainer = modelTrainer;
+        this.modelRegistry = modelRegistry;
+        this.predictionBatcher = predictionBatcher;
+        this.modelCache = modelCache;
+        this.trainingEngines = trainingEngines;
     }
 
     public List<LLMModel> getAllModels() {
@@ -40,6 +61,20 @@ public class ModelService {
         return modelRepository.findAll();
     }
 
+    public ModelPage getModelPage(String status, ModelLayer layer, UUID after, int limit, boolean includeTotal) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        log.debug("Fetching model page after {} (status: {}, layer: {}, size: {})", after, status, layer, pageSize);
+
+        List<ModelSummary> items = modelRepository.findSummaries(status, layer, after, pageSize + 1);
+        UUID nextCursor = null;
+        if (items.size() > pageSize) {
+            items = items.subList(0, pageSize);
+            nextCursor = items.get(pageSize - 1).getId();
+        }
+        Long total = includeTotal ? modelRepository.countSummaries(status, layer) : null;
+        return new ModelPage(items, nextCursor, total);
+    }
+
     public LLMModel createModel(CreateModelRequest request) {
         log.info("Creating model with name: {}", request.getModelName());
         LLMModel model = new LLMModel();
@@ -47,96 +82,115 @@ public class ModelService {
         model.setLayers(request.getLayers());
         model.setStatus("Not Trained");
         LLMModel savedModel = modelRepository.save(model);
+        modelCache.invalidate(savedModel.getId());
         log.info("Model '{}' created successfully with ID: {}", savedModel.getName(), savedModel.getId());
         return savedModel;
     }
 
     public LLMModel getModelById(UUID id) {
-        log.debug("Fetching model by ID: {}", id);
-        return modelRepository.findById(id)
+        return getModelById(id, false);
+    }
+
+    /**
+     * Returns the model from the {@link ModelCache}, which may lag behind changes made on other instances, or from
+     * the database if {@code fresh} is set. The returned model is shared and must not be modified.
+     */
+    public LLMModel getModelById(UUID id, boolean fresh) {
+        log.debug("Fetching model by ID: {} (fresh: {})", id, fresh);
+        return (fresh ? modelCache.reload(id) : modelCache.get(id))
                 .orElseThrow(() -> {
                     log.warn("Model not found with ID: {}", id);
                     return new ResourceNotFoundException("Model not found with id: " + id);
                 });
     }
 
+    /**
+     * Returns the model as loaded by the current persistence context, for writes such as attaching training data.
+     * Never returns the shared instance of the {@link ModelCache}.
+     */
+    public LLMModel getModelForUpdate(UUID id) {
+        return modelRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Model not found with id: " + id));
+    }
+
     public String getTrainingStatus(UUID id) {
-        LLMModel model = getModelById(id);
+        return getTrainingStatus(id, false);
+    }
+
+    public String getTrainingStatus(UUID id, boolean fresh) {
+        LLMModel model = getModelById(id, fresh);
         log.debug("Model '{}' has status: {}", model.getName(), model.getStatus());
         return model.getStatus();
     }
 
-    public void deleteModel(UUID id){
+    public TrainingData getTrainingData(UUID modelId, UUID trainingDataId) {
+        return trainingDataRepository.findById(trainingDataId)
+                .filter(trainingData -> trainingData.getModel().getId().equals(modelId))
+                .orElseThrow(() -> new ResourceNotFoundException("Training data not found with id: " + trainingDataId));
+    }
+
+    public SseEmitter streamTrainingStatus(UUID id) {
         LLMModel model = getModelById(id);
-        TrainingData trainingData = trainingDataRepository.findByModelId(id).isPresent() ? trainingDataRepository.findByModelId(id).get() :null;
+        int progress = "Trained".equals(model.getStatus()) ? 100 : 0;
+        return trainingStatusStreamService.subscribe(id,
+                TrainingStatusEvent.status(id, model.getStatus(), progress, model.getAccuracyPercentage()));
+    }
 
-        if (trainingData != null) {
-            trainingDataRepository.delete(trainingData);
-        }
-            modelRepository.delete(model);
+    @Transactional
+    public void deleteModel(UUID id){
+        LLMModel model = modelRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Model not found with id: " + id));
+        List<TrainingData> trainingData = trainingDataRepository.findAllByModelId(id);
+
+        // A queued job would fail on the missing model later and a running one would write its artifacts again
+        trainingScheduler.cancel(id);
+
+        trainingDataRepository.deleteAll(trainingData);
+        modelRepository.delete(model);
+        fileUploadService.release(trainingData.stream().map(TrainingData::getContentHash).toList());
+        modelTrainer.deleteArtifacts(id);
+        modelRegistry.evict(id);
+        modelCache.invalidate(id);
 
         log.debug("Model deleted successfully");
     }
 
     public void deleteTrainingData(UUID id) {
-        if (trainingDataRepository.findById(id).isPresent()) {
-            TrainingData td = trainingDataRepository.findById(id).get();
-
-            trainingDataRepository.delete(td);
+        Optional<TrainingData> trainingData = trainingDataRepository.findById(id);
+        if (trainingData.isPresent()) {
+            trainingDataRepository.delete(trainingData.get());
+            modelCache.invalidate(trainingData.get().getModel().getId());
+            fileUploadService.release(Collections.singletonList(trainingData.get().getContentHash()));
             log.debug("Training Data deleted successfully");
         }
     }
 
-    @Async
-    public void trainModel(UUID modelId) {
+    public TrainingScheduler.Submission trainModel(UUID modelId) {
+        return trainModel(modelId, 0, false);
+    }
+
+    /**
+     * Queues training of the model. Unless {@code fullRetrain} is set, a model trained before is trained only on the
+     * training data uploaded since, when its engine supports that.
+     *
+     * @throws IllegalStateException if no engine trains any of the model's layers
+     */
+    public TrainingScheduler.Submission trainModel(UUID modelId, int priority, boolean fullRetrain) {
         log.info("Received request to train model with ID: {}", modelId);
+        // Rejected here rather than queued for a job that can only fail
+        trainingEngines.forLayers(getModelById(modelId).getLayers());
 
-        int trainingDuration = 30 + random.nextInt(151);
-        log.debug("Simulating training for {} seconds", trainingDuration);
+        TrainingScheduler.Submission submission = trainingScheduler.submit(modelId, priority, fullRetrain);
+        log.debug("Training submission for model {}: {}", modelId, submission);
+        return submission;
+    }
 
-        synchronized (this) {
-            isTraining = true;
-        }
+    public Prediction predict(UUID modelId, String text) {
+        return predictionBatcher.predict(modelId, text);
+    }
 
-        scheduler.schedule(() -> {
-            try {
-                LLMModel model = getModelById(modelId);
-                TrainingData trainingData = trainingDataRepository.findByModelId(modelId)
-                        .orElseThrow(() -> new ResourceNotFoundException("TrainingData not found with modelId: " + modelId));
-
-                model.setStatus("Being Trained");
-                modelRepository.save(model);
-                trainingDataRepository.save(trainingData);
-
-                log.info("Started training model '{}' with training data '{}' duration '{}' seconds", model.getName(), trainingData.getName(), trainingDuration );
-
-                Thread.sleep(trainingDuration * 1000L);
-
-                BigDecimal accuracy = BigDecimal.valueOf(70 + random.nextDouble() * 29)
-                        .setScale(2, RoundingMode.HALF_UP);
-
-                model.setStatus("Trained");
-                model.setTrainingDuration(trainingDuration);
-                model.setAccuracyPercentage(accuracy.doubleValue());
-                modelRepository.save(model);
-                trainingDataRepository.save(trainingData);
-
-                log.info("Model '{}' training completed with training data '{}' , accuracy: {}%", model.getName(), trainingData.getName(),accuracy);
-            } catch (InterruptedException e) {
-                log.error("Training interrupted", e);
-                Thread.currentThread().interrupt(); // Preserve interrupt status
-            } catch (Exception e) {
-                log.error("Unexpected error occurred during model training", e);
-            } finally {
-                synchronized (this) {
-                    isTraining = false;
-                }
-            }
-        }, 0, TimeUnit.SECONDS);
-    }
-
-    public boolean isTraining() {
-        return isTraining;
+    public TrainingSchedulerStats getTrainingStats() {
+        return trainingScheduler.getStats();
     }
 
 }
@@ -0,0 +1,171 @@
+package net.casim.ml.mm.service;
+
+import lombok.extern.slf4j.Slf4j;
+import net.casim.ml.mm.data.LLMModel;
+import net.casim.ml.mm.data.TrainingData;
+import net.casim.ml.mm.data.TrainingResults;
+import net.casim.ml.mm.data.response.TrainingStatusEvent;
+import net.casim.ml.mm.exception.ResourceNotFoundException;
+import net.casim.ml.mm.repository.ModelRepository;
+import net.casim.ml.mm.repository.TrainingDataRepository;
+import net.casim.ml.mm.training.TrainingEngine;
+import net.casim.ml.mm.training.TrainingEngines;
+import net.casim.ml.mm.training.TrainingRequest;
+import net.casim.ml.mm.training.TrainingResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs the training of a model on its engine. A model that was trained before is trained incrementally: the engine gets
+ * the training data uploaded after the model's {@link LLMModel#getTrainingWatermark() watermark} as new data, and an
+ * artifact under {@code training.artifact-dir} in which it keeps what it learned between trainings. Engines fall back
+ * to a full training when they cannot continue from the artifact. The artifact is written on every training, also
+ * with incremental training disabled, since {@link ModelRegistry} loads models from it to serve predictions.
+ */
+@Service
+@Slf4j
+public class ModelTrainer {
+
+    private final ModelRepository modelRepository;
+    private final TrainingDataRepository trainingDataRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TrainingEngines trainingEngines;
+
+    @Value("${training.progress-interval:5s}")
+    private Duration progressInterval = Duration.ofSeconds(5);
+
+    @Value("${training.incremental.enabled:true}")
+    private boolean incrementalEnabled = true;
+
+    @Value("${training.artifact-dir:artifacts}")
+    private String artifactDir = "artifacts";
+
+    public ModelTrainer(ModelRepository modelRepository, TrainingDataRepository trainingDataRepository,
+                        ApplicationEventPublisher eventPublisher, TrainingEngines trainingEngines) {
+        this.modelRepository = modelRepository;
+        this.trainingDataRepository = trainingDataRepository;
+        this.eventPublisher = eventPublisher;
+        this.trainingEngines = trainingEngines;
+    }
+
+    public void train(UUID modelId) throws InterruptedException, IOException {
+        train(modelId, false);
+    }
+
+    public void train(UUID modelId, boolean fullRetrain) throws InterruptedException, IOException {
+        LLMModel model = modelRepository.findWithLayersById(modelId)
+                .orElseThrow(() -> new ResourceNotFoundException("Model not found with id: " + modelId));
+        List<TrainingData> trainingData = trainingDataRepository.findAllByModelId(modelId);
+        if (trainingData.isEmpty()) {
+            throw new ResourceNotFoundException("TrainingData not found with modelId: " + modelId);
+        }
+        TrainingEngines.Match match = trainingEngines.forLayers(model.getLayers());
+        TrainingEngine engine = match.getEngine();
+
+        model.setStatus("Being Trained");
+        modelRepository.save(model);
+        eventPublisher.publishEvent(TrainingStatusEvent.status(modelId, model.getStatus(), 0, null));
+
+        Path artifact = artifactPath(modelId, engine);
+        List<TrainingData> newTrainingData = fullRetrain || !incrementalEnabled ? trainingData
+                : uploadedAfter(trainingData, model.getTrainingWatermark());
+        log.info("Started training model '{}' with engine '{}' on {} training data files, {} of them new",
+                model.getName(), engine.getName(), trainingData.size(), newTrainingData.size());
+
+        long startedAt = System.nanoTime();
+        try {
+            TrainingResult result = engine.train(new TrainingRequest(modelId, match.getLayer(), trainingData,
+                    newTrainingData, artifact), progressReporter(modelId, model.getStatus()));
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - startedAt);
+
+            BigDecimal accuracy = BigDecimal.valueOf(result.getAccuracy() * 100)
+                    .setScale(2, RoundingMode.HALF_UP);
+
+            model.setStatus("Trained");
+            model.setTrainingDuration((int) Math.max(1, elapsed.toSeconds()));
+            model.setAccuracyPercentage(accuracy.doubleValue());
+            model.setTrainingResults(TrainingResults.of(result.getMetrics()));
+            model.setTrainingWatermark(trainingData.stream()
+                    .map(TrainingData::getUploadDate)
+                    .filter(Objects::nonNull)
+                    .max(Comparator.comparing(LocalDateTime::parse))
+                    .orElse(null));
+            modelRepository.save(model);
+            eventPublisher.publishEvent(TrainingStatusEvent.status(modelId, model.getStatus(), 100, model.getAccuracyPercentage()));
+
+            log.info("Model '{}' training completed in {} ms, accuracy: {}%", model.getName(), elapsed.toMillis(), accuracy);
+        } catch (IOException | RuntimeException e) {
+            model.setStatus("Training Failed");
+            modelRepository.save(model);
+            eventPublisher.publishEvent(TrainingStatusEvent.status(modelId, model.getStatus(), 0, null));
+            throw e;
+        }
+    }
+
+    /**
+     * Deletes what the engines kept from the trainings of a deleted model.
+     */
+    public void deleteArtifacts(UUID modelId) {
+        try {
+            FileUploadService.deleteDirectory(Paths.get(artifactDir).toAbsolutePath().resolve(modelId.toString()));
+        } catch (IOException e) {
+            log.warn("Could not delete training artifacts of model {}", modelId, e);
+        }
+    }
+
+    /**
+     * The file in which {@code engine} keeps the state of the model's last successful training.
+     */
+    Path artifactPath(UUID modelId, TrainingEngine engine) {
+        return Paths.get(artifactDir).toAbsolutePath().resolve(modelId.toString()).resolve(engine.getName() + ".bin");
+    }
+
+    // Rows without an upload date count as new; engines then see that they do not match their artifact
+    private static List<TrainingData> uploadedAfter(List<TrainingData> trainingData, String watermark) {
+        if (watermark == null) {
+            return trainingData;
+        }
+        LocalDateTime after = LocalDateTime.parse(watermark);
+        return trainingData.stream()
+                .filter(data -> data.getUploadDate() == null || LocalDateTime.parse(data.getUploadDate()).isAfter(after))
+                .toList();
+    }
+
+    public void resetInterrupted(UUID modelId) {
+        modelRepository.findById(modelId)
+                .filter(model -> "Being Trained".equals(model.getStatus()))
+                .ifPresent(model -> {
+                    model.setStatus("Not Trained");
+                    modelRepository.save(model);
+                    eventPublisher.publishEvent(TrainingStatusEvent.status(modelId, model.getStatus(), 0, null));
+                    log.info("Reset status of model '{}' after interrupted training", model.getName());
+                });
+    }
+
+    // Engines may report every percent; subscribers get at most one progress event per interval
+    private IntConsumer progressReporter(UUID modelId, String status) {
+        long intervalNanos = Math.max(1, progressInterval.toNanos());
+        long[] lastReportAt = {System.nanoTime()};
+        return progress -> {
+            long now = System.nanoTime();
+            if (now - lastReportAt[0] >= intervalNanos) {
+                lastReportAt[0] = now;
+                eventPublisher.publishEvent(TrainingStatusEvent.progress(modelId, status, progress));
+            }
+        };
+    }
+}
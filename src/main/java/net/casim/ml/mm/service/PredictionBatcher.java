@@ -0,0 +1,227 @@
+package net.casim.ml.mm.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import net.casim.ml.mm.training.Prediction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coalesces concurrent single predictions on the same model into batches that the {@link ModelRegistry} predicts in
+ * one pass. The first prediction on a model opens a batch, which is closed and run on the {@code prediction-batcher}
+ * threads once it holds {@code inference.batching.max-size} predictions or {@code inference.batching.max-delay} after
+ * it was opened; predictions that arrive while it runs go to the next batch. With a max-delay of zero a batch runs as
+ * soon as a batcher thread is free, so predictions are only batched while the threads are busy and never wait for
+ * the window. When {@code inference.batching.enabled=false} predictions run on the calling thread.
+ * <p>
+ * Every prediction handed to the batcher completes: with the model's result, with whatever the batch threw, or with a
+ * {@link RejectedExecutionException} if the batch cannot be run because the batcher is shut down.
+ */
+@Service
+public class PredictionBatcher {
+
+    private final ModelRegistry modelRegistry;
+    private final boolean enabled;
+    private final int maxSize;
+    private final long maxDelayNanos;
+    private final DistributionSummary batchSizes;
+    private final Map<UUID, Batch> open = new ConcurrentHashMap<>();
+    // Batches whose predictions are not completed yet, open or not, so that shutdown can fail them
+    private final Set<Batch> pending = ConcurrentHashMap.newKeySet();
+    private volatile boolean stopped;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "prediction-batcher-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public PredictionBatcher(ModelRegistry modelRegistry,
+                             @Value("${inference.batching.enabled:false}") boolean enabled,
+                             @Value("${inference.batching.max-size:64}") int maxSize,
+                             @Value("${inference.batching.max-delay:0ms}") Duration maxDelay,
+                             @Value("${inference.batching.threads:0}") int threads,
+                             MeterRegistry meterRegistry) {
+        this.modelRegistry = modelRegistry;
+        this.enabled = enabled;
+        this.maxSize = Math.max(1, maxSize);
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.batchSizes = DistributionSummary.builder("inference.batch.size")
+                .description("Predictions run together by the prediction batcher")
+                .register(meterRegistry);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "prediction-batcher-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Predicts the label of {@code text} with the model, in a batch with other predictions on it if batching is
+     * enabled.
+     *
+     * @see ModelRegistry#predict(UUID, String)
+     */
+    public Prediction predict(UUID modelId, String text) {
+        if (!enabled) {
+            return modelRegistry.predict(modelId, text);
+        }
+        CompletableFuture<Prediction> prediction = new CompletableFuture<>();
+        add(modelId, text, prediction);
+        try {
+            return prediction.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void add(UUID modelId, String text, CompletableFuture<Prediction> prediction) {
+        while (true) {
+            if (stopped) {
+                prediction.completeExceptionally(new RejectedExecutionException("Prediction batcher is shut down"));
+                return;
+            }
+            Batch batch = open.get(modelId);
+            if (batch == null) {
+                Batch created = new Batch(modelId);
+                batch = open.putIfAbsent(modelId, created);
+                if (batch == null) {
+                    batch = created;
+                    pending.add(created);
+                    if (maxDelayNanos > 0) {
+                        schedule(created, () -> timer.schedule(() -> runIfOpen(created), maxDelayNanos,
+                                TimeUnit.NANOSECONDS));
+                    } else {
+                        schedule(created, () -> workers.execute(() -> runIfOpen(created)));
+                    }
+                }
+            }
+            boolean full;
+            synchronized (batch) {
+                if (batch.closed) {
+                    continue;
+                }
+                batch.texts.add(text);
+                batch.predictions.add(prediction);
+                full = batch.texts.size() >= maxSize;
+            }
+            if (full && close(batch)) {
+                Batch closed = batch;
+                schedule(closed, () -> workers.execute(() -> run(closed)));
+            }
+            return;
+        }
+    }
+
+    private void runIfOpen(Batch batch) {
+        if (close(batch)) {
+            if (maxDelayNanos > 0) {
+                schedule(batch, () -> workers.execute(() -> run(batch)));
+            } else {
+                run(batch);
+            }
+        }
+    }
+
+    private boolean close(Batch batch) {
+        synchronized (batch) {
+            if (batch.closed) {
+                return false;
+            }
+            batch.closed = true;
+        }
+        open.remove(batch.modelId, batch);
+        return true;
+    }
+
+    // The executors only reject once shut down, which leaves nothing to run the batch
+    private void schedule(Batch batch, Runnable scheduling) {
+        try {
+            scheduling.run();
+        } catch (RejectedExecutionException e) {
+            fail(batch, e);
+        }
+    }
+
+    private void run(Batch batch) {
+        batchSizes.record(batch.texts.size());
+        try {
+            List<Prediction> predictions = modelRegistry.predict(batch.modelId, batch.texts);
+            if (predictions.size() != batch.texts.size()) {
+                throw new IllegalStateException("Expected " + batch.texts.size() + " predictions but got "
+                        + predictions.size());
+            }
+            for (int i = 0; i < predictions.size(); i++) {
+                batch.predictions.get(i).complete(predictions.get(i));
+            }
+            pending.remove(batch);
+        } catch (Throwable e) {
+            fail(batch, e);
+            if (e instanceof Error error) {
+                throw error;
+            }
+        }
+    }
+
+    // Closes the batch to further predictions and completes those it holds, unless they already are
+    private void fail(Batch batch, Throwable cause) {
+        close(batch);
+        pending.remove(batch);
+        List<CompletableFuture<Prediction>> predictions;
+        synchronized (batch) {
+            predictions = List.copyOf(batch.predictions);
+        }
+        predictions.forEach(prediction -> prediction.completeExceptionally(cause));
+    }
+
+    /**
+     * Stops the batcher threads and fails the predictions that have not completed, including those of a batch the
+     * threads were running. Predictions made afterwards fail straight away.
+     */
+    @PreDestroy
+    public void shutdown() {
+        stopped = true;
+        timer.shutdownNow();
+        workers.shutdownNow();
+        RejectedExecutionException cause = new RejectedExecutionException("Prediction batcher is shut down");
+        for (Batch batch : pending) {
+            fail(batch, cause);
+        }
+    }
+
+    private static final class Batch {
+        private final UUID modelId;
+        private final List<String> texts = new ArrayList<>();
+        private final List<CompletableFuture<Prediction>> predictions = new ArrayList<>();
+        private boolean closed;
+
+        private Batch(UUID modelId) {
+            this.modelId = modelId;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package net.casim.ml.mm.service;
+
+import lombok.Value;
+import net.casim.ml.mm.data.TrainingData;
+
+/**
+ * Published by {@link FileUploadService} after a {@link TrainingData} row has been saved for a stored blob.
+ */
+@Value
+public class TrainingDataStoredEvent {
+    TrainingData trainingData;
+}
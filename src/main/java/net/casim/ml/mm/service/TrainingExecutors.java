@@ -0,0 +1,57 @@
+package net.casim.ml.mm.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.system.JavaVersion;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executor that runs training jobs: one virtual thread per job when virtual threads are enabled
+ * and supported by the running JVM, otherwise a pool with one platform thread per training slot.
+ */
+@Slf4j
+public final class TrainingExecutors {
+
+    private TrainingExecutors() {
+    }
+
+    public static boolean virtualThreadsSupported() {
+        return JavaVersion.getJavaVersion().isEqualOrNewerThan(JavaVersion.TWENTY_ONE);
+    }
+
+    public static Executor create(boolean virtualThreads, int slots) {
+        if (virtualThreads) {
+            if (virtualThreadsSupported()) {
+                SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("training-job-");
+                executor.setVirtualThreads(true);
+                return executor;
+            }
+            log.warn("Virtual threads require Java 21 or newer, running training jobs on platform threads");
+        }
+
+        AtomicInteger workerCount = new AtomicInteger();
+        return new ThreadPoolExecutor(slots, slots, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "training-slot-" + workerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static void close(Executor executor) {
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        } else if (executor instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                log.warn("Could not close training executor", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,475 @@
+package net.casim.ml.mm.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.casim.ml.mm.data.LLMModel;
+import net.casim.ml.mm.data.TrainingJob;
+import net.casim.ml.mm.data.TrainingJobState;
+import net.casim.ml.mm.data.response.TrainingSchedulerStats;
+import net.casim.ml.mm.repository.TrainingJobRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs persisted {@link TrainingJob}s on a fixed number of slots. Jobs are claimed from the database with a
+ * conditional update and held under a lease that is renewed while they run, so several instances can drain
+ * the same queue and jobs of a crashed instance are picked up again once its leases expire. Submissions lock a shared
+ * row while they check for an active job of the model and the queue depth, so those limits hold across instances too.
+ * Jobs of a deleted model are failed with it; a slot running one is interrupted, on other instances when it next
+ * renews its lease.
+ * <p>
+ * Publishes the queue depth and busy slots as gauges, and the time jobs wait in the queue and run as timers tagged
+ * with the first layer of the model.
+ */
+@Service
+@Slf4j
+public class TrainingScheduler {
+
+    public enum Submission {
+        QUEUED,
+        ALREADY_QUEUED,
+        QUEUE_FULL
+    }
+
+    private static final List<TrainingJobState> ACTIVE_STATES = List.of(TrainingJobState.QUEUED, TrainingJobState.RUNNING);
+    private static final int CLAIM_BATCH_SIZE = 16;
+    private static final String MODEL_DELETED = "Model deleted";
+
+    private final TrainingJobRepository jobRepository;
+    private final ModelTrainer modelTrainer;
+    private final ModelCache modelCache;
+    private final MeterRegistry meterRegistry;
+    private final int slots;
+    private final int queueCapacity;
+    private final Duration leaseDuration;
+    private final Duration pollInterval;
+    private final int maxAttempts;
+    private final String owner;
+
+    private final Map<UUID, TrainingJob> runningJobs = new ConcurrentHashMap<>();
+    private final Semaphore freeSlots;
+    private final Semaphore wakeUp = new Semaphore(0);
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong totalWaitMillis = new AtomicLong();
+    private final AtomicLong maxWaitMillis = new AtomicLong();
+    private final ConcurrentLinkedDeque<Long> recentCompletions = new ConcurrentLinkedDeque<>();
+
+    @Value("${training.scheduler.worker-enabled:true}")
+    private boolean workerEnabled = true;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads = false;
+
+    private final Map<UUID, Thread> runningThreads = new ConcurrentHashMap<>();
+    private final Set<UUID> cancelledJobs = ConcurrentHashMap.newKeySet();
+    private Executor workers;
+    private ScheduledExecutorService housekeeper;
+    private Thread dispatcher;
+
+    public TrainingScheduler(TrainingJobRepository jobRepository,
+                             ModelTrainer modelTrainer,
+                             ModelCache modelCache,
+                             @Value("${training.scheduler.slots:2}") int slots,
+                             @Value("${training.scheduler.queue-capacity:1000}") int queueCapacity,
+                             @Value("${training.scheduler.lease-duration:60s}") Duration leaseDuration,
+                             @Value("${training.scheduler.poll-interval:1s}") Duration pollInterval,
+                             @Value("${training.scheduler.max-attempts:3}") int maxAttempts,
+                             MeterRegistry meterRegistry) {
+        if (slots < 1 || queueCapacity < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("Training slots, queue capacity and max attempts must be positive");
+        }
+        this.jobRepository = jobRepository;
+        this.modelTrainer = modelTrainer;
+        this.modelCache = modelCache;
+        this.meterRegistry = meterRegistry;
+        this.slots = slots;
+        this.queueCapacity = queueCapacity;
+        this.leaseDuration = leaseDuration;
+        this.pollInterval = pollInterval;
+        this.maxAttempts = maxAttempts;
+        this.owner = hostName() + ":" + UUID.randomUUID();
+        this.freeSlots = new Semaphore(slots);
+
+        Gauge.builder("training.queue.depth", jobRepository, repository -> repository.countByState(TrainingJobState.QUEUED))
+                .description("Training jobs waiting for a slot, on all instances")
+                .register(meterRegistry);
+        Gauge.builder("training.slots.busy", runningJobs, Map::size)
+                .description("Training slots of this instance running a job")
+                .register(meterRegistry);
+        Gauge.builder("training.slots.capacity", () -> this.slots)
+                .description("Training slots of this instance")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!workerEnabled) {
+            log.info("Training scheduler '{}' only enqueues jobs, training slots are disabled", owner);
+            return;
+        }
+        recoverExpiredLeases();
+
+        workers = TrainingExecutors.create(virtualThreads, slots);
+
+        housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "training-lease-keeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long renewMillis = Math.max(1, leaseDuration.toMillis() / 3);
+        housekeeper.scheduleWithFixedDelay(this::renewLeases, renewMillis, renewMillis, TimeUnit.MILLISECONDS);
+        housekeeper.scheduleWithFixedDelay(this::recoverExpiredLeases, leaseDuration.toMillis(), leaseDuration.toMillis(), TimeUnit.MILLISECONDS);
+
+        dispatcher = new Thread(this::dispatchLoop, "training-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        log.info("Training scheduler '{}' started with {} slots and queue capacity {} on {} threads",
+                owner, slots, queueCapacity, virtualThreads && TrainingExecutors.virtualThreadsSupported() ? "virtual" : "platform");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (workers == null) {
+            return;
+        }
+        dispatcher.interrupt();
+        housekeeper.shutdownNow();
+        runningThreads.values().forEach(Thread::interrupt);
+        try {
+            if (!freeSlots.tryAcquire(slots, 10, TimeUnit.SECONDS)) {
+                log.warn("Training jobs did not stop within 10 seconds, their leases will expire");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        TrainingExecutors.close(workers);
+        workers = null;
+    }
+
+    public Submission submit(UUID modelId, int priority) {
+        return submit(modelId, priority, false);
+    }
+
+    public Submission submit(UUID modelId, int priority, boolean fullRetrain) {
+        TrainingJob job = new TrainingJob();
+        job.setModelId(modelId);
+        job.setPriority(priority);
+        job.setFullRetrain(fullRetrain);
+        job.setState(TrainingJobState.QUEUED);
+        job.setCreatedAt(Instant.now());
+        Submission submission;
+        try {
+            submission = jobRepository.enqueue(job, queueCapacity);
+        } catch (DataIntegrityViolationException e) {
+            // Another instance created the queue row at the same time; it exists now
+            job.setId(null);
+            submission = jobRepository.enqueue(job, queueCapacity);
+        }
+
+        switch (submission) {
+            case ALREADY_QUEUED -> {
+                deduplicated.incrementAndGet();
+                log.debug("Training for model {} is already queued or running", modelId);
+            }
+            case QUEUE_FULL -> {
+                rejected.incrementAndGet();
+                log.warn("Training queue is full ({} jobs), rejecting model {}", queueCapacity, modelId);
+            }
+            case QUEUED -> {
+                submitted.incrementAndGet();
+                wakeUp.release();
+                log.debug("Queued training job {} for model {} with priority {}", job.getId(), modelId, priority);
+            }
+        }
+        return submission;
+    }
+
+    public boolean isQueuedOrRunning(UUID modelId) {
+        return jobRepository.existsByModelIdAndStateIn(modelId, ACTIVE_STATES);
+    }
+
+    /**
+     * Fails the queued and running jobs of a model that is being deleted, in the caller's transaction. Jobs running on
+     * this instance are interrupted once it commits.
+     */
+    public int cancel(UUID modelId) {
+        int cancelled = jobRepository.failActive(modelId, Instant.now(), MODEL_DELETED);
+        if (cancelled > 0) {
+            log.info("Cancelled {} training jobs of deleted model {}", cancelled, modelId);
+            List<UUID> jobIds = runningJobs.values().stream()
+                    .filter(job -> modelId.equals(job.getModelId()))
+                    .map(TrainingJob::getId)
+                    .toList();
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        interrupt(jobIds);
+                    }
+                });
+            } else {
+                interrupt(jobIds);
+            }
+        }
+        return cancelled;
+    }
+
+    public int recoverExpiredLeases() {
+        int recovered = 0;
+        try {
+            Instant now = Instant.now();
+            for (TrainingJob job : jobRepository.findByStateAndLeaseExpiresAtBefore(TrainingJobState.RUNNING, now)) {
+                String error = "Lease of " + job.getLeaseOwner() + " expired";
+                boolean exhausted = job.getAttempts() >= maxAttempts;
+                int updated = exhausted
+                        ? jobRepository.failExpired(job.getId(), now, error)
+                        : jobRepository.requeueExpired(job.getId(), now, error);
+                if (updated == 1) {
+                    modelTrainer.resetInterrupted(job.getModelId());
+                    recovered++;
+                    log.warn("Recovered training job {} for model {} from expired lease of '{}' ({})",
+                            job.getId(), job.getModelId(), job.getLeaseOwner(), exhausted ? "failed" : "requeued");
+                }
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not recover expired training leases", e);
+        }
+        if (recovered > 0) {
+            wakeUp.release();
+        }
+        return recovered;
+    }
+
+    public TrainingSchedulerStats getStats() {
+        long now = System.currentTimeMillis();
+        trimRecentCompletions(now);
+        long startedJobs = started.get();
+        return new TrainingSchedulerStats(
+                slots,
+                queueCapacity,
+                (int) jobRepository.countByState(TrainingJobState.QUEUED),
+                runningJobs.size(),
+                submitted.get(),
+                completed.get(),
+                failed.get(),
+                rejected.get(),
+                deduplicated.get(),
+                recentCompletions.size(),
+                startedJobs == 0 ? 0 : totalWaitMillis.get() / startedJobs,
+                maxWaitMillis.get()
+        );
+    }
+
+    private void dispatchLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                freeSlots.acquire();
+                TrainingJob job;
+                try {
+                    job = awaitNextJob();
+                } catch (InterruptedException e) {
+                    freeSlots.release();
+                    throw e;
+                }
+                runningJobs.put(job.getId(), job);
+                workers.execute(() -> runJob(job));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private TrainingJob awaitNextJob() throws InterruptedException {
+        while (true) {
+            TrainingJob job = claimNextJob();
+            if (job != null) {
+                return job;
+            }
+            if (wakeUp.tryAcquire(pollInterval.toMillis(), TimeUnit.MILLISECONDS)) {
+                wakeUp.drainPermits();
+            }
+        }
+    }
+
+    private TrainingJob claimNextJob() {
+        try {
+            List<TrainingJob> candidates = jobRepository.findByStateOrderByPriorityDescCreatedAtAsc(
+                    TrainingJobState.QUEUED, Limit.of(CLAIM_BATCH_SIZE));
+            for (TrainingJob candidate : candidates) {
+                Instant now = Instant.now();
+                Instant leaseExpiresAt = now.plus(leaseDuration);
+                if (jobRepository.claim(candidate.getId(), owner, now, leaseExpiresAt) == 1) {
+                    candidate.setState(TrainingJobState.RUNNING);
+                    candidate.setLeaseOwner(owner);
+                    candidate.setLeaseExpiresAt(leaseExpiresAt);
+                    candidate.setStartedAt(now);
+                    candidate.setAttempts(candidate.getAttempts() + 1);
+                    return candidate;
+                }
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not claim training jobs", e);
+        }
+        return null;
+    }
+
+    private void runJob(TrainingJob job) {
+        Duration wait = Duration.between(job.getCreatedAt(), job.getStartedAt());
+        long waitMillis = wait.toMillis();
+        started.incrementAndGet();
+        totalWaitMillis.addAndGet(waitMillis);
+        maxWaitMillis.accumulateAndGet(waitMillis, Math::max);
+        log.debug("Training job {} for model {} started after {} ms in the queue", job.getId(), job.getModelId(), waitMillis);
+        runningThreads.put(job.getId(), Thread.currentThread());
+
+        String layer = layerOf(job.getModelId());
+        Timer.builder("training.job.wait")
+                .description("Time training jobs spent in the queue before a slot started them")
+                .tag("layer", layer)
+                .register(meterRegistry)
+                .record(wait);
+        long runStartedAt = System.nanoTime();
+        String outcome = "failed";
+        try {
+            modelTrainer.train(job.getModelId(), job.isFullRetrain());
+            finish(job, TrainingJobState.SUCCEEDED, null);
+            completed.incrementAndGet();
+            recordCompletion();
+            outcome = "succeeded";
+        } catch (InterruptedException e) {
+            outcome = "interrupted";
+            if (jobRepository.release(job.getId(), owner) == 1) {
+                modelTrainer.resetInterrupted(job.getModelId());
+                log.info("Training job {} for model {} was interrupted and returned to the queue",
+                        job.getId(), job.getModelId());
+            }
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            finish(job, TrainingJobState.FAILED, e.getMessage());
+            recordCompletion();
+            log.error("Training job {} for model {} failed", job.getId(), job.getModelId(), e);
+        } finally {
+            Timer.builder("training.job.run")
+                    .description("Time training jobs held a slot")
+                    .tag("layer", layer)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - runStartedAt, TimeUnit.NANOSECONDS);
+            runningThreads.remove(job.getId());
+            runningJobs.remove(job.getId());
+            if (cancelledJobs.remove(job.getId())) {
+                // Clear the interrupt that stopped the job so the slot's thread can run the next one
+                Thread.interrupted();
+                // The model was deleted with its artifacts while the job ran and may have written them again
+                modelTrainer.deleteArtifacts(job.getModelId());
+                log.info("Stopped training job {} of deleted model {}", job.getId(), job.getModelId());
+            }
+            freeSlots.release();
+        }
+    }
+
+    private String layerOf(UUID modelId) {
+        try {
+            return modelCache.get(modelId)
+                    .map(LLMModel::getLayers)
+                    .filter(layers -> !layers.isEmpty())
+                    .map(layers -> layers.get(0).name())
+                    .orElse("none");
+        } catch (DataAccessException e) {
+            log.warn("Could not load the layers of model {}", modelId, e);
+            return "unknown";
+        }
+    }
+
+    private void finish(TrainingJob job, TrainingJobState state, String error) {
+        String lastError = error != null && error.length() > 1000 ? error.substring(0, 1000) : error;
+        if (jobRepository.finish(job.getId(), owner, state, Instant.now(), lastError) == 0) {
+            log.warn("Training job {} finished as {} after its lease had been taken over", job.getId(), state);
+        }
+    }
+
+    private void renewLeases() {
+        if (runningJobs.isEmpty()) {
+            return;
+        }
+        try {
+            List<UUID> jobIds = List.copyOf(runningJobs.keySet());
+            if (jobRepository.renewLeases(jobIds, owner, Instant.now().plus(leaseDuration)) < jobIds.size()) {
+                // Jobs of models deleted on other instances were failed since the last renewal
+                interrupt(jobRepository.findAllById(jobIds).stream()
+                        .filter(job -> job.getState() == TrainingJobState.FAILED
+                                && MODEL_DELETED.equals(job.getLastError()))
+                        .map(TrainingJob::getId)
+                        .toList());
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not renew training job leases", e);
+        }
+    }
+
+    private void interrupt(List<UUID> jobIds) {
+        // Atomic with the removal of the thread when its job ends, so a thread is never interrupted after that
+        for (UUID jobId : jobIds) {
+            runningThreads.computeIfPresent(jobId, (id, thread) -> {
+                cancelledJobs.add(id);
+                thread.interrupt();
+                return thread;
+            });
+        }
+    }
+
+    private void recordCompletion() {
+        long now = System.currentTimeMillis();
+        recentCompletions.addLast(now);
+        trimRecentCompletions(now);
+    }
+
+    private void trimRecentCompletions(long now) {
+        long cutoff = now - TimeUnit.MINUTES.toMillis(1);
+        Long oldest;
+        while ((oldest = recentCompletions.peekFirst()) != null && oldest < cutoff) {
+            recentCompletions.pollFirst();
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+}
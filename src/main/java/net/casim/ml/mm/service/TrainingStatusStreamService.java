@@ -0,0 +1,116 @@
+package net.casim.ml.mm.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.casim.ml.mm.data.response.TrainingStatusEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes {@link TrainingStatusEvent}s published by the training pipeline to Server-Sent Events subscribers
+ * of the affected model.
+ */
+@Service
+@Slf4j
+public class TrainingStatusStreamService {
+
+    private final Map<UUID, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final Duration timeout;
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "training-status-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public TrainingStatusStreamService(@Value("${training.status-stream.timeout:30m}") Duration timeout,
+                                       @Value("${training.status-stream.heartbeat-interval:15s}") Duration heartbeatInterval) {
+        this.timeout = timeout;
+        heartbeat.scheduleAtFixedRate(this::sendHeartbeats, heartbeatInterval.toMillis(), heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public SseEmitter subscribe(UUID modelId, TrainingStatusEvent current) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        // Added within compute, like the removal of the last emitter in unsubscribe, so that it cannot go to a set
+        // that has just been removed from the map
+        subscribers.compute(modelId, (id, emitters) -> {
+            Set<SseEmitter> result = emitters == null ? ConcurrentHashMap.newKeySet() : emitters;
+            result.add(emitter);
+            return result;
+        });
+
+        Runnable remove = () -> unsubscribe(modelId, emitter);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(error -> remove.run());
+
+        send(modelId, emitter, current);
+        log.debug("Client subscribed to training status of model {} ({} subscribers)", modelId,
+                subscriberCount(modelId));
+        return emitter;
+    }
+
+    @EventListener
+    public void onTrainingStatus(TrainingStatusEvent event) {
+        Set<SseEmitter> emitters = subscribers.get(event.getModelId());
+        if (emitters == null) {
+            return;
+        }
+        for (SseEmitter emitter : emitters) {
+            send(event.getModelId(), emitter, event);
+        }
+    }
+
+    public int subscriberCount(UUID modelId) {
+        Set<SseEmitter> emitters = subscribers.get(modelId);
+        return emitters == null ? 0 : emitters.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        subscribers.values().forEach(emitters -> emitters.forEach(SseEmitter::complete));
+        subscribers.clear();
+    }
+
+    private void send(UUID modelId, SseEmitter emitter, TrainingStatusEvent event) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name(event.getType())
+                    .data(event));
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Dropping training status subscriber of model {}: {}", modelId, e.getMessage());
+            unsubscribe(modelId, emitter);
+        }
+    }
+
+    private void sendHeartbeats() {
+        subscribers.forEach((modelId, emitters) -> {
+            for (SseEmitter emitter : emitters) {
+                try {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                } catch (IOException | IllegalStateException e) {
+                    unsubscribe(modelId, emitter);
+                }
+            }
+        });
+    }
+
+    private void unsubscribe(UUID modelId, SseEmitter emitter) {
+        subscribers.computeIfPresent(modelId, (id, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+}
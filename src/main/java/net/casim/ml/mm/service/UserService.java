@@ -3,6 +3,7 @@ package net.casim.ml.mm.service;
 import lombok.extern.slf4j.Slf4j;
 import net.casim.ml.mm.data.User;
 import net.casim.ml.mm.data.request.RegisterRequest;
+import net.casim.ml.mm.exception.ResourceNotFoundException;
 import net.casim.ml.mm.repository.UserRepository;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -17,10 +18,13 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final BCryptPasswordEncoder passwordEncoder;
+    private final UserTokenVersionCache tokenVersionCache;
 
-    public UserService(UserRepository userRepository, BCryptPasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, BCryptPasswordEncoder passwordEncoder,
+                       UserTokenVersionCache tokenVersionCache) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.tokenVersionCache = tokenVersionCache;
     }
 
     public User registerUser(RegisterRequest request) {
@@ -40,17 +44,7 @@ public class UserService {
         user.setUsername(request.getUsername());
         user.setPassword(passwordEncoder.encode(request.getPassword()));
 
-        List<String> roles = new ArrayList<>();
-        for (String role : request.getRoles()) {
-            String upperRole = role.toUpperCase();
-            if (upperRole.equals("ADMIN") || upperRole.equals("USER")) {
-                roles.add(upperRole);
-            } else {
-                log.warn("Invalid role '{}' provided for user '{}'", role, request.getUsername());
-                throw new IllegalArgumentException("Invalid role: " + role + ". Only 'ADMIN' or 'USER' roles are allowed.");
-            }
-        }
-        user.setRoles(roles);
+        user.setRoles(validateRoles(request.getUsername(), request.getRoles()));
 
         User savedUser = userRepository.save(user);
         log.info("User '{}' registered successfully with roles: {}", savedUser.getUsername(), savedUser.getRoles());
@@ -68,4 +62,44 @@ public class UserService {
         }
         return user;
     }
+
+    /**
+     * Replaces the roles of {@code username} and invalidates the tokens issued with the old roles.
+     */
+    public User updateRoles(String username, List<String> roles) {
+        User user = userRepository.findUserByUsername(username)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found: " + username));
+        user.setRoles(validateRoles(username, roles));
+        user.setTokenVersion(user.getTokenVersion() + 1);
+        User savedUser = userRepository.save(user);
+        tokenVersionCache.invalidate(username);
+        log.info("Roles of user '{}' changed to {}", username, savedUser.getRoles());
+        return savedUser;
+    }
+
+    /**
+     * Invalidates every token issued to {@code username} so far.
+     */
+    public void revokeTokens(String username) {
+        User user = userRepository.findUserByUsername(username)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found: " + username));
+        user.setTokenVersion(user.getTokenVersion() + 1);
+        userRepository.save(user);
+        tokenVersionCache.invalidate(username);
+        log.info("Tokens of user '{}' revoked", username);
+    }
+
+    private List<String> validateRoles(String username, List<String> requestedRoles) {
+        List<String> roles = new ArrayList<>();
+        for (String role : requestedRoles) {
+            String upperRole = role.toUpperCase();
+            if (upperRole.equals("ADMIN") || upperRole.equals("USER")) {
+                roles.add(upperRole);
+            } else {
+                log.warn("Invalid role '{}' provided for user '{}'", role, username);
+                throw new IllegalArgumentException("Invalid role: " + role + ". Only 'ADMIN' or 'USER' roles are allowed.");
+            }
+        }
+        return roles;
+    }
 }
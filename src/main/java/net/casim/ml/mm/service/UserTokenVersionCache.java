@@ -0,0 +1,45 @@
+package net.casim.ml.mm.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import net.casim.ml.mm.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Current token version per username, used to reject tokens issued before a role change or revocation without
+ * loading the user on every request. Changes made on this instance are visible immediately through
+ * {@link #invalidate}; changes made elsewhere are picked up within {@code security.jwt.user-version-cache.ttl}.
+ */
+@Component
+public class UserTokenVersionCache {
+
+    private static final int UNKNOWN_USER = -1;
+
+    private final LoadingCache<String, Integer> versions;
+
+    public UserTokenVersionCache(UserRepository userRepository,
+                                 @Value("${security.jwt.user-version-cache.ttl:30s}") Duration ttl,
+                                 @Value("${security.jwt.user-version-cache.max-size:10000}") long maxSize,
+                                 MeterRegistry meterRegistry) {
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build(username -> userRepository.findTokenVersionByUsername(username).orElse(UNKNOWN_USER));
+        CaffeineCacheMetrics.monitor(meterRegistry, versions, "jwt.user-versions");
+    }
+
+    public boolean isCurrent(String username, int tokenVersion) {
+        int current = versions.get(username);
+        return current != UNKNOWN_USER && current == tokenVersion;
+    }
+
+    public void invalidate(String username) {
+        versions.invalidate(username);
+    }
+}
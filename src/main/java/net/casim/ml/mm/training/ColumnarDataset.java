@@ -0,0 +1,460 @@
+package net.casim.ml.mm.training;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import net.casim.ml.mm.utils.LongLongHashMap;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Labelled text that has already been read and tokenized by {@link TextTokenizer}, so training can start from token
+ * ids instead of parsing the original file again. A dataset is a directory next to the original file holding
+ * <ul>
+ *     <li>{@code manifest.json}: format and tokenizer versions, row counts and where each block starts</li>
+ *     <li>{@code labels.bin}: the label dictionary, one length-prefixed UTF-8 string per label id</li>
+ *     <li>{@code vocab.bin}: one entry per token id, the token's 64-bit hash followed by its length-prefixed text</li>
+ *     <li>{@code rows.bin}: blocks of up to {@value #BLOCK_ROWS} rows</li>
+ * </ul>
+ * Each block stores its rows column by column: label ids, line offsets in the original file (delta-encoded), the
+ * number of tokens per row and the token ids of all rows back to back. All numbers are unsigned varints, and token
+ * ids are assigned in order of first appearance, so frequent tokens take one or two bytes. Rows keep their line
+ * offset so that the split into training and evaluation rows is the same as when reading the original file.
+ */
+public final class ColumnarDataset {
+
+    public static final int FORMAT_VERSION = 1;
+    public static final int BLOCK_ROWS = 64 * 1024;
+
+    private static final String MANIFEST = "manifest.json";
+    private static final String LABELS = "labels.bin";
+    private static final String VOCABULARY = "vocab.bin";
+    private static final String ROWS = "rows.bin";
+    private static final String DIRECTORY_SUFFIX = ".columnar";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final Path directory;
+    private final Manifest manifest;
+    private final String[] labels;
+    private final long[] tokenHashes;
+
+    private ColumnarDataset(Path directory, Manifest manifest, String[] labels, long[] tokenHashes) {
+        this.directory = directory;
+        this.manifest = manifest;
+        this.labels = labels;
+        this.tokenHashes = tokenHashes;
+    }
+
+    /**
+     * Where the dataset for {@code file} is kept.
+     */
+    public static Path directoryFor(Path file) {
+        return file.resolveSibling(file.getFileName() + DIRECTORY_SUFFIX);
+    }
+
+    /**
+     * Reads the manifest, labels and vocabulary of the dataset in {@code directory}.
+     *
+     * @return null if there is no complete dataset there or it was written by another format or tokenizer version
+     */
+    public static ColumnarDataset open(Path directory) throws IOException {
+        Path manifestFile = directory.resolve(MANIFEST);
+        if (!Files.isRegularFile(manifestFile)) {
+            return null;
+        }
+        Manifest manifest = OBJECT_MAPPER.readValue(manifestFile.toFile(), Manifest.class);
+        if (manifest.getFormatVersion() != FORMAT_VERSION || manifest.getTokenizerVersion() != TextTokenizer.VERSION) {
+            return null;
+        }
+        String[] labels = new String[manifest.getLabels()];
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(directory.resolve(LABELS)))) {
+            for (int i = 0; i < labels.length; i++) {
+                labels[i] = new String(in.readNBytes(readVarint(in)), StandardCharsets.UTF_8);
+            }
+        }
+        long[] tokenHashes = new long[manifest.getVocabularySize()];
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(directory.resolve(VOCABULARY)))) {
+            for (int i = 0; i < tokenHashes.length; i++) {
+                tokenHashes[i] = in.readLong();
+                in.skipNBytes(readVarint(in));
+            }
+        }
+        return new ColumnarDataset(directory, manifest, labels, tokenHashes);
+    }
+
+    /**
+     * Reads every row of {@code source} with a {@link LabeledTextReader} and writes the dataset to {@code directory},
+     * which must not exist yet.
+     */
+    public static Manifest write(Path source, String name, Path directory) throws IOException {
+        Files.createDirectory(directory);
+        Manifest manifest = new Manifest();
+        manifest.setFormatVersion(FORMAT_VERSION);
+        manifest.setTokenizerVersion(TextTokenizer.VERSION);
+        manifest.setSourceSize(Files.size(source));
+
+        Map<String, Integer> labelIds = new HashMap<>();
+        List<String> labels = new ArrayList<>();
+        // token hash -> token id + 1, so that missing tokens read as 0
+        LongLongHashMap tokenIds = new LongLongHashMap();
+        List<Long> blockOffsets = new ArrayList<>();
+        Block block = new Block();
+        TextTokenizer.Scratch scratch = new TextTokenizer.Scratch();
+        long rowsOffset = 0;
+        long tokens = 0;
+
+        try (LabeledTextReader reader = new LabeledTextReader(source, name);
+             DataOutputStream vocabulary = output(directory.resolve(VOCABULARY));
+             OutputStream rows = output(directory.resolve(ROWS))) {
+            TextTokenizer.TokenConsumer addToken = (hash, start, end) -> {
+                long id = tokenIds.get(hash) - 1;
+                if (id < 0) {
+                    id = tokenIds.size();
+                    tokenIds.put(hash, id + 1);
+                    byte[] text = new String(scratch.bytes(), start, end - start, StandardCharsets.UTF_8)
+                            .toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+                    try {
+                        vocabulary.writeLong(hash);
+                        writeVarint(vocabulary, text.length);
+                        vocabulary.write(text);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                block.tokens.writeVarint(id);
+            };
+            while (reader.next()) {
+                int labelId = labelIds.computeIfAbsent(reader.getLabel(), label -> {
+                    labels.add(label);
+                    return labels.size() - 1;
+                });
+                int rowTokens = TextTokenizer.forEachToken(reader.getText(), scratch, addToken);
+                block.add(labelId, reader.getLineOffset(), rowTokens);
+                tokens += rowTokens;
+                if (block.rows == BLOCK_ROWS) {
+                    blockOffsets.add(rowsOffset);
+                    rowsOffset += block.writeTo(rows);
+                }
+            }
+            if (block.rows > 0) {
+                blockOffsets.add(rowsOffset);
+                rowsOffset += block.writeTo(rows);
+            }
+            blockOffsets.add(rowsOffset);
+            manifest.setSkippedRows(reader.getSkippedRows());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        try (DataOutputStream out = output(directory.resolve(LABELS))) {
+            for (String label : labels) {
+                byte[] bytes = label.getBytes(StandardCharsets.UTF_8);
+                writeVarint(out, bytes.length);
+                out.write(bytes);
+            }
+        }
+        manifest.setRows(block.totalRows);
+        manifest.setTokens(tokens);
+        manifest.setLabels(labels.size());
+        manifest.setVocabularySize(tokenIds.size());
+        manifest.setBlockOffsets(blockOffsets.stream().mapToLong(Long::longValue).toArray());
+        // The manifest is written last, so a directory without one is incomplete
+        OBJECT_MAPPER.writeValue(directory.resolve(MANIFEST).toFile(), manifest);
+        return manifest;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public Manifest getManifest() {
+        return manifest;
+    }
+
+    public int getBlockCount() {
+        return manifest.getBlockOffsets().length - 1;
+    }
+
+    /**
+     * Size in bytes of blocks {@code from} to {@code to}, exclusive.
+     */
+    public long getBlocksSize(int from, int to) {
+        return manifest.getBlockOffsets()[to] - manifest.getBlockOffsets()[from];
+    }
+
+    public String[] getLabels() {
+        return labels;
+    }
+
+    /**
+     * The hash of every token, by token id.
+     */
+    public long[] getTokenHashes() {
+        return tokenHashes;
+    }
+
+    /**
+     * Opens a cursor over the rows of blocks {@code from} to {@code to}, exclusive.
+     */
+    public RowCursor rows(int from, int to) throws IOException {
+        return new RowCursor(FileChannel.open(directory.resolve(ROWS), StandardOpenOption.READ), from, to);
+    }
+
+    private static DataOutputStream output(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE_NEW),
+                256 * 1024));
+    }
+
+    private static void writeVarint(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (b & 0x7f) << shift;
+            if (b < 0x80) {
+                return value;
+            }
+        }
+    }
+
+    @Data
+    public static class Manifest {
+        private int formatVersion;
+        private int tokenizerVersion;
+        private long sourceSize;
+        private long rows;
+        private long skippedRows;
+        private long tokens;
+        private int labels;
+        private int vocabularySize;
+        private long[] blockOffsets;
+    }
+
+    /**
+     * Reads the rows of a range of blocks, one block at a time. The token ids of the current row are in
+     * {@link #getTokens()} and are overwritten by the next row.
+     */
+    public final class RowCursor implements Closeable {
+
+        private final FileChannel channel;
+        private final int toBlock;
+        private int nextBlock;
+        private byte[] block = new byte[0];
+        private int[] tokens = new int[64];
+        private int rowsLeft;
+        private int labelPosition;
+        private int offsetPosition;
+        private int countPosition;
+        private int tokenPosition;
+        // Position just past the varint decoded by the last readVarint call
+        private int position;
+        private int label;
+        private long offset;
+        private int tokenCount;
+        private long bytesRead;
+
+        private RowCursor(FileChannel channel, int fromBlock, int toBlock) {
+            this.channel = channel;
+            this.nextBlock = fromBlock;
+            this.toBlock = toBlock;
+        }
+
+        public boolean next() throws IOException {
+            while (rowsLeft == 0) {
+                if (nextBlock == toBlock) {
+                    return false;
+                }
+                readBlock(nextBlock++);
+            }
+            rowsLeft--;
+            label = (int) readVarint(labelPosition);
+            labelPosition = position;
+            offset += readVarint(offsetPosition);
+            offsetPosition = position;
+            tokenCount = (int) readVarint(countPosition);
+            countPosition = position;
+            if (tokenCount > tokens.length) {
+                tokens = new int[Math.max(tokenCount, tokens.length * 2)];
+            }
+            byte[] bytes = block;
+            int p = tokenPosition;
+            for (int t = 0; t < tokenCount; t++) {
+                int b = bytes[p++];
+                int id = b & 0x7f;
+                for (int shift = 7; b < 0; shift += 7) {
+                    b = bytes[p++];
+                    id |= (b & 0x7f) << shift;
+                }
+                tokens[t] = id;
+            }
+            tokenPosition = p;
+            return true;
+        }
+
+        /**
+         * Label id of the current row, an index into {@link #getLabels()}.
+         */
+        public int getLabel() {
+            return label;
+        }
+
+        /**
+         * Offset of the current row in the original file.
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        public int getTokenCount() {
+            return tokenCount;
+        }
+
+        public int[] getTokens() {
+            return tokens;
+        }
+
+        /**
+         * Bytes of the blocks read so far.
+         */
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private long readVarint(int at) {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = block[at++];
+                value |= (long) (b & 0x7f) << shift;
+                if (b >= 0) {
+                    position = at;
+                    return value;
+                }
+            }
+        }
+
+        private void readBlock(int index) throws IOException {
+            long start = manifest.getBlockOffsets()[index];
+            int size = (int) (manifest.getBlockOffsets()[index + 1] - start);
+            if (block.length < size) {
+                block = new byte[size];
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(block, 0, size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    throw new EOFException("Block " + index + " of " + directory + " is truncated");
+                }
+            }
+            bytesRead += size;
+
+            rowsLeft = (int) readVarint(0);
+            offset = readVarint(position);
+            int labelLength = (int) readVarint(position);
+            int offsetLength = (int) readVarint(position);
+            int countLength = (int) readVarint(position);
+            labelPosition = position;
+            offsetPosition = labelPosition + labelLength;
+            countPosition = offsetPosition + offsetLength;
+            tokenPosition = countPosition + countLength;
+        }
+    }
+
+    /**
+     * Columns of the block being written.
+     */
+    private static final class Block {
+
+        private final Column labels = new Column();
+        private final Column offsets = new Column();
+        private final Column counts = new Column();
+        private final Column tokens = new Column();
+        private final Column header = new Column();
+        private int rows;
+        private long totalRows;
+        private long firstOffset;
+        private long lastOffset;
+
+        private void add(int label, long offset, int tokenCount) {
+            if (rows == 0) {
+                firstOffset = offset;
+                lastOffset = offset;
+            }
+            labels.writeVarint(label);
+            offsets.writeVarint(offset - lastOffset);
+            counts.writeVarint(tokenCount);
+            lastOffset = offset;
+            rows++;
+            totalRows++;
+        }
+
+        /**
+         * Writes the block and starts the next one.
+         *
+         * @return the number of bytes written
+         */
+        private long writeTo(OutputStream out) throws IOException {
+            header.writeVarint(rows);
+            header.writeVarint(firstOffset);
+            header.writeVarint(labels.size);
+            header.writeVarint(offsets.size);
+            header.writeVarint(counts.size);
+            long written = 0;
+            for (Column column : new Column[]{header, labels, offsets, counts, tokens}) {
+                out.write(column.bytes, 0, column.size);
+                written += column.size;
+                column.size = 0;
+            }
+            rows = 0;
+            return written;
+        }
+    }
+
+    private static final class Column {
+
+        private byte[] bytes = new byte[64 * 1024];
+        private int size;
+
+        private void writeVarint(long value) {
+            if (size + 10 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            while ((value & ~0x7fL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package net.casim.ml.mm.training;
+
+import net.casim.ml.mm.dataset.ByteSlice;
+import net.casim.ml.mm.dataset.DatasetFormat;
+import net.casim.ml.mm.dataset.DatasetReader;
+import net.casim.ml.mm.dataset.DatasetRecord;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads labelled text rows from a training data file with a {@link DatasetReader}. JSON lines files hold objects
+ * with {@code label} and {@code text} fields; delimited files have the label in the first column and the text in the
+ * rest of the line. A first line whose label is {@code label} is a header. Rows without a label or text are counted
+ * as skipped.
+ * <p>
+ * The text is returned as a view of the file that is only valid until the next row; labels are decoded once per
+ * distinct label.
+ */
+public class LabeledTextReader implements Closeable {
+
+    private final DatasetReader reader;
+    private final Map<ByteSlice, String> labels = new HashMap<>();
+    private long skippedRows;
+    private String label;
+    private ByteSlice text;
+
+    public LabeledTextReader(Path file, String name) throws IOException {
+        this(file, name, 0, Long.MAX_VALUE);
+    }
+
+    public LabeledTextReader(Path file, String name, long start, long end) throws IOException {
+        this.reader = new DatasetReader(file, name, null, start, end, DatasetReader.DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Advances to the next usable row.
+     *
+     * @return false at the end of the range
+     */
+    public boolean next() throws IOException {
+        while (reader.next()) {
+            DatasetRecord record = reader.getRecord();
+            if (!record.isValid()) {
+                skippedRows++;
+                continue;
+            }
+            ByteSlice rowLabel;
+            ByteSlice rowText;
+            if (record.getFormat() == DatasetFormat.JSONL) {
+                rowLabel = record.getField("label");
+                rowText = record.getField("text");
+            } else {
+                rowLabel = record.getField(0);
+                if (record.getOffset() == 0 && rowLabel.equalsIgnoreCaseAscii("label")) {
+                    continue;
+                }
+                rowText = record.getRemainder(1);
+            }
+            if (rowLabel == null || rowText == null || rowLabel.isBlank() || rowText.isBlank()) {
+                skippedRows++;
+                continue;
+            }
+            label = labels.get(rowLabel);
+            if (label == null) {
+                label = rowLabel.toString().strip();
+                labels.put(rowLabel.copy(), label);
+            }
+            text = rowText;
+            return true;
+        }
+        return false;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public ByteSlice getText() {
+        return text;
+    }
+
+    /**
+     * Offset in the file of the current row, stable however the file is split into ranges.
+     */
+    public long getLineOffset() {
+        return reader.getRecord().getOffset();
+    }
+
+    public long getBytesRead() {
+        return reader.getBytesRead();
+    }
+
+    public long getSkippedRows() {
+        return skippedRows;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
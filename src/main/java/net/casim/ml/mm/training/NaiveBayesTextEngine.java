@@ -0,0 +1,916 @@
+package net.casim.ml.mm.training;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.casim.ml.mm.data.ModelLayer;
+import net.casim.ml.mm.data.TrainingData;
+import net.casim.ml.mm.dataset.ByteSlice;
+import net.casim.ml.mm.dataset.DatasetReader;
+import net.casim.ml.mm.utils.LongLongHashMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BinaryOperator;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Multinomial naive Bayes text classifier with Laplace smoothing. About one row in five is held out for evaluation,
+ * chosen by a hash of the row's position in its file; the first pass over the files trains on the other rows and the
+ * second pass evaluates the held-out ones, so no rows are kept in memory. Tokens are maximal runs of letters and
+ * digits, lower-cased and identified by a 64-bit hash of their UTF-8 bytes, so rows are tokenized straight from the
+ * mapped file without decoding them to strings.
+ * <p>
+ * Both passes split every file into byte ranges and process them on a fork/join pool of
+ * {@code training.engine.threads} workers. Each range counts into its own primitive maps and the results are merged
+ * pairwise as the tasks complete, so workers never share mutable state. The split into training and evaluation rows
+ * does not depend on the ranges, so the model is the same for any number of threads.
+ * <p>
+ * Files that have been {@link ColumnarDataset ingested} are read from their columnar form instead, split by blocks:
+ * rows arrive as label and token ids, so nothing is parsed or tokenized, and while the number of labels times the
+ * vocabulary is small the counts go to a dense array indexed by label and token id rather than to hash maps. The
+ * result is the same as when reading the original file.
+ * <p>
+ * The token counts are all the model needs, so they are saved as the request's artifact together with the ids of the
+ * files they were counted from. An incremental training reads them back, counts only the new files and adds the two;
+ * the model is the same as after a full training on all files. It is evaluated on the held-out rows of the new files,
+ * or of all files when the new ones hold out fewer than {@value #MIN_INCREMENTAL_EVALUATION_ROWS}. If the artifact is
+ * missing or unreadable, or was not counted from exactly the files that are not new, the engine trains on all files.
+ * The same artifact is what {@link #load} rebuilds the model from to serve predictions.
+ */
+@Component
+@Slf4j
+public class NaiveBayesTextEngine implements TrainingEngine {
+
+    private static final int HOLDOUT_EVERY = 5;
+    private static final int SHARDS_PER_THREAD = 4;
+    private static final long MIN_SHARD_SIZE = 1024 * 1024;
+    private static final int CANCEL_CHECK_ROWS = 1024;
+    private static final int MAX_REPORTED_CLASSES = 100;
+    private static final long MAX_DENSE_COUNTS = 4 * 1024 * 1024;
+    private static final int MIN_INCREMENTAL_EVALUATION_ROWS = 1000;
+    private static final int ARTIFACT_VERSION = 1;
+    private static final int ARTIFACT_BUFFER_SIZE = 256 * 1024;
+
+    private final int threads;
+    private final ForkJoinPool pool;
+
+    public NaiveBayesTextEngine(@Value("${training.engine.threads:0}") int threads) {
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(this.threads, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("training-engine-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    @Override
+    public String getName() {
+        return "naive-bayes-text";
+    }
+
+    @Override
+    public Set<ModelLayer> getSupportedLayers() {
+        return EnumSet.of(ModelLayer.TEXT_CLASSIFIER);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    @Override
+    public TrainingResult train(TrainingRequest request, IntConsumer progress) throws IOException, InterruptedException {
+        Counts previous = null;
+        String fallbackReason = null;
+        if (request.isIncremental()) {
+            try {
+                previous = readArtifact(request);
+            } catch (IOException | RuntimeException e) {
+                fallbackReason = "artifact could not be read: " + e;
+            }
+            if (previous == null && fallbackReason == null) {
+                fallbackReason = "training data changed since the artifact was written";
+            }
+        }
+        List<TrainingData> countedFiles = previous == null ? request.getTrainingData() : request.getNewTrainingData();
+        List<Shard> countShards = shards(request.getTrainingData(), countedFiles);
+        long totalBytes = Math.max(1, 2 * countShards.stream().mapToLong(Shard::getSize).sum());
+        Run run = new Run(totalBytes, progress);
+
+        long startedAt = System.nanoTime();
+        Counts counts = countShards.isEmpty() ? new Counts()
+                : run.invoke(countShards, shard -> count(shard, run), Counts::merge);
+        long countedRows = counts.rows;
+        if (previous != null) {
+            counts = Counts.merge(previous, counts);
+        }
+        long trainedAt = System.nanoTime();
+
+        if (counts.labels.size() < 2) {
+            throw new IllegalArgumentException("Training data needs at least two labels, found " + counts.labels);
+        }
+        Model model = new Model(counts);
+        // An incremental training is evaluated on the new rows if they hold out enough of them, otherwise on all
+        Evaluation evaluation = countShards.isEmpty() ? new Evaluation(model.labels.length)
+                : run.invoke(countShards, shard -> evaluate(shard, model, run), Evaluation::merge);
+        boolean evaluatedAll = previous == null;
+        if (!evaluatedAll && evaluation.rows < MIN_INCREMENTAL_EVALUATION_ROWS) {
+            Set<UUID> newFiles = new HashSet<>();
+            request.getNewTrainingData().forEach(file -> newFiles.add(file.getId()));
+            List<TrainingData> previousFiles = request.getTrainingData().stream()
+                    .filter(file -> !newFiles.contains(file.getId()))
+                    .toList();
+            evaluation = Evaluation.merge(evaluation, run.invoke(shards(request.getTrainingData(), previousFiles),
+                    shard -> evaluate(shard, model, run), Evaluation::merge));
+            evaluatedAll = true;
+        }
+        long evaluatedAt = System.nanoTime();
+        if (evaluation.rows == 0) {
+            throw new IllegalArgumentException("Training data has too few rows to hold any out for evaluation");
+        }
+        if (request.getArtifact() != null) {
+            writeArtifact(request, counts);
+        }
+
+        long rows = countedRows + evaluation.rows;
+        double seconds = (evaluatedAt - startedAt) / 1e9;
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("engine", getName());
+        metrics.put("mode", previous == null ? "full" : "incremental");
+        if (fallbackReason != null) {
+            metrics.put("fullTrainingReason", fallbackReason);
+        }
+        metrics.put("threads", threads);
+        metrics.put("shards", countShards.size());
+        metrics.put("columnarFiles", countShards.stream().filter(Shard::isColumnar).mapToLong(Shard::getFileKey)
+                .distinct().count());
+        metrics.put("trainingRows", model.rows);
+        metrics.put("countedRows", countedRows);
+        metrics.put("evaluationRows", evaluation.rows);
+        metrics.put("evaluatedOn", evaluatedAll ? "all" : "new");
+        metrics.put("skippedRows", counts.skippedRows);
+        metrics.put("classes", model.labels.length);
+        metrics.put("vocabularySize", model.tokenIndex.size());
+        metrics.put("accuracy", round(evaluation.accuracy()));
+        metrics.put("macroF1", round(evaluation.macroF1()));
+        metrics.put("perClass", evaluation.perClass(model.labels));
+        metrics.put("trainingMillis", (trainedAt - startedAt) / 1_000_000);
+        metrics.put("evaluationMillis", (evaluatedAt - trainedAt) / 1_000_000);
+        metrics.put("rowsPerSecond", Math.round(rows / Math.max(seconds, 1e-9)));
+        log.info("Trained naive Bayes model {} ({}) on {} rows, {} of them new ({} classes, {} tokens) in {} ms on {} "
+                        + "threads, accuracy {}", request.getModelId(), metrics.get("mode"), model.rows, countedRows,
+                model.labels.length, model.tokenIndex.size(), (trainedAt - startedAt) / 1_000_000, threads,
+                metrics.get("accuracy"));
+        if (fallbackReason != null) {
+            log.info("Model {} was trained from scratch: {}", request.getModelId(), fallbackReason);
+        }
+        return new TrainingResult(evaluation.accuracy(), metrics);
+    }
+
+    /**
+     * The counts saved by the last training, if they were made from exactly the files that are not new.
+     */
+    private static Counts readArtifact(TrainingRequest request) throws IOException {
+        Set<UUID> previousFiles = new HashSet<>();
+        request.getTrainingData().forEach(file -> previousFiles.add(file.getId()));
+        request.getNewTrainingData().forEach(file -> previousFiles.remove(file.getId()));
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(request.getArtifact()), ARTIFACT_BUFFER_SIZE))) {
+            if (in.readInt() != ARTIFACT_VERSION || in.readInt() != TextTokenizer.VERSION) {
+                return null;
+            }
+            int files = in.readInt();
+            Set<UUID> artifactFiles = new HashSet<>();
+            for (int i = 0; i < files; i++) {
+                artifactFiles.add(new UUID(in.readLong(), in.readLong()));
+            }
+            return artifactFiles.equals(previousFiles) ? Counts.read(in) : null;
+        }
+    }
+
+    /**
+     * Saves {@code counts} as the state to continue from, replacing the previous artifact only once it is complete.
+     */
+    private static void writeArtifact(TrainingRequest request, Counts counts) throws IOException {
+        Path artifact = request.getArtifact();
+        Files.createDirectories(artifact.getParent());
+        Path temp = artifact.resolveSibling(artifact.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(temp, StandardOpenOption.CREATE_NEW), ARTIFACT_BUFFER_SIZE))) {
+                out.writeInt(ARTIFACT_VERSION);
+                out.writeInt(TextTokenizer.VERSION);
+                out.writeInt(request.getTrainingData().size());
+                for (TrainingData file : request.getTrainingData()) {
+                    out.writeLong(file.getId().getMostSignificantBits());
+                    out.writeLong(file.getId().getLeastSignificantBits());
+                }
+                counts.write(out);
+            }
+            Files.move(temp, artifact, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public TrainedModel load(Path artifact) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(artifact), ARTIFACT_BUFFER_SIZE))) {
+            if (in.readInt() != ARTIFACT_VERSION || in.readInt() != TextTokenizer.VERSION) {
+                throw new IOException("Artifact " + artifact + " was written by another version of the engine");
+            }
+            in.skipNBytes(16L * in.readInt());
+            Counts counts = Counts.read(in);
+            if (counts.labels.isEmpty()) {
+                throw new IOException("Artifact " + artifact + " holds no trained classes");
+            }
+            return new Model(counts);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Splits {@code files}, some or all of {@code allFiles}, into shards.
+     */
+    private List<Shard> shards(List<TrainingData> allFiles, List<TrainingData> files) {
+        List<Shard> shards = new ArrayList<>();
+        for (TrainingData file : files) {
+            long key = fileKey(file, allFiles.indexOf(file));
+            ColumnarDataset dataset = openColumnar(file);
+            if (dataset != null) {
+                int blocks = dataset.getBlockCount();
+                int count = Math.max(1, Math.min(threads * SHARDS_PER_THREAD, blocks));
+                for (int i = 0; i < count; i++) {
+                    int from = (int) ((long) blocks * i / count);
+                    int to = (int) ((long) blocks * (i + 1) / count);
+                    shards.add(new Shard(key, null, file.getName(), from, to, dataset.getBlocksSize(from, to), dataset,
+                            i == 0));
+                }
+                continue;
+            }
+            int count = (int) Math.max(1, Math.min((long) threads * SHARDS_PER_THREAD, file.getSize() / MIN_SHARD_SIZE));
+            long[] boundaries = DatasetReader.split(file.getSize(), count);
+            for (int i = 0; i < boundaries.length - 1; i++) {
+                // The last range reads to the end of the file even if the recorded size is stale
+                long end = i == boundaries.length - 2 ? Long.MAX_VALUE : boundaries[i + 1];
+                shards.add(new Shard(key, Path.of(file.getFilePath()), file.getName(), boundaries[i], end,
+                        boundaries[i + 1] - boundaries[i], null, false));
+            }
+        }
+        return shards;
+    }
+
+    /**
+     * The ingested form of {@code file}, if it has one that was made from the file as it is now.
+     */
+    private static ColumnarDataset openColumnar(TrainingData file) {
+        if (file.getColumnarPath() == null) {
+            return null;
+        }
+        try {
+            ColumnarDataset dataset = ColumnarDataset.open(Path.of(file.getColumnarPath()));
+            if (dataset != null && dataset.getManifest().getSourceSize() == file.getSize()) {
+                return dataset;
+            }
+            log.info("Columnar form of training data {} is missing or outdated, reading the original file", file.getId());
+        } catch (IOException e) {
+            log.warn("Could not open columnar form of training data {}, reading the original file", file.getId(), e);
+        }
+        return null;
+    }
+
+    private static Counts count(Shard shard, Run run) throws IOException {
+        if (shard.isColumnar()) {
+            return countColumnar(shard, run);
+        }
+        Counts counts = new Counts();
+        try (LabeledTextReader reader = shard.open()) {
+            long rows = 0;
+            long reportedBytes = 0;
+            while (reader.next()) {
+                if (!isHeldOut(shard.getFileKey(), reader.getLineOffset())) {
+                    counts.add(reader.getLabel(), reader.getText());
+                }
+                if (++rows % CANCEL_CHECK_ROWS == 0) {
+                    reportedBytes += run.advance(reader.getBytesRead() - reportedBytes);
+                }
+            }
+            run.advance(shard.length(reader) - reportedBytes);
+            counts.skippedRows = reader.getSkippedRows();
+        }
+        return counts;
+    }
+
+    private static Counts countColumnar(Shard shard, Run run) throws IOException {
+        ColumnarDataset dataset = shard.getColumnar();
+        String[] labels = dataset.getLabels();
+        long[] tokenHashes = dataset.getTokenHashes();
+        int vocabulary = tokenHashes.length;
+        boolean dense = (long) labels.length * vocabulary <= MAX_DENSE_COUNTS;
+        int[] denseCounts = dense ? new int[labels.length * vocabulary] : null;
+        long[] documentCounts = new long[labels.length];
+        long[] tokenTotals = new long[labels.length];
+        Counts counts = new Counts();
+        try (ColumnarDataset.RowCursor rows = dataset.rows((int) shard.getStart(), (int) shard.getEnd())) {
+            long rowCount = 0;
+            long reportedBytes = 0;
+            while (rows.next()) {
+                if (!isHeldOut(shard.getFileKey(), rows.getOffset())) {
+                    int label = rows.getLabel();
+                    int[] tokens = rows.getTokens();
+                    int tokenCount = rows.getTokenCount();
+                    documentCounts[label]++;
+                    tokenTotals[label] += tokenCount;
+                    if (dense) {
+                        int base = label * vocabulary;
+                        for (int t = 0; t < tokenCount; t++) {
+                            denseCounts[base + tokens[t]]++;
+                        }
+                    } else {
+                        LongLongHashMap labelCounts = counts.tokenCounts(labels[label]);
+                        for (int t = 0; t < tokenCount; t++) {
+                            labelCounts.addTo(tokenHashes[tokens[t]], 1);
+                        }
+                    }
+                }
+                if (++rowCount % CANCEL_CHECK_ROWS == 0) {
+                    reportedBytes += run.advance(rows.getBytesRead() - reportedBytes);
+                }
+            }
+            run.advance(rows.getBytesRead() - reportedBytes);
+        }
+        for (int l = 0; l < labels.length; l++) {
+            if (documentCounts[l] == 0) {
+                continue;
+            }
+            int labelId = counts.labelId(labels[l]);
+            counts.rows += documentCounts[l];
+            counts.documentCounts[labelId] += documentCounts[l];
+            counts.tokenTotals[labelId] += tokenTotals[l];
+            if (dense) {
+                LongLongHashMap labelCounts = counts.tokenCounts.get(labelId);
+                for (int t = 0, i = l * vocabulary; t < vocabulary; t++, i++) {
+                    if (denseCounts[i] != 0) {
+                        labelCounts.addTo(tokenHashes[t], denseCounts[i]);
+                    }
+                }
+            }
+        }
+        if (shard.isFirstOfFile()) {
+            counts.skippedRows = dataset.getManifest().getSkippedRows();
+        }
+        return counts;
+    }
+
+    private static Evaluation evaluate(Shard shard, Model model, Run run) throws IOException {
+        if (shard.isColumnar()) {
+            return evaluateColumnar(shard, model, run);
+        }
+        Evaluation evaluation = new Evaluation(model.labels.length);
+        double[] scores = new double[model.labels.length];
+        TextTokenizer.Scratch scratch = new TextTokenizer.Scratch();
+        try (LabeledTextReader reader = shard.open()) {
+            long rows = 0;
+            long reportedBytes = 0;
+            while (reader.next()) {
+                if (isHeldOut(shard.getFileKey(), reader.getLineOffset())) {
+                    evaluation.add(model.labelIds.getOrDefault(reader.getLabel(), -1),
+                            model.predict(reader.getText(), scratch, scores));
+                }
+                if (++rows % CANCEL_CHECK_ROWS == 0) {
+                    reportedBytes += run.advance(reader.getBytesRead() - reportedBytes);
+                }
+            }
+            run.advance(shard.length(reader) - reportedBytes);
+        }
+        return evaluation;
+    }
+
+    private static Evaluation evaluateColumnar(Shard shard, Model model, Run run) throws IOException {
+        ColumnarDataset dataset = shard.getColumnar();
+        Evaluation evaluation = new Evaluation(model.labels.length);
+        double[] scores = new double[model.labels.length];
+        int[] modelLabels = Arrays.stream(dataset.getLabels())
+                .mapToInt(label -> model.labelIds.getOrDefault(label, -1))
+                .toArray();
+        int[] modelTokens = Arrays.stream(dataset.getTokenHashes())
+                .mapToInt(hash -> (int) model.tokenIndex.get(hash) - 1)
+                .toArray();
+        try (ColumnarDataset.RowCursor rows = dataset.rows((int) shard.getStart(), (int) shard.getEnd())) {
+            long rowCount = 0;
+            long reportedBytes = 0;
+            while (rows.next()) {
+                if (isHeldOut(shard.getFileKey(), rows.getOffset())) {
+                    evaluation.add(modelLabels[rows.getLabel()],
+                            model.predict(rows.getTokens(), rows.getTokenCount(), modelTokens, scores));
+                }
+                if (++rowCount % CANCEL_CHECK_ROWS == 0) {
+                    reportedBytes += run.advance(rows.getBytesRead() - reportedBytes);
+                }
+            }
+            run.advance(rows.getBytesRead() - reportedBytes);
+        }
+        return evaluation;
+    }
+
+    /**
+     * Identifies a file in the choice of held-out rows, so that the choice stays the same from one training to the
+     * next whatever files are added or in which order they are listed.
+     */
+    private static long fileKey(TrainingData file, int index) {
+        UUID id = file.getId();
+        return id == null ? index : id.getMostSignificantBits() ^ id.getLeastSignificantBits();
+    }
+
+    private static boolean isHeldOut(long fileKey, long lineOffset) {
+        return Long.remainderUnsigned(LongLongHashMap.mix(LongLongHashMap.mix(fileKey) ^ lineOffset), HOLDOUT_EVERY) == 0;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10_000) / 10_000.0;
+    }
+
+    @FunctionalInterface
+    private interface ShardFunction<T> {
+        T apply(Shard shard) throws IOException;
+    }
+
+    /**
+     * A byte range of a training data file, or a range of blocks of its columnar form.
+     */
+    @lombok.Value
+    private static class Shard {
+        long fileKey;
+        Path path;
+        String name;
+        long start;
+        long end;
+        long size;
+        ColumnarDataset columnar;
+        boolean firstOfFile;
+
+        boolean isColumnar() {
+            return columnar != null;
+        }
+
+        LabeledTextReader open() throws IOException {
+            return new LabeledTextReader(path, name, start, end);
+        }
+
+        long length(LabeledTextReader reader) {
+            return end == Long.MAX_VALUE ? reader.getBytesRead() : end - start;
+        }
+    }
+
+    /**
+     * State shared by the tasks of one training run: cancellation and progress over both passes.
+     */
+    private final class Run {
+
+        private final long totalBytes;
+        private final IntConsumer progress;
+        private final AtomicLong bytesDone = new AtomicLong();
+        private volatile boolean cancelled;
+        private int reported = -1;
+
+        private Run(long totalBytes, IntConsumer progress) {
+            this.totalBytes = totalBytes;
+            this.progress = progress;
+        }
+
+        private <T> T invoke(List<Shard> shards, ShardFunction<T> function, BinaryOperator<T> merge)
+                throws IOException, InterruptedException {
+            ForkJoinTask<T> task = pool.submit(new ShardTask<>(this, shards, 0, shards.size(), function, merge));
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                cancelled = true;
+                task.cancel(true);
+                throw e;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof UncheckedIOException io) {
+                    throw io.getCause();
+                }
+                if (cause instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                if (cause instanceof Error error) {
+                    throw error;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+
+        /**
+         * Records {@code bytes} more of the input as processed and checks for cancellation.
+         *
+         * @return {@code bytes}
+         */
+        private long advance(long bytes) {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+            long done = bytesDone.addAndGet(Math.max(0, bytes));
+            int percent = (int) Math.min(99, done * 100 / totalBytes);
+            if (percent > reported) {
+                synchronized (this) {
+                    if (percent > reported) {
+                        reported = percent;
+                        progress.accept(percent);
+                    }
+                }
+            }
+            return bytes;
+        }
+    }
+
+    private static final class ShardTask<T> extends RecursiveTask<T> {
+
+        private final Run run;
+        private final List<Shard> shards;
+        private final int from;
+        private final int to;
+        private final ShardFunction<T> function;
+        private final BinaryOperator<T> merge;
+
+        private ShardTask(Run run, List<Shard> shards, int from, int to, ShardFunction<T> function,
+                          BinaryOperator<T> merge) {
+            this.run = run;
+            this.shards = shards;
+            this.from = from;
+            this.to = to;
+            this.function = function;
+            this.merge = merge;
+        }
+
+        @Override
+        protected T compute() {
+            if (run.cancelled) {
+                throw new CancellationException();
+            }
+            if (to - from == 1) {
+                try {
+                    return function.apply(shards.get(from));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            int middle = (from + to) >>> 1;
+            ShardTask<T> left = new ShardTask<>(run, shards, from, middle, function, merge);
+            left.fork();
+            T right = new ShardTask<>(run, shards, middle, to, function, merge).compute();
+            return merge.apply(left.join(), right);
+        }
+    }
+
+    /**
+     * Token counts of one or more ranges, keyed by token hash, with one map per label.
+     */
+    private static final class Counts {
+
+        private final Map<String, Integer> labelIds = new HashMap<>();
+        private final List<String> labels = new ArrayList<>();
+        private final List<LongLongHashMap> tokenCounts = new ArrayList<>();
+        private long[] documentCounts = new long[4];
+        private long[] tokenTotals = new long[4];
+        private final TextTokenizer.Scratch scratch = new TextTokenizer.Scratch();
+        private long rows;
+        private long skippedRows;
+
+        private void add(String label, ByteSlice text) {
+            int labelId = labelId(label);
+            LongLongHashMap counts = tokenCounts.get(labelId);
+            rows++;
+            documentCounts[labelId]++;
+            tokenTotals[labelId] += TextTokenizer.forEachToken(text, scratch, (token, start, end) -> counts.addTo(token, 1));
+        }
+
+        private LongLongHashMap tokenCounts(String label) {
+            return tokenCounts.get(labelId(label));
+        }
+
+        private int labelId(String label) {
+            return labelIds.computeIfAbsent(label, l -> {
+                labels.add(l);
+                tokenCounts.add(new LongLongHashMap());
+                if (labels.size() > documentCounts.length) {
+                    documentCounts = Arrays.copyOf(documentCounts, documentCounts.length * 2);
+                    tokenTotals = Arrays.copyOf(tokenTotals, tokenTotals.length * 2);
+                }
+                return labels.size() - 1;
+            });
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeLong(rows);
+            out.writeLong(skippedRows);
+            out.writeInt(labels.size());
+            for (int l = 0; l < labels.size(); l++) {
+                out.writeUTF(labels.get(l));
+                out.writeLong(documentCounts[l]);
+                out.writeLong(tokenTotals[l]);
+                LongLongHashMap counts = tokenCounts.get(l);
+                out.writeInt(counts.size());
+                IOException[] error = new IOException[1];
+                counts.forEach((token, count) -> {
+                    try {
+                        out.writeLong(token);
+                        out.writeLong(count);
+                    } catch (IOException e) {
+                        error[0] = e;
+                    }
+                });
+                if (error[0] != null) {
+                    throw error[0];
+                }
+            }
+        }
+
+        private static Counts read(DataInputStream in) throws IOException {
+            Counts counts = new Counts();
+            counts.rows = in.readLong();
+            counts.skippedRows = in.readLong();
+            int labels = in.readInt();
+            for (int l = 0; l < labels; l++) {
+                int labelId = counts.labelId(in.readUTF());
+                counts.documentCounts[labelId] = in.readLong();
+                counts.tokenTotals[labelId] = in.readLong();
+                int size = in.readInt();
+                LongLongHashMap tokenCounts = new LongLongHashMap(size);
+                for (int i = 0; i < size; i++) {
+                    tokenCounts.put(in.readLong(), in.readLong());
+                }
+                counts.tokenCounts.set(labelId, tokenCounts);
+            }
+            return counts;
+        }
+
+        private static Counts merge(Counts a, Counts b) {
+            Counts into = a.rows >= b.rows ? a : b;
+            Counts from = into == a ? b : a;
+            for (int l = 0; l < from.labels.size(); l++) {
+                int labelId = into.labelId(from.labels.get(l));
+                into.documentCounts[labelId] += from.documentCounts[l];
+                into.tokenTotals[labelId] += from.tokenTotals[l];
+                into.tokenCounts.get(labelId).addAll(from.tokenCounts.get(l));
+            }
+            into.rows += from.rows;
+            into.skippedRows += from.skippedRows;
+            return into;
+        }
+    }
+
+    /**
+     * Trained model. Token counts are stored sparsely: for each token, the classes it occurred in and the log of its
+     * smoothed count in each of them. Immutable once built, so a loaded model serves predictions on any thread.
+     */
+    private static final class Model implements TrainedModel {
+
+        private final String[] labels;
+        private final Map<String, Integer> labelIds = new HashMap<>();
+        private final long rows;
+        private final double[] logPriors;
+        private final double[] logDenominators;
+        // token hash -> token index + 1, so that missing tokens read as 0
+        private final LongLongHashMap tokenIndex = new LongLongHashMap();
+        private final int[] offsets;
+        private final int[] classIds;
+        private final float[] logCounts;
+
+        private Model(Counts counts) {
+            int classes = counts.labels.size();
+            int[] order = IntStream.range(0, classes).boxed()
+                    .sorted(Comparator.comparing(counts.labels::get))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            labels = new String[classes];
+            rows = counts.rows;
+            int entries = 0;
+            for (int c = 0; c < classes; c++) {
+                labels[c] = counts.labels.get(order[c]);
+                labelIds.put(labels[c], c);
+                LongLongHashMap classCounts = counts.tokenCounts.get(order[c]);
+                entries += classCounts.size();
+                classCounts.forEach((token, count) -> {
+                    if (!tokenIndex.containsKey(token)) {
+                        tokenIndex.put(token, tokenIndex.size() + 1);
+                    }
+                });
+            }
+
+            int vocabulary = tokenIndex.size();
+            offsets = new int[vocabulary + 1];
+            for (int c = 0; c < classes; c++) {
+                counts.tokenCounts.get(order[c]).forEach((token, count) -> offsets[(int) tokenIndex.get(token)]++);
+            }
+            for (int t = 0; t < vocabulary; t++) {
+                offsets[t + 1] += offsets[t];
+            }
+            classIds = new int[entries];
+            logCounts = new float[entries];
+            int[] next = Arrays.copyOf(offsets, vocabulary);
+            for (int c = 0; c < classes; c++) {
+                int classId = c;
+                counts.tokenCounts.get(order[c]).forEach((token, count) -> {
+                    int entry = next[(int) tokenIndex.get(token) - 1]++;
+                    classIds[entry] = classId;
+                    logCounts[entry] = (float) Math.log(count + 1);
+                });
+            }
+
+            logPriors = new double[classes];
+            logDenominators = new double[classes];
+            for (int c = 0; c < classes; c++) {
+                logPriors[c] = Math.log((double) counts.documentCounts[order[c]] / rows);
+                logDenominators[c] = Math.log(counts.tokenTotals[order[c]] + vocabulary);
+            }
+        }
+
+        @Override
+        public Prediction predict(String text) {
+            return predict(text, new TextTokenizer.Scratch(), new double[labels.length]);
+        }
+
+        @Override
+        public List<Prediction> predict(List<String> texts) {
+            TextTokenizer.Scratch scratch = new TextTokenizer.Scratch();
+            double[] scores = new double[labels.length];
+            List<Prediction> predictions = new ArrayList<>(texts.size());
+            for (String text : texts) {
+                predictions.add(predict(text, scratch, scores));
+            }
+            return predictions;
+        }
+
+        private Prediction predict(String text, TextTokenizer.Scratch scratch, double[] scores) {
+            int best = predict(ByteSlice.of(text), scratch, scores);
+            double sum = 0;
+            for (double score : scores) {
+                sum += Math.exp(score - scores[best]);
+            }
+            return new Prediction(labels[best], 1 / sum);
+        }
+
+        @Override
+        public long getSizeInBytes() {
+            long labelBytes = 0;
+            for (String label : labels) {
+                labelBytes += 64 + 2L * label.length();
+            }
+            return 16L * tokenIndex.capacity() + 4L * offsets.length + 8L * classIds.length
+                    + 16L * labels.length + labelBytes;
+        }
+
+        private int predict(ByteSlice text, TextTokenizer.Scratch scratch, double[] scores) {
+            System.arraycopy(logPriors, 0, scores, 0, scores.length);
+            int[] knownTokens = new int[1];
+            TextTokenizer.forEachToken(text, scratch, (token, start, end) -> {
+                if (addToken((int) tokenIndex.get(token) - 1, scores)) {
+                    knownTokens[0]++;
+                }
+            });
+            return best(knownTokens[0], scores);
+        }
+
+        /**
+         * Predicts the class of a row of token ids, given the model's token index for each id (or -1).
+         */
+        private int predict(int[] tokens, int tokenCount, int[] indexes, double[] scores) {
+            System.arraycopy(logPriors, 0, scores, 0, scores.length);
+            int knownTokens = 0;
+            for (int t = 0; t < tokenCount; t++) {
+                if (addToken(indexes[tokens[t]], scores)) {
+                    knownTokens++;
+                }
+            }
+            return best(knownTokens, scores);
+        }
+
+        private boolean addToken(int index, double[] scores) {
+            if (index < 0) {
+                return false;
+            }
+            for (int entry = offsets[index]; entry < offsets[index + 1]; entry++) {
+                scores[classIds[entry]] += logCounts[entry];
+            }
+            return true;
+        }
+
+        private int best(int knownTokens, double[] scores) {
+            int best = 0;
+            for (int c = 0; c < scores.length; c++) {
+                scores[c] -= knownTokens * logDenominators[c];
+                if (scores[c] > scores[best]) {
+                    best = c;
+                }
+            }
+            return best;
+        }
+    }
+
+    private static final class Evaluation {
+
+        private final long[] truePositives;
+        private final long[] predicted;
+        private final long[] actual;
+        private long rows;
+        private long correct;
+
+        private Evaluation(int classes) {
+            truePositives = new long[classes];
+            predicted = new long[classes];
+            actual = new long[classes];
+        }
+
+        private void add(int actualClass, int predictedClass) {
+            rows++;
+            predicted[predictedClass]++;
+            if (actualClass < 0) {
+                return;
+            }
+            actual[actualClass]++;
+            if (actualClass == predictedClass) {
+                truePositives[actualClass]++;
+                correct++;
+            }
+        }
+
+        private static Evaluation merge(Evaluation a, Evaluation b) {
+            for (int c = 0; c < a.actual.length; c++) {
+                a.truePositives[c] += b.truePositives[c];
+                a.predicted[c] += b.predicted[c];
+                a.actual[c] += b.actual[c];
+            }
+            a.rows += b.rows;
+            a.correct += b.correct;
+            return a;
+        }
+
+        private double accuracy() {
+            return rows == 0 ? 0 : (double) correct / rows;
+        }
+
+        private double macroF1() {
+            double sum = 0;
+            for (int c = 0; c < actual.length; c++) {
+                sum += f1(c);
+            }
+            return sum / actual.length;
+        }
+
+        private Map<String, Object> perClass(String[] labels) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            IntStream.range(0, labels.length).boxed()
+                    .filter(c -> actual[c] > 0)
+                    .sorted(Comparator.comparingLong((Integer c) -> actual[c]).reversed())
+                    .limit(MAX_REPORTED_CLASSES)
+                    .forEach(c -> {
+                        Map<String, Object> classMetrics = new LinkedHashMap<>();
+                        classMetrics.put("precision", round(predicted[c] == 0 ? 0 : (double) truePositives[c] / predicted[c]));
+                        classMetrics.put("recall", round((double) truePositives[c] / actual[c]));
+                        classMetrics.put("f1", round(f1(c)));
+                        classMetrics.put("support", actual[c]);
+                        result.put(labels[c], classMetrics);
+                    });
+            return result;
+        }
+
+        private double f1(int c) {
+            return predicted[c] + actual[c] == 0 ? 0 : 2.0 * truePositives[c] / (predicted[c] + actual[c]);
+        }
+    }
+}
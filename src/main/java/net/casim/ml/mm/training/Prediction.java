@@ -0,0 +1,12 @@
+package net.casim.ml.mm.training;
+
+import lombok.Value;
+
+@Value
+public class Prediction {
+    String label;
+    /**
+     * Probability the model assigns to the label, between 0 and 1.
+     */
+    double confidence;
+}
@@ -0,0 +1,85 @@
+package net.casim.ml.mm.training;
+
+import net.casim.ml.mm.dataset.ByteSlice;
+
+/**
+ * Splits text into tokens, which are maximal runs of letters and digits, lower-cased and identified by the FNV-1a hash
+ * of their code points. Text is tokenized straight from its UTF-8 bytes without decoding it to a string.
+ */
+public final class TextTokenizer {
+
+    /**
+     * Identifies the tokenization rules; data tokenized ahead of time is only valid for the same version.
+     */
+    public static final int VERSION = 1;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private TextTokenizer() {
+    }
+
+    /**
+     * Calls {@code consumer} with every token in {@code text}. The bytes are first copied into {@code scratch}, which
+     * is much faster to scan than a mapped buffer; the consumer gets the token's position in {@link Scratch#bytes()}.
+     *
+     * @return the number of tokens
+     */
+    public static int forEachToken(ByteSlice text, Scratch scratch, TokenConsumer consumer) {
+        byte[] bytes = scratch.bytes = text.copyTo(scratch.bytes);
+        int length = text.length();
+        int tokens = 0;
+        long hash = FNV_OFFSET;
+        int start = -1;
+        for (int i = 0; i < length; ) {
+            int b = bytes[i] & 0xff;
+            int at = i;
+            int lower;
+            if (b < 0x80) {
+                i++;
+                lower = b >= 'A' && b <= 'Z' ? b | 0x20 : (b >= 'a' && b <= 'z') || (b >= '0' && b <= '9') ? b : -1;
+            } else {
+                int codePoint = text.codePointAt(i);
+                i += ByteSlice.sequenceLength(b);
+                lower = Character.isLetterOrDigit(codePoint) ? Character.toLowerCase(codePoint) : -1;
+            }
+            if (lower >= 0) {
+                hash = (hash ^ lower) * FNV_PRIME;
+                if (start < 0) {
+                    start = at;
+                }
+            } else if (start >= 0) {
+                consumer.accept(hash, start, at);
+                tokens++;
+                hash = FNV_OFFSET;
+                start = -1;
+            }
+        }
+        if (start >= 0) {
+            consumer.accept(hash, start, length);
+            tokens++;
+        }
+        return tokens;
+    }
+
+    @FunctionalInterface
+    public interface TokenConsumer {
+        /**
+         * @param hash  the token's id
+         * @param start index of the token's first byte in {@link Scratch#bytes()}
+         * @param end   index just past its last byte
+         */
+        void accept(long hash, int start, int end);
+    }
+
+    /**
+     * Per-thread buffer the tokenizer copies each row into.
+     */
+    public static final class Scratch {
+        private byte[] bytes = new byte[1024];
+
+        public byte[] bytes() {
+            return bytes;
+        }
+    }
+}
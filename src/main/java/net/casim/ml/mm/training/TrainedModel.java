@@ -0,0 +1,24 @@
+package net.casim.ml.mm.training;
+
+import java.util.List;
+
+/**
+ * A trained model {@link TrainingEngine#load loaded} into memory to serve predictions. Implementations are immutable
+ * and safe to use from any number of threads.
+ */
+public interface TrainedModel {
+
+    Prediction predict(String text);
+
+    /**
+     * Predicts the labels of {@code texts}, in order. Models override this to share per-call work across the batch.
+     */
+    default List<Prediction> predict(List<String> texts) {
+        return texts.stream().map(this::predict).toList();
+    }
+
+    /**
+     * Approximate heap size of the model, which bounds how many models are kept loaded.
+     */
+    long getSizeInBytes();
+}
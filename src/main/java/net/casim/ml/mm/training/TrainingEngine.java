@@ -0,0 +1,41 @@
+package net.casim.ml.mm.training;
+
+import net.casim.ml.mm.data.ModelLayer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+/**
+ * Trains a model of one or more {@link ModelLayer}s from its uploaded training data. Implementations are Spring
+ * beans; {@link TrainingEngines} picks the one that supports a model's layer.
+ */
+public interface TrainingEngine {
+
+    /**
+     * Short identifier reported in the training results.
+     */
+    String getName();
+
+    Set<ModelLayer> getSupportedLayers();
+
+    /**
+     * Trains on {@code request} and returns the evaluated metrics. Implementations report progress in percent to
+     * {@code progress} and stop with an {@link InterruptedException} when the training thread is interrupted.
+     * Engines that can train incrementally keep their state in the request's artifact and, when the request
+     * {@link TrainingRequest#isIncremental() is incremental}, continue from it with only the new training data.
+     *
+     * @throws IllegalArgumentException if the training data cannot be used by this engine
+     */
+    TrainingResult train(TrainingRequest request, IntConsumer progress) throws IOException, InterruptedException;
+
+    /**
+     * Loads the model that a successful training saved in {@code artifact}, to serve predictions.
+     *
+     * @throws UnsupportedOperationException if this engine does not serve predictions
+     */
+    default TrainedModel load(Path artifact) throws IOException {
+        throw new UnsupportedOperationException("Engine '" + getName() + "' does not serve predictions");
+    }
+}
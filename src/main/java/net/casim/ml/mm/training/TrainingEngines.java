@@ -0,0 +1,55 @@
+package net.casim.ml.mm.training;
+
+import lombok.Value;
+import net.casim.ml.mm.data.ModelLayer;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Selects the {@link TrainingEngine} for a model layer. Two engines claiming the same layer is a configuration
+ * error and fails at startup.
+ */
+@Component
+public class TrainingEngines {
+
+    private final Map<ModelLayer, TrainingEngine> enginesByLayer = new EnumMap<>(ModelLayer.class);
+
+    public TrainingEngines(List<TrainingEngine> engines) {
+        for (TrainingEngine engine : engines) {
+            for (ModelLayer layer : engine.getSupportedLayers()) {
+                TrainingEngine existing = enginesByLayer.putIfAbsent(layer, engine);
+                if (existing != null) {
+                    throw new IllegalStateException("Both '" + existing.getName() + "' and '" + engine.getName()
+                            + "' train " + layer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the first of {@code layers} that has an engine, with that engine.
+     *
+     * @throws IllegalStateException if no engine supports any of the layers
+     */
+    public Match forLayers(List<ModelLayer> layers) {
+        if (layers != null) {
+            for (ModelLayer layer : layers) {
+                TrainingEngine engine = enginesByLayer.get(layer);
+                if (engine != null) {
+                    return new Match(layer, engine);
+                }
+            }
+        }
+        throw new IllegalStateException("No training engine available for layers " + layers
+                + ", supported layers are " + enginesByLayer.keySet());
+    }
+
+    @Value
+    public static class Match {
+        ModelLayer layer;
+        TrainingEngine engine;
+    }
+}
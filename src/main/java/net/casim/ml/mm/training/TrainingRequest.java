@@ -0,0 +1,40 @@
+package net.casim.ml.mm.training;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+import net.casim.ml.mm.data.ModelLayer;
+import net.casim.ml.mm.data.TrainingData;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+@Value
+@AllArgsConstructor
+public class TrainingRequest {
+    UUID modelId;
+    ModelLayer layer;
+    List<TrainingData> trainingData;
+    /**
+     * The rows of {@link #trainingData} uploaded since the model's last successful training; all of them for a full
+     * training.
+     */
+    List<TrainingData> newTrainingData;
+    /**
+     * File in which an engine may keep what it learned, to continue from it in the next training of the model instead
+     * of starting over; null to keep nothing.
+     */
+    Path artifact;
+
+    public TrainingRequest(UUID modelId, ModelLayer layer, List<TrainingData> trainingData) {
+        this(modelId, layer, trainingData, trainingData, null);
+    }
+
+    /**
+     * Whether the engine may train only on {@link #newTrainingData}, starting from the state in {@link #artifact}.
+     * Engines that cannot, or find the artifact missing or out of date, train on all of {@link #trainingData}.
+     */
+    public boolean isIncremental() {
+        return artifact != null && newTrainingData.size() < trainingData.size();
+    }
+}
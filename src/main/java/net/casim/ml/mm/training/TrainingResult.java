@@ -0,0 +1,14 @@
+package net.casim.ml.mm.training;
+
+import lombok.Value;
+
+import java.util.Map;
+
+@Value
+public class TrainingResult {
+    /**
+     * Fraction of held-out rows predicted correctly, between 0 and 1.
+     */
+    double accuracy;
+    Map<String, Object> metrics;
+}
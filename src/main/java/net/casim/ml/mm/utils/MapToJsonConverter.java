@@ -1,23 +1,33 @@
 package net.casim.ml.mm.utils;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 import jakarta.persistence.AttributeConverter;
 import jakarta.persistence.Converter;
-import java.io.IOException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
-@Converter(autoApply = true)
+/**
+ * Stores a map as JSON text. Not applied automatically: no entity uses it since training results moved to
+ * {@link TrainingResultsConverter}, and a new map attribute has to choose it with {@code @Convert}.
+ */
+@Converter
 public class MapToJsonConverter implements AttributeConverter<Map<String, Object>, String> {
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Thread-safe and shared by every converter instance, so their type and serializer lookups are only done once
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final ObjectReader READER = OBJECT_MAPPER.readerFor(new TypeReference<LinkedHashMap<String, Object>>() { });
+    private static final ObjectWriter WRITER = OBJECT_MAPPER.writer();
 
     @Override
     public String convertToDatabaseColumn(Map<String, Object> attribute) {
         try {
-            return attribute == null ? null : objectMapper.writeValueAsString(attribute);
+            return attribute == null ? null : WRITER.writeValueAsString(attribute);
         } catch (JsonProcessingException e) {
             throw new IllegalArgumentException("Could not convert map to JSON", e);
         }
@@ -26,10 +36,9 @@ public class MapToJsonConverter implements AttributeConverter<Map<String, Object
     @Override
     public Map<String, Object> convertToEntityAttribute(String dbData) {
         try {
-            return dbData == null ? new HashMap<>() : objectMapper.readValue(dbData, HashMap.class);
-        } catch (IOException e) {
+            return dbData == null ? new HashMap<>() : READER.readValue(dbData);
+        } catch (JsonProcessingException e) {
             throw new IllegalArgumentException("Could not convert JSON to map", e);
         }
     }
 }
-
@@ -0,0 +1,57 @@
+package net.casim.ml.mm.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+
+/**
+ * Token buckets keyed by an arbitrary string. Each key may burst up to {@code capacity} acquisitions and then
+ * refills continuously at {@code refillPerMinute}. Buckets that have had time to refill completely are
+ * indistinguishable from new ones, so they are dropped after that long without use.
+ */
+public class TokenBucketRateLimiter {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private final Cache<String, Bucket> buckets;
+
+    public TokenBucketRateLimiter(int capacity, double refillPerMinute, long maxKeys) {
+        this.capacity = capacity;
+        this.tokensPerNano = refillPerMinute / Duration.ofMinutes(1).toNanos();
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(Duration.ofNanos((long) Math.ceil(capacity / tokensPerNano)))
+                .build();
+    }
+
+    /**
+     * Takes a token for {@code key}.
+     *
+     * @return {@link Duration#ZERO} if a token was taken, otherwise how long until one becomes available
+     */
+    public Duration tryAcquire(String key) {
+        return buckets.get(key, k -> new Bucket(capacity, System.nanoTime())).tryAcquire(System.nanoTime());
+    }
+
+    private final class Bucket {
+
+        private double tokens;
+        private long updatedAt;
+
+        private Bucket(double tokens, long updatedAt) {
+            this.tokens = tokens;
+            this.updatedAt = updatedAt;
+        }
+
+        private synchronized Duration tryAcquire(long now) {
+            tokens = Math.min(capacity, tokens + (now - updatedAt) * tokensPerNano);
+            updatedAt = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return Duration.ZERO;
+            }
+            return Duration.ofNanos((long) Math.ceil((1 - tokens) / tokensPerNano));
+        }
+    }
+}
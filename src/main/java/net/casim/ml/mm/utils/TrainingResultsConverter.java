@@ -0,0 +1,37 @@
+package net.casim.ml.mm.utils;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import net.casim.ml.mm.data.TrainingResults;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+/**
+ * Stores {@link TrainingResults} as bytes, in the encoding set by {@code model.training-results.encoding}: JSON text
+ * (the default) or the more compact Smile. Either is read back whatever the setting, so it can be changed at any time;
+ * results keep their encoding until the model is trained again.
+ */
+@Converter(autoApply = true)
+public class TrainingResultsConverter implements AttributeConverter<TrainingResults, byte[]> {
+
+    private final TrainingResults.Encoding encoding;
+
+    public TrainingResultsConverter() {
+        this(TrainingResults.Encoding.JSON);
+    }
+
+    @Autowired
+    public TrainingResultsConverter(@Value("${model.training-results.encoding:json}") TrainingResults.Encoding encoding) {
+        this.encoding = encoding;
+    }
+
+    @Override
+    public byte[] convertToDatabaseColumn(TrainingResults attribute) {
+        return attribute == null || attribute.isEmpty() ? null : attribute.encode(encoding);
+    }
+
+    @Override
+    public TrainingResults convertToEntityAttribute(byte[] dbData) {
+        return TrainingResults.decode(dbData);
+    }
+}
@@ -0,0 +1,186 @@
+package net.casim.ml.mm.benchmark;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntConsumer;
+
+/**
+ * Compares ways of predicting many records over HTTP on a trained text classifier: one record per request, one record
+ * per request with the server-side micro-batcher coalescing concurrent requests, {@code batchSize} records per
+ * {@code POST /models/{modelId}/predict/batch} JSON array, and all records streamed as one newline-delimited JSON
+ * request. Reports records per second and request latency for each, with {@code clients} clients that send their
+ * next request as soon as the previous one is answered.
+ * <p>
+ * Arguments: {@code [rows=100000] [clients=4] [requests=20000] [batchSize=100] [streamRecords=200000]
+ * [maxDelay=0ms]}
+ */
+public class BatchPredictionBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 20_000;
+        int batchSize = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+        int streamRecords = args.length > 4 ? Integer.parseInt(args[4]) : 200_000;
+        String maxDelay = args.length > 5 ? args[5] : "0ms";
+
+        Path directory = Files.createTempDirectory("batch-prediction");
+        Path corpus = directory.resolve("corpus.csv");
+        TextTrainingBenchmark.writeCorpus(corpus, rows, 20, 30);
+        List<String> queries = PredictionLatencyBenchmark.queries(corpus);
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        System.out.printf("rows=%d clients=%d cpus=%d%n", rows, clients, Runtime.getRuntime().availableProcessors());
+        try {
+            for (boolean batching : new boolean[]{false, true}) {
+                ConfigurableApplicationContext context = PredictionLatencyBenchmark.start(directory,
+                        "--inference.batching.enabled=" + batching, "--inference.batching.max-delay=" + maxDelay);
+                try {
+                    UUID modelId = PredictionLatencyBenchmark.trainModel(context, corpus);
+                    String base = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+                    String authorization = "Bearer " + PredictionLatencyBenchmark.login(client, base);
+                    URI single = URI.create(base + "/models/" + modelId + "/predict");
+                    URI batch = URI.create(base + "/models/" + modelId + "/predict/batch");
+
+                    measure(batching ? "single, micro-batched (max-delay=" + maxDelay + ")" : "single", executor,
+                            clients, requests, 1, i -> send(client, single, authorization, "application/json",
+                                    "{\"text\":\"" + queries.get(i % PredictionLatencyBenchmark.QUERIES) + "\"}", 1));
+                    if (batching) {
+                        DistributionSummary batches = context.getBean(MeterRegistry.class).get("inference.batch.size")
+                                .summary();
+                        System.out.printf("  micro-batches: %d, mean size %.2f, max size %.0f%n", batches.count(),
+                                batches.mean(), batches.max());
+                        continue;
+                    }
+                    measure("batch of " + batchSize, executor, clients, Math.max(1, requests / batchSize), batchSize,
+                            i -> send(client, batch, authorization, "application/json",
+                                    records(queries, i * batchSize, batchSize, ",", "[", "]"), 1));
+                    byte[] stream = records(queries, 0, streamRecords, "\n", "", "\n").getBytes(StandardCharsets.UTF_8);
+                    measure("ndjson stream of " + streamRecords, executor, 1, 3, streamRecords,
+                            i -> stream(batch, authorization, stream, streamRecords));
+                } finally {
+                    context.close();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            PredictionLatencyBenchmark.delete(directory);
+        }
+    }
+
+    private static void measure(String name, ExecutorService executor, int clients, int requests, int recordsPerRequest,
+                                IntConsumer request) throws Exception {
+        PredictionLatencyBenchmark.run(executor, clients, Math.max(1, requests / 5), request);
+        long startedAt = System.nanoTime();
+        long[] latencies = PredictionLatencyBenchmark.run(executor, clients, requests, request);
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+        System.out.printf("%s: %.0f records/s, %d requests p50=%.3fms p99=%.3fms%n", name,
+                (double) requests * recordsPerRequest / seconds, requests,
+                PredictionLatencyBenchmark.percentile(latencies, 50), PredictionLatencyBenchmark.percentile(latencies, 99));
+    }
+
+    private static String records(List<String> queries, int from, int count, String separator, String prefix,
+                                  String suffix) {
+        StringBuilder body = new StringBuilder(prefix);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                body.append(separator);
+            }
+            body.append("{\"text\":\"").append(queries.get((from + i) % PredictionLatencyBenchmark.QUERIES))
+                    .append("\"}");
+        }
+        return body.append(suffix).toString();
+    }
+
+    /**
+     * Sends the body while reading the response. HttpClient only reads the response once the whole body is sent, so
+     * a stream that outgrows the socket buffers would block both sides.
+     */
+    private static void stream(URI uri, String authorization, byte[] body, int expectedLines) {
+        try (Socket socket = new Socket(uri.getHost(), uri.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            Thread sender = new Thread(() -> {
+                try {
+                    out.write(("POST " + uri.getPath() + " HTTP/1.0\r\nHost: " + uri.getHost() + "\r\nAuthorization: "
+                            + authorization + "\r\nContent-Type: application/x-ndjson\r\nContent-Length: "
+                            + body.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                    out.write(body);
+                    out.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            sender.start();
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            // The status line and headers end with an empty line, after which every line is a prediction
+            String status = null;
+            int lines = 0;
+            boolean inBody = false;
+            StringBuilder line = new StringBuilder();
+            for (int b = in.read(); b >= 0; b = in.read()) {
+                if (b != '\n') {
+                    if (!inBody) {
+                        line.append((char) b);
+                    }
+                    continue;
+                }
+                if (inBody) {
+                    lines++;
+                } else if (status == null) {
+                    status = line.toString();
+                } else if (line.toString().isBlank()) {
+                    inBody = true;
+                }
+                line.setLength(0);
+            }
+            sender.join();
+            if (status == null || !status.contains(" 200 ") || lines != expectedLines) {
+                throw new IllegalStateException("Prediction failed: " + status + ", " + lines + " predictions");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void send(HttpClient client, URI uri, String authorization, String contentType, String body,
+                             int expectedLines) {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Authorization", authorization)
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200
+                    || (expectedLines > 1 && response.body().lines().count() != expectedLines)) {
+                throw new IllegalStateException("Prediction failed: " + response.statusCode());
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package net.casim.ml.mm.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.casim.ml.mm.data.LLMModel;
+import net.casim.ml.mm.data.TrainingData;
+import net.casim.ml.mm.repository.TrainingDataRepository;
+import net.casim.ml.mm.service.FileUploadService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Throughput of {@link FileUploadService#saveTrainingData} for a multipart file of {@code sizeKb} kilobytes: hashing
+ * and writing it to a temporary file, then publishing it to the blob store and saving its row, here to a stub
+ * repository. After the first operation the blob exists, so the copy is discarded as a duplicate instead of renamed.
+ * Bytes per second are reported as the {@code bytes} secondary result.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileUploadBenchmark {
+
+    @Param({"64", "8192"})
+    private int sizeKb;
+
+    private Path directory;
+    private FileUploadService fileUploadService;
+    private LLMModel model;
+    private MockMultipartFile file;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Bytes {
+        public long bytes;
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("file-upload-benchmark");
+        // Stub only, so that invocations are not recorded for the whole run
+        TrainingDataRepository trainingDataRepository = mock(TrainingDataRepository.class, withSettings().stubOnly());
+        when(trainingDataRepository.save(any(TrainingData.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        fileUploadService = new FileUploadService(trainingDataRepository, event -> { }, directory.toString(),
+                new SimpleMeterRegistry());
+        model = new LLMModel();
+        model.setId(UUID.randomUUID());
+        byte[] content = new byte[sizeKb * 1024];
+        new Random(sizeKb).nextBytes(content);
+        file = new MockMultipartFile("file", "data.csv", "text/csv", content);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        PredictionLatencyBenchmark.delete(directory);
+    }
+
+    @Benchmark
+    public TrainingData saveTrainingData(Bytes bytes) throws Exception {
+        TrainingData stored;
+        try (InputStream in = file.getInputStream()) {
+            stored = fileUploadService.saveTrainingData(model, file.getOriginalFilename(), in, null);
+        }
+        bytes.bytes += file.getSize();
+        return stored;
+    }
+}
@@ -0,0 +1,167 @@
+package net.casim.ml.mm.benchmark;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import net.casim.ml.mm.config.JwtAuthenticationFilter;
+import net.casim.ml.mm.data.User;
+import net.casim.ml.mm.service.JwtKeyRing;
+import net.casim.ml.mm.service.JwtService;
+import net.casim.ml.mm.repository.UserRepository;
+import net.casim.ml.mm.service.UserService;
+import net.casim.ml.mm.service.UserTokenVersionCache;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Per-request cost of JWT authentication. {@code legacyTripleParse} reproduces the previous filter path (key decoded
+ * and parser rebuilt for each of three parses) as a baseline. The {@code es256}/{@code rs256} variants verify
+ * signatures from rotated key rings.
+ * <p>
+ * Run with {@code mvn -Pbenchmark verify -DskipTests -Djmh.includes=JwtAuthenticationFilterBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtAuthenticationFilterBenchmark {
+
+    private static final String SECRET = "c2VjcmV0LWtleS1mb3ItYmVuY2htYXJrcy13aXRoLWVub3VnaC1iaXRz";
+
+    private JwtService jwtService;
+    private JwtAuthenticationFilter filter;
+    private JwtAuthenticationFilter statelessFilter;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private FilterChain chain;
+    private User user;
+    private String token;
+    private JwtService es256Service;
+    private String es256Token;
+    private JwtService rs256Service;
+    private String rs256Token;
+
+    @Setup
+    public void setUp() throws IOException {
+        jwtService = newJwtService("HS256");
+        user = new User();
+        user.setUsername("alice");
+        user.setRoles(List.of("ADMIN"));
+        token = jwtService.generateToken(user);
+        es256Service = newJwtService("ES256");
+        es256Token = es256Service.generateToken(user);
+        rs256Service = newJwtService("RS256");
+        rs256Token = rs256Service.generateToken(user);
+
+        UserService userService = new UserService(null, null, null) {
+            @Override
+            public Optional<User> getUserByUsername(String username) {
+                return Optional.of(user);
+            }
+        };
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findTokenVersionByUsername("alice")).thenReturn(Optional.of(0));
+        UserTokenVersionCache tokenVersionCache = new UserTokenVersionCache(userRepository, Duration.ofMinutes(10),
+                10_000, new SimpleMeterRegistry());
+        filter = new JwtAuthenticationFilter(jwtService, (req, res, handler, ex) -> null, userService,
+                tokenVersionCache, false, new SimpleMeterRegistry());
+        statelessFilter = new JwtAuthenticationFilter(jwtService, (req, res, handler, ex) -> null, userService,
+                tokenVersionCache, true, new SimpleMeterRegistry());
+        request = new MockHttpServletRequest("GET", "/models");
+        request.addHeader("Authorization", "Bearer " + token);
+        response = new MockHttpServletResponse();
+        chain = (req, res) -> { };
+    }
+
+    @Benchmark
+    public Object legacyTripleParse() {
+        String username = legacyParse().getSubject();
+        return username.equals(legacyParse().getSubject()) && !legacyParse().getExpiration().before(new Date());
+    }
+
+    @Benchmark
+    public Claims singleParse() {
+        return jwtService.parseClaims(token);
+    }
+
+    @Benchmark
+    public Claims es256SingleParse() {
+        return es256Service.parseClaims(es256Token);
+    }
+
+    @Benchmark
+    public Claims rs256SingleParse() {
+        return rs256Service.parseClaims(rs256Token);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtService.generateToken(user);
+    }
+
+    @Benchmark
+    public String es256GenerateToken() {
+        return es256Service.generateToken(user);
+    }
+
+    @Benchmark
+    public JwtService.VerifiedToken cachedVerify() {
+        return jwtService.verify(token);
+    }
+
+    @Benchmark
+    public Object filter() throws Exception {
+        filter.doFilter(request, response, chain);
+        Object authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+
+    @Benchmark
+    public Object statelessFilter() throws Exception {
+        statelessFilter.doFilter(request, response, chain);
+        Object authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+
+    // Asymmetric rings are rotated a few times so verification has to pick the token's key among several
+    private static JwtService newJwtService(String algorithm) throws IOException {
+        Path keyFile = Files.createTempDirectory("jwt-keys").resolve("jwt-keys.json");
+        keyFile.toFile().deleteOnExit();
+        keyFile.getParent().toFile().deleteOnExit();
+        JwtKeyRing keyRing = new JwtKeyRing(algorithm, SECRET, 3_600_000, Duration.ofHours(24), keyFile.toString(),
+                true, Duration.ofMinutes(1));
+        for (int i = 0; keyRing.isAsymmetric() && i < 5; i++) {
+            keyRing.rotate();
+        }
+        return new JwtService(keyRing, 3_600_000, 10_000, new SimpleMeterRegistry());
+    }
+
+    private Claims legacyParse() {
+        return Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET)))
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+}
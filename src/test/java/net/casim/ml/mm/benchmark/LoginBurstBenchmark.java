@@ -0,0 +1,174 @@
+package net.casim.ml.mm.benchmark;
+
+import net.casim.ml.mm.MlModelManagementApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Fires an open-loop burst of logins at a fixed rate while a single client keeps polling
+ * {@code GET /models/training/stats}, and reports login latency and status codes together with the latency of the
+ * other endpoint before and during the burst. Any further arguments are passed to the application, e.g.
+ * {@code --security.login.hashing-threads=200 --security.login.queue-capacity=100000} to approximate checking
+ * passwords on the request threads.
+ * <p>
+ * Arguments: {@code [rps=1000] [seconds=10] [application args...]}
+ */
+public class LoginBurstBenchmark {
+
+    private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"");
+
+    public static void main(String[] args) throws Exception {
+        int rps = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        List<String> appArgs = new ArrayList<>(List.of("--server.port=0", "--logging.level.root=WARN",
+                "--spring.jpa.show-sql=false", "--security.jwt.secret-key=" + Base64.getEncoder().encodeToString(key),
+                "--security.login.rate-limit.address-capacity=1000000",
+                "--security.login.rate-limit.address-refill-per-minute=100000000",
+                "--security.login.rate-limit.username-capacity=1000000",
+                "--security.login.rate-limit.username-refill-per-minute=100000000"));
+        appArgs.addAll(Arrays.asList(args).subList(Math.min(2, args.length), args.length));
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(MlModelManagementApplication.class)
+                .run(appArgs.toArray(String[]::new));
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        String base = "http://localhost:" + port;
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(8);
+        HttpClient client = HttpClient.newBuilder()
+                .executor(clientExecutor)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+
+        String credentials = "{\"username\":\"bench\",\"password\":\"bench-password\"}";
+        send(client, post(base + "/auth/register",
+                "{\"username\":\"bench\",\"password\":\"bench-password\",\"roles\":[\"ADMIN\"]}"));
+        Matcher token = TOKEN.matcher(send(client, post(base + "/auth/login", credentials)).body());
+        if (!token.find()) {
+            throw new IllegalStateException("Login failed");
+        }
+        HttpRequest probe = HttpRequest.newBuilder(URI.create(base + "/models/training/stats"))
+                .header("Authorization", "Bearer " + token.group(1))
+                .timeout(Duration.ofSeconds(60))
+                .build();
+
+        // Warm up the JIT with an identical burst, then let the queued password checks drain
+        HttpRequest login = post(base + "/auth/login", credentials);
+        burst(client, login, rps, seconds);
+        Thread.sleep(Duration.ofSeconds(20).toMillis());
+
+        long[] baseline = probe(client, probe, Duration.ofSeconds(3), new AtomicBoolean(false));
+
+        AtomicBoolean bursting = new AtomicBoolean(true);
+        CompletableFuture<long[]> duringBurst = CompletableFuture.supplyAsync(() -> {
+            try {
+                return probe(client, probe, Duration.ofSeconds(seconds), bursting);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        Map<String, ConcurrentLinkedQueue<Long>> loginNanos = burst(client, login, rps, seconds);
+        bursting.set(false);
+        long[] during = duringBurst.join();
+
+        clientExecutor.shutdown();
+        context.close();
+
+        System.out.printf("rps=%d seconds=%d args=%s%n", rps, seconds, appArgs.subList(8, appArgs.size()));
+        long[] all = loginNanos.values().stream().flatMap(Collection::stream).mapToLong(Long::longValue).sorted()
+                .toArray();
+        System.out.printf("login: count=%d p50=%.1fms p99=%.1fms max=%.1fms%n", all.length,
+                percentile(all, 50), percentile(all, 99), percentile(all, 100));
+        for (Map.Entry<String, ConcurrentLinkedQueue<Long>> status : new TreeMap<>(loginNanos).entrySet()) {
+            long[] latencies = status.getValue().stream().mapToLong(Long::longValue).sorted().toArray();
+            System.out.printf("  status %s: count=%d p50=%.1fms p99=%.1fms%n", status.getKey(), latencies.length,
+                    percentile(latencies, 50), percentile(latencies, 99));
+        }
+        System.out.printf("GET /models/training/stats before burst: count=%d p50=%.1fms p99=%.1fms%n",
+                baseline.length, percentile(baseline, 50), percentile(baseline, 99));
+        System.out.printf("GET /models/training/stats during burst: count=%d p50=%.1fms p99=%.1fms%n",
+                during.length, percentile(during, 50), percentile(during, 99));
+    }
+
+    private static Map<String, ConcurrentLinkedQueue<Long>> burst(HttpClient client, HttpRequest login, int rps,
+                                                                  int seconds) {
+        Map<String, ConcurrentLinkedQueue<Long>> loginNanos = new ConcurrentHashMap<>();
+        List<CompletableFuture<?>> logins = new ArrayList<>();
+        long intervalNanos = 1_000_000_000L / rps;
+        long startedAt = System.nanoTime();
+        for (long i = 0; i < (long) rps * seconds; i++) {
+            long scheduledAt = startedAt + i * intervalNanos;
+            LockSupport.parkNanos(scheduledAt - System.nanoTime());
+            logins.add(client.sendAsync(login, HttpResponse.BodyHandlers.discarding())
+                    .handle((response, error) -> {
+                        // Latency is measured from the scheduled send time to avoid coordinated omission
+                        long latency = System.nanoTime() - scheduledAt;
+                        String status = error != null ? error.getClass().getSimpleName()
+                                : String.valueOf(response.statusCode());
+                        loginNanos.computeIfAbsent(status, s -> new ConcurrentLinkedQueue<>()).add(latency);
+                        return null;
+                    }));
+        }
+        CompletableFuture.allOf(logins.toArray(CompletableFuture[]::new)).join();
+        return loginNanos;
+    }
+
+    private static long[] probe(HttpClient client, HttpRequest request, Duration duration, AtomicBoolean running)
+            throws Exception {
+        List<Long> latencies = new ArrayList<>();
+        long deadline = System.nanoTime() + duration.toNanos();
+        while (System.nanoTime() < deadline || running.get()) {
+            long startedAt = System.nanoTime();
+            send(client, request);
+            latencies.add(System.nanoTime() - startedAt);
+            Thread.sleep(20);
+        }
+        return latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    private static HttpRequest post(String uri, String json) {
+        return HttpRequest.newBuilder(URI.create(uri))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(120))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private static HttpResponse<String> send(HttpClient client, HttpRequest request) throws Exception {
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static double percentile(long[] sortedNanos, int percentile) {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,92 @@
+package net.casim.ml.mm.benchmark;
+
+import net.casim.ml.mm.utils.MapToJsonConverter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of storing and loading {@code trainingResults} through {@link MapToJsonConverter}, for results of
+ * {@code classes} classes with per-class metrics and a confusion matrix.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapToJsonConverterBenchmark {
+
+    @Param({"2", "20", "200"})
+    private int classes;
+
+    private MapToJsonConverter converter;
+    private Map<String, Object> results;
+    private String column;
+
+    @Setup
+    public void setUp() {
+        converter = new MapToJsonConverter();
+        results = trainingResults(classes);
+        column = converter.convertToDatabaseColumn(results);
+    }
+
+    @Benchmark
+    public String toDatabaseColumn() {
+        return converter.convertToDatabaseColumn(results);
+    }
+
+    @Benchmark
+    public Map<String, Object> toEntityAttribute() {
+        return converter.convertToEntityAttribute(column);
+    }
+
+    @Benchmark
+    public Map<String, Object> roundTrip() {
+        return converter.convertToEntityAttribute(converter.convertToDatabaseColumn(results));
+    }
+
+    /**
+     * Training results shaped like those of {@code NaiveBayesTextEngine}, plus a {@code classes} x {@code classes}
+     * confusion matrix.
+     */
+    static Map<String, Object> trainingResults(int classes) {
+        Random random = new Random(classes);
+        Map<String, Object> results = new LinkedHashMap<>();
+        results.put("engine", "naive-bayes-text");
+        results.put("mode", "full");
+        results.put("threads", 4);
+        results.put("trainingRows", 800_000);
+        results.put("evaluationRows", 200_000);
+        results.put("classes", classes);
+        results.put("vocabularySize", 250_000);
+        results.put("accuracy", 0.9123);
+        results.put("macroF1", 0.8876);
+        Map<String, Object> perClass = new LinkedHashMap<>();
+        List<List<Integer>> confusionMatrix = new ArrayList<>();
+        for (int c = 0; c < classes; c++) {
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            metrics.put("precision", Math.round(random.nextDouble() * 10_000) / 10_000.0);
+            metrics.put("recall", Math.round(random.nextDouble() * 10_000) / 10_000.0);
+            metrics.put("f1", Math.round(random.nextDouble() * 10_000) / 10_000.0);
+            metrics.put("support", random.nextInt(10_000));
+            perClass.put("label-" + c, metrics);
+            List<Integer> row = new ArrayList<>(classes);
+            for (int p = 0; p < classes; p++) {
+                row.add(random.nextInt(p == c ? 10_000 : 100));
+            }
+            confusionMatrix.add(row);
+        }
+        results.put("perClass", perClass);
+        results.put("confusionMatrix", confusionMatrix);
+        results.put("trainingMillis", 12_345);
+        results.put("evaluationMillis", 2_345);
+        results.put("rowsPerSecond", 64_800);
+        return results;
+    }
+}
@@ -0,0 +1,119 @@
+package net.casim.ml.mm.benchmark;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares {@code GET /models/{modelId}} and {@code GET /models/{modelId}/status} served from the model cache with
+ * the same requests with {@code fresh=true}, which read the database. The model is created and given {@code files}
+ * training files over HTTP, so each upload also checks that the cached model shows it. Reports request latency and
+ * the SQL statements prepared per request.
+ * <p>
+ * Arguments: {@code [files=20] [clients=4] [requests=20000]}
+ */
+public class ModelMetadataBenchmark {
+
+    private static final Pattern ID = Pattern.compile("\"id\":\"([0-9a-f-]{36})\"");
+
+    public static void main(String[] args) throws Exception {
+        int files = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 20_000;
+
+        Path directory = Files.createTempDirectory("model-metadata");
+        ConfigurableApplicationContext context = PredictionLatencyBenchmark.start(directory,
+                "--file.upload-dir=" + directory.resolve("uploads"),
+                "--spring.jpa.properties.hibernate.generate_statistics=true");
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        try {
+            String base = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+            String authorization = "Bearer " + PredictionLatencyBenchmark.login(client, base, "ADMIN");
+            UUID modelId = createModel(client, base, authorization);
+            for (int i = 0; i < files; i++) {
+                String name = "data-" + i + ".csv";
+                check(client, HttpRequest.newBuilder(URI.create(base + "/models/" + modelId + "/upload/stream?name="
+                                + name))
+                        .header("Authorization", authorization)
+                        .PUT(HttpRequest.BodyPublishers.ofString("label,text\nl" + i + ",text " + i + "\n"))
+                        .build());
+                if (!get(client, URI.create(base + "/models/" + modelId), authorization).contains(name)) {
+                    throw new IllegalStateException("Cached model does not show " + name);
+                }
+            }
+            System.out.printf("files=%d clients=%d cpus=%d%n", files, clients,
+                    Runtime.getRuntime().availableProcessors());
+
+            Statistics statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class)
+                    .getStatistics();
+            for (String path : new String[]{"", "/status"}) {
+                for (boolean fresh : new boolean[]{false, true}) {
+                    URI uri = URI.create(base + "/models/" + modelId + path + "?fresh=" + fresh);
+                    IntConsumer request = i -> get(client, uri, authorization);
+                    PredictionLatencyBenchmark.run(executor, clients, requests / 5, request);
+                    statistics.clear();
+                    long startedAt = System.nanoTime();
+                    long[] latencies = PredictionLatencyBenchmark.run(executor, clients, requests, request);
+                    double seconds = (System.nanoTime() - startedAt) / 1e9;
+                    System.out.printf("GET /models/{id}%s%s: %.0f requests/s p50=%.3fms p99=%.3fms, "
+                                    + "%.2f SQL statements per request%n", path, fresh ? "?fresh=true" : "",
+                            requests / seconds, PredictionLatencyBenchmark.percentile(latencies, 50),
+                            PredictionLatencyBenchmark.percentile(latencies, 99),
+                            (double) statistics.getPrepareStatementCount() / requests);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            context.close();
+            PredictionLatencyBenchmark.delete(directory);
+        }
+    }
+
+    private static UUID createModel(HttpClient client, String base, String authorization) throws Exception {
+        check(client, HttpRequest.newBuilder(URI.create(base + "/models"))
+                .header("Authorization", authorization)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"modelName\":\"model-metadata\",\"layers\":[\"TEXT_CLASSIFIER\"]}"))
+                .build());
+        Matcher id = ID.matcher(get(client, URI.create(base + "/models"), authorization));
+        if (!id.find()) {
+            throw new IllegalStateException("Model was not created");
+        }
+        return UUID.fromString(id.group(1));
+    }
+
+    private static String get(HttpClient client, URI uri, String authorization) {
+        return check(client, HttpRequest.newBuilder(uri).header("Authorization", authorization).GET().build());
+    }
+
+    private static String check(HttpClient client, HttpRequest request) {
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException(request.uri() + " failed: " + response.statusCode() + " "
+                        + response.body());
+            }
+            return response.body();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package net.casim.ml.mm.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.casim.ml.mm.data.LLMModel;
+import net.casim.ml.mm.data.ModelLayer;
+import net.casim.ml.mm.data.TrainingData;
+import net.casim.ml.mm.data.TrainingResults;
+import net.casim.ml.mm.utils.TrainingResultsConverter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of writing {@code GET /models} responses: a list of {@code models} loaded {@link LLMModel}s, each with two
+ * layers, two training files and the training results of a 20-class model as stored in the database, serialized as
+ * Spring's message converter does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModelSerializationBenchmark {
+
+    @Param({"10", "1000"})
+    private int models;
+
+    private ObjectMapper objectMapper;
+    private List<LLMModel> list;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        TrainingResultsConverter converter = new TrainingResultsConverter();
+        byte[] trainingResults = converter.convertToDatabaseColumn(
+                TrainingResults.of(MapToJsonConverterBenchmark.trainingResults(20)));
+        list = new ArrayList<>(models);
+        for (int i = 0; i < models; i++) {
+            LLMModel model = new LLMModel();
+            model.setId(UUID.randomUUID());
+            model.setName("model-" + i);
+            model.setLayers(List.of(ModelLayer.TEXT_CLASSIFIER, ModelLayer.VISUAL_CLASSIFIER));
+            model.setStatus("Trained");
+            model.setTrainingResults(converter.convertToEntityAttribute(trainingResults));
+            model.setTrainingDuration(12);
+            model.setAccuracyPercentage(91.23);
+            List<TrainingData> trainingData = new ArrayList<>();
+            for (int f = 0; f < 2; f++) {
+                TrainingData data = new TrainingData();
+                data.setId(UUID.randomUUID());
+                data.setName("data-" + f + ".csv");
+                data.setSize(1_000_000L * (f + 1));
+                data.setContentHash("%064x".formatted(i * 2L + f));
+                data.setUploadDate("2024-11-01T12:00:00");
+                data.setFilePath("uploads/blobs/" + data.getContentHash());
+                data.setModel(model);
+                trainingData.add(data);
+            }
+            model.setAttachments(trainingData);
+            model.setTrainingDataList(trainingData);
+            list.add(model);
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeModels() throws Exception {
+        return objectMapper.writeValueAsBytes(list);
+    }
+}
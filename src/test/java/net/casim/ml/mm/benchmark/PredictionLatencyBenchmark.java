@@ -0,0 +1,246 @@
+package net.casim.ml.mm.benchmark;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import net.casim.ml.mm.MlModelManagementApplication;
+import net.casim.ml.mm.data.LLMModel;
+import net.casim.ml.mm.data.ModelLayer;
+import net.casim.ml.mm.data.TrainingData;
+import net.casim.ml.mm.repository.ModelRepository;
+import net.casim.ml.mm.repository.TrainingDataRepository;
+import net.casim.ml.mm.service.ModelRegistry;
+import net.casim.ml.mm.service.ModelTrainer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Trains a text classifier on a synthetic corpus and measures predictions on it: first {@code clients} concurrent
+ * predictions on the model while it is not loaded, reporting how many times it was loaded, then the latency of
+ * predictions on the loaded model, called directly on the {@link ModelRegistry} and through
+ * {@code POST /models/{modelId}/predict}. Each client sends its next request as soon as the previous one is answered.
+ * <p>
+ * Arguments: {@code [rows=200000] [classes=20] [clients=4] [predictions=1000000] [httpRequests=50000]}
+ */
+public class PredictionLatencyBenchmark {
+
+    private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"");
+    static final int QUERIES = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int classes = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int predictions = args.length > 3 ? Integer.parseInt(args[3]) : 1_000_000;
+        int httpRequests = args.length > 4 ? Integer.parseInt(args[4]) : 50_000;
+
+        Path directory = Files.createTempDirectory("prediction-latency");
+        Path corpus = directory.resolve("corpus.csv");
+        TextTrainingBenchmark.writeCorpus(corpus, rows, classes, 30);
+        List<String> queries = queries(corpus);
+
+        ConfigurableApplicationContext context = start(directory);
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        try {
+            UUID modelId = trainModel(context, corpus);
+            ModelRegistry registry = context.getBean(ModelRegistry.class);
+
+            MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+            long[] cold = run(executor, clients, clients, i -> registry.predict(modelId, queries.get(i % QUERIES)));
+            System.out.printf("rows=%d classes=%d clients=%d cpus=%d%n", rows, classes, clients,
+                    Runtime.getRuntime().availableProcessors());
+            System.out.printf("cold model: %d concurrent predictions, %d load(s), p50=%.3fms max=%.3fms%n",
+                    cold.length, (long) loads(meterRegistry), percentile(cold, 50), percentile(cold, 100));
+
+            IntConsumer direct = i -> registry.predict(modelId, queries.get(i % QUERIES));
+            run(executor, clients, predictions / 5, direct);
+            report("registry", predictions, run(executor, clients, predictions, direct));
+
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+            String authorization = "Bearer " + login(client, "http://localhost:" + port);
+            URI uri = URI.create("http://localhost:" + port + "/models/" + modelId + "/predict");
+            IntConsumer http = i -> {
+                HttpRequest request = HttpRequest.newBuilder(uri)
+                        .header("Authorization", authorization)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(
+                                "{\"text\":\"" + queries.get(i % QUERIES) + "\"}"))
+                        .build();
+                try {
+                    HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                    if (response.statusCode() != 200) {
+                        throw new IllegalStateException("Prediction failed: " + response.body());
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            };
+            run(executor, clients, httpRequests / 5, http);
+            report("http", httpRequests, run(executor, clients, httpRequests, http));
+            System.out.printf("loads in total: %d%n", (long) loads(meterRegistry));
+        } finally {
+            executor.shutdownNow();
+            context.close();
+            delete(directory);
+        }
+    }
+
+    /**
+     * Starts the application with its artifacts in {@code directory} and training jobs and ingestion disabled.
+     */
+    static ConfigurableApplicationContext start(Path directory, String... args) {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        List<String> appArgs = new ArrayList<>(List.of("--server.port=0", "--logging.level.root=WARN",
+                "--spring.jpa.show-sql=false", "--security.jwt.secret-key=" + Base64.getEncoder().encodeToString(key),
+                "--training.scheduler.worker-enabled=false", "--training.ingest.enabled=false",
+                "--training.artifact-dir=" + directory.resolve("artifacts")));
+        appArgs.addAll(Arrays.asList(args));
+        return new SpringApplicationBuilder(MlModelManagementApplication.class).run(appArgs.toArray(String[]::new));
+    }
+
+    static void delete(Path directory) throws Exception {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static double loads(MeterRegistry meterRegistry) {
+        return meterRegistry.get("cache.load").tag("cache", "inference.models").tag("result", "success")
+                .functionCounter().count();
+    }
+
+    static UUID trainModel(ConfigurableApplicationContext context, Path corpus) throws Exception {
+        LLMModel model = new LLMModel();
+        model.setName("prediction-latency");
+        model.setLayers(List.of(ModelLayer.TEXT_CLASSIFIER));
+        model.setStatus("Not Trained");
+        model = context.getBean(ModelRepository.class).save(model);
+
+        TrainingData data = new TrainingData();
+        data.setName("corpus.csv");
+        data.setFilePath(corpus.toString());
+        data.setSize(Files.size(corpus));
+        data.setUploadDate(LocalDateTime.now().toString());
+        data.setModel(model);
+        context.getBean(TrainingDataRepository.class).save(data);
+
+        long startedAt = System.nanoTime();
+        context.getBean(ModelTrainer.class).train(model.getId());
+        System.out.printf("trained in %d ms%n", (System.nanoTime() - startedAt) / 1_000_000);
+        return model.getId();
+    }
+
+    // The text of the first rows of the corpus, which the model has mostly seen in training
+    static List<String> queries(Path corpus) throws Exception {
+        List<String> queries = new ArrayList<>(QUERIES);
+        try (BufferedReader reader = Files.newBufferedReader(corpus)) {
+            reader.readLine();
+            while (queries.size() < QUERIES) {
+                String line = reader.readLine();
+                queries.add(line.substring(line.indexOf(',') + 1));
+            }
+        }
+        return queries;
+    }
+
+    static String login(HttpClient client, String base) throws Exception {
+        return login(client, base, "USER");
+    }
+
+    static String login(HttpClient client, String base, String role) throws Exception {
+        String username = "bench-" + role.toLowerCase();
+        String credentials = "{\"username\":\"" + username + "\",\"password\":\"bench-password\"}";
+        client.send(post(base + "/auth/register", "{\"username\":\"" + username
+                        + "\",\"password\":\"bench-password\",\"roles\":[\"" + role + "\"]}"),
+                HttpResponse.BodyHandlers.discarding());
+        Matcher token = TOKEN.matcher(client.send(post(base + "/auth/login", credentials),
+                HttpResponse.BodyHandlers.ofString()).body());
+        if (!token.find()) {
+            throw new IllegalStateException("Login failed");
+        }
+        return token.group(1);
+    }
+
+    private static HttpRequest post(String uri, String json) {
+        return HttpRequest.newBuilder(URI.create(uri))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    /**
+     * Calls {@code call} {@code count} times, split over {@code clients} threads that start together.
+     *
+     * @return the latency of each call in nanoseconds, sorted
+     */
+    static long[] run(ExecutorService executor, int clients, int count, IntConsumer call) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<long[]>> results = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            int client = c;
+            int calls = count / clients + (c < count % clients ? 1 : 0);
+            results.add(executor.submit(() -> {
+                long[] latencies = new long[calls];
+                start.await();
+                for (int i = 0; i < calls; i++) {
+                    long startedAt = System.nanoTime();
+                    call.accept(client + i * clients);
+                    latencies[i] = System.nanoTime() - startedAt;
+                }
+                return latencies;
+            }));
+        }
+        start.countDown();
+        long[] all = new long[0];
+        for (Future<long[]> result : results) {
+            long[] latencies = result.get();
+            int from = all.length;
+            all = Arrays.copyOf(all, from + latencies.length);
+            System.arraycopy(latencies, 0, all, from, latencies.length);
+        }
+        Arrays.sort(all);
+        return all;
+    }
+
+    static void report(String name, int count, long[] latencies) {
+        System.out.printf("%s: count=%d p50=%.3fms p90=%.3fms p99=%.3fms p99.9=%.3fms max=%.3fms%n", name, count,
+                percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99),
+                percentile(latencies, 99.9), percentile(latencies, 100));
+    }
+
+    static double percentile(long[] sortedNanos, double percentile) {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / 1_000_000.0;
+    }
+}
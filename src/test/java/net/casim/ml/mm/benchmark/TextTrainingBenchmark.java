@@ -0,0 +1,119 @@
+package net.casim.ml.mm.benchmark;
+
+import net.casim.ml.mm.data.ModelLayer;
+import net.casim.ml.mm.data.TrainingData;
+import net.casim.ml.mm.service.FileUploadService;
+import net.casim.ml.mm.training.ColumnarDataset;
+import net.casim.ml.mm.training.NaiveBayesTextEngine;
+import net.casim.ml.mm.training.TrainingRequest;
+import net.casim.ml.mm.training.TrainingResult;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Trains the naive Bayes text engine on a synthetic CSV corpus with 1, 2, 4, ... up to {@code maxThreads} threads and
+ * reports the best rows per second of each and the speedup over one thread, first from the CSV file and then from its
+ * {@link ColumnarDataset columnar form}, which is written once up front. Each class draws most of its words from its
+ * own slice of the vocabulary and the rest from a shared one, so the task is learnable but not trivial.
+ * <p>
+ * Arguments: {@code [rows=1000000] [classes=20] [wordsPerRow=30] [runs=3] [maxThreads=available processors]}
+ */
+public class TextTrainingBenchmark {
+
+    private static final int VOCABULARY = 50_000;
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int classes = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int wordsPerRow = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        int runs = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+        int maxThreads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+        Path file = Files.createTempFile("text-training", ".csv");
+        Path directory = ColumnarDataset.directoryFor(file);
+        try {
+            writeCorpus(file, rows, classes, wordsPerRow);
+            TrainingData data = new TrainingData();
+            data.setName("corpus.csv");
+            data.setFilePath(file.toString());
+            data.setSize(Files.size(file));
+            System.out.printf("rows=%d classes=%d wordsPerRow=%d size=%dMB cpus=%d%n", rows, classes, wordsPerRow,
+                    data.getSize() >> 20, Runtime.getRuntime().availableProcessors());
+            long[] textBest = sweep("text", data, runs, maxThreads);
+
+            long startedAt = System.nanoTime();
+            ColumnarDataset.Manifest manifest = ColumnarDataset.write(file, data.getName(), directory);
+            System.out.printf("ingested in %d ms: %dMB, %d distinct tokens%n", (System.nanoTime() - startedAt) / 1_000_000,
+                    manifest.getBlockOffsets()[manifest.getBlockOffsets().length - 1] >> 20, manifest.getVocabularySize());
+            data.setColumnarPath(directory.toString());
+            long[] columnarBest = sweep("columnar", data, runs, maxThreads);
+
+            for (int i = 0; i < textBest.length && textBest[i] > 0; i++) {
+                System.out.printf("threads=%d text=%d columnar=%d rows/s, columnar speedup=%.2f%n", 1 << i,
+                        textBest[i], columnarBest[i], (double) columnarBest[i] / textBest[i]);
+            }
+        } finally {
+            FileUploadService.deleteDirectory(directory);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * @return the best rows per second for 1, 2, 4, ... threads
+     */
+    private static long[] sweep(String input, TrainingData data, int runs, int maxThreads) throws Exception {
+        long[] bests = new long[32];
+        int step = 0;
+        for (int threads = 1; threads <= maxThreads; threads = threads == maxThreads ? threads + 1
+                : Math.min(threads * 2, maxThreads)) {
+            NaiveBayesTextEngine engine = new NaiveBayesTextEngine(threads);
+            long best = 0;
+            try {
+                for (int run = 1; run <= runs; run++) {
+                    TrainingResult result = engine.train(
+                            new TrainingRequest(UUID.randomUUID(), ModelLayer.TEXT_CLASSIFIER, List.of(data)), p -> { });
+                    long rowsPerSecond = (Long) result.getMetrics().get("rowsPerSecond");
+                    best = Math.max(best, rowsPerSecond);
+                    System.out.printf("%s threads=%d run %d: rowsPerSecond=%d trainingMillis=%s evaluationMillis=%s "
+                                    + "shards=%s accuracy=%s%n", input, threads, run, rowsPerSecond,
+                            result.getMetrics().get("trainingMillis"), result.getMetrics().get("evaluationMillis"),
+                            result.getMetrics().get("shards"), result.getMetrics().get("accuracy"));
+                }
+            } finally {
+                engine.shutdown();
+            }
+            bests[step++] = best;
+            System.out.printf("%s threads=%d best rowsPerSecond=%d speedup=%.2f%n", input, threads, best,
+                    (double) best / bests[0]);
+        }
+        return bests;
+    }
+
+    static void writeCorpus(Path file, int rows, int classes, int wordsPerRow) throws Exception {
+        Random random = new Random(42);
+        int slice = VOCABULARY / (classes + 1);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("label,text\n");
+            for (int row = 0; row < rows; row++) {
+                int label = random.nextInt(classes);
+                writer.write("class");
+                writer.write(Integer.toString(label));
+                writer.write(',');
+                for (int word = 0; word < wordsPerRow; word++) {
+                    // Skewed towards low word ids within a slice, like natural text
+                    int offset = (int) (slice * Math.pow(random.nextDouble(), 3));
+                    int id = random.nextInt(100) < 5 ? (label + 1) * slice + offset : offset;
+                    writer.write(word == 0 ? "w" : " w");
+                    writer.write(Integer.toString(id));
+                }
+                writer.write('\n');
+            }
+        }
+    }
+}
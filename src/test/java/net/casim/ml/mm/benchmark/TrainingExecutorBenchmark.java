@@ -0,0 +1,94 @@
+package net.casim.ml.mm.benchmark;
+
+import net.casim.ml.mm.MlModelManagementApplication;
+import net.casim.ml.mm.service.ModelTrainer;
+import net.casim.ml.mm.service.TrainingExecutors;
+import net.casim.ml.mm.service.TrainingScheduler;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Submits a number of jobs through {@link TrainingScheduler#submit} and reports the live thread count and heap in use
+ * once all of them are running, waiting in a sleep in place of training. The scheduler gets one slot per job, since
+ * {@code training.scheduler.slots} limits concurrent jobs in either mode; virtual threads only make each running job
+ * cheaper. Run once per mode to compare; the virtual mode needs a Java 21+ runtime.
+ * <p>
+ * Arguments: {@code [platform|virtual] [jobs=10000] [sleepMillis=5000]}
+ */
+public class TrainingExecutorBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        boolean virtual = args.length > 0 && args[0].equalsIgnoreCase("virtual");
+        int jobs = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        long sleepMillis = args.length > 2 ? Long.parseLong(args[2]) : 5_000;
+
+        if (virtual && !TrainingExecutors.virtualThreadsSupported()) {
+            System.out.println("mode=virtual skipped: requires Java 21 or newer");
+            return;
+        }
+
+        CountDownLatch started = new CountDownLatch(jobs);
+        CountDownLatch finished = new CountDownLatch(jobs);
+        ModelTrainer sleepingTrainer = new ModelTrainer(null, null, null, null) {
+            @Override
+            public void train(UUID modelId, boolean fullRetrain) throws InterruptedException {
+                started.countDown();
+                try {
+                    Thread.sleep(sleepMillis);
+                } finally {
+                    finished.countDown();
+                }
+            }
+
+            @Override
+            public void resetInterrupted(UUID modelId) {
+            }
+        };
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(MlModelManagementApplication.class)
+                .initializers(applicationContext -> ((GenericApplicationContext) applicationContext).registerBean(
+                        "sleepingTrainer", ModelTrainer.class, () -> sleepingTrainer,
+                        definition -> definition.setPrimary(true)))
+                .run("--server.port=0", "--logging.level.root=WARN", "--spring.jpa.show-sql=false",
+                        "--spring.threads.virtual.enabled=" + virtual,
+                        "--training.scheduler.slots=" + jobs,
+                        "--training.scheduler.queue-capacity=" + jobs,
+                        "--training.scheduler.poll-interval=10ms",
+                        "--training.scheduler.lease-duration=10m");
+        try {
+            TrainingScheduler scheduler = context.getBean(TrainingScheduler.class);
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            System.gc();
+            int baselineThreads = threads.getThreadCount();
+            long baselineHeap = memory.getHeapMemoryUsage().getUsed();
+
+            long startedAt = System.nanoTime();
+            for (int i = 0; i < jobs; i++) {
+                scheduler.submit(UUID.randomUUID(), 0);
+            }
+            started.await(1, TimeUnit.HOURS);
+            long startupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+            int liveThreads = threads.getThreadCount();
+            long heapInUse = memory.getHeapMemoryUsage().getUsed();
+
+            finished.await(1, TimeUnit.HOURS);
+            long totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+
+            System.out.printf("mode=%s jobs=%d sleepMillis=%d%n", virtual ? "virtual" : "platform", jobs, sleepMillis);
+            System.out.printf("liveThreads=%d (baseline %d) peakThreads=%d%n",
+                    liveThreads, baselineThreads, threads.getPeakThreadCount());
+            System.out.printf("heapInUseMB=%.1f (baseline %.1f)%n", heapInUse / 1048576.0, baselineHeap / 1048576.0);
+            System.out.printf("allStartedMillis=%d totalMillis=%d%n", startupMillis, totalMillis);
+        } finally {
+            context.close();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package net.casim.ml.mm.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.casim.ml.mm.data.TrainingResults;
+import net.casim.ml.mm.utils.TrainingResultsConverter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of loading {@code trainingResults} of {@code classes} classes with per-class metrics and a confusion matrix
+ * through {@link TrainingResultsConverter}, stored in {@code encoding}: the load alone, then followed by reading the
+ * accuracy, the per-class metrics, the whole map, or writing the results into a response. Compare with
+ * {@link MapToJsonConverterBenchmark#toEntityAttribute}, which decodes the whole map on every load.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TrainingResultsBenchmark {
+
+    @Param({"20", "200"})
+    private int classes;
+
+    @Param({"JSON", "SMILE"})
+    private TrainingResults.Encoding encoding;
+
+    private TrainingResultsConverter converter;
+    private ObjectMapper objectMapper;
+    private TrainingResults results;
+    private byte[] column;
+
+    @Setup
+    public void setUp() {
+        converter = new TrainingResultsConverter(encoding);
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        results = TrainingResults.of(MapToJsonConverterBenchmark.trainingResults(classes));
+        column = converter.convertToDatabaseColumn(results);
+    }
+
+    @Benchmark
+    public byte[] store() {
+        return converter.convertToDatabaseColumn(TrainingResults.of(results.getMetrics()));
+    }
+
+    @Benchmark
+    public TrainingResults load() {
+        return converter.convertToEntityAttribute(column);
+    }
+
+    @Benchmark
+    public Double loadAndReadAccuracy() {
+        return converter.convertToEntityAttribute(column).getAccuracy();
+    }
+
+    @Benchmark
+    public Map<String, TrainingResults.ClassMetrics> loadAndReadPerClass() {
+        return converter.convertToEntityAttribute(column).getPerClass();
+    }
+
+    @Benchmark
+    public Map<String, Object> loadAndDecode() {
+        return converter.convertToEntityAttribute(column).getMetrics();
+    }
+
+    @Benchmark
+    public byte[] loadAndSerialize() throws Exception {
+        return objectMapper.writeValueAsBytes(converter.convertToEntityAttribute(column));
+    }
+}
@@ -0,0 +1,70 @@
+package net.casim.ml.mm.benchmark;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import net.casim.ml.mm.MlModelManagementApplication;
+import net.casim.ml.mm.data.response.TrainingSchedulerStats;
+import net.casim.ml.mm.repository.TrainingJobRepository;
+import net.casim.ml.mm.service.ModelCache;
+import net.casim.ml.mm.service.ModelTrainer;
+import net.casim.ml.mm.service.TrainingScheduler;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Submits a burst of training jobs against the persistent queue and reports jobs completed per minute and
+ * queue wait times. Training itself is replaced by a fixed sleep.
+ * <p>
+ * Arguments: {@code [jobs=500] [slots=4] [jobMillis=100]}
+ */
+public class TrainingSchedulerBurstBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int jobs = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int slots = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        long jobMillis = args.length > 2 ? Long.parseLong(args[2]) : 100;
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(MlModelManagementApplication.class)
+                .run("--server.port=0", "--training.scheduler.worker-enabled=false", "--logging.level.root=WARN");
+        CountDownLatch done = new CountDownLatch(jobs);
+        ModelTrainer sleepingTrainer = new ModelTrainer(null, null, null, null) {
+            @Override
+            public void train(UUID modelId, boolean fullRetrain) throws InterruptedException {
+                try {
+                    Thread.sleep(jobMillis);
+                } finally {
+                    done.countDown();
+                }
+            }
+
+            @Override
+            public void resetInterrupted(UUID modelId) {
+            }
+        };
+
+        TrainingScheduler scheduler = new TrainingScheduler(context.getBean(TrainingJobRepository.class),
+                sleepingTrainer, context.getBean(ModelCache.class), slots, jobs, Duration.ofSeconds(60),
+                Duration.ofMillis(100), 3, context.getBean(MeterRegistry.class));
+        scheduler.start();
+
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < jobs; i++) {
+            scheduler.submit(UUID.randomUUID(), i % 3);
+        }
+        done.await(1, TimeUnit.HOURS);
+        double elapsedMinutes = (System.nanoTime() - startedAt) / 60_000_000_000.0;
+
+        TrainingSchedulerStats stats = scheduler.getStats();
+        scheduler.shutdown();
+        context.close();
+
+        System.out.printf("jobs=%d slots=%d jobMillis=%d%n", jobs, slots, jobMillis);
+        System.out.printf("jobsPerMinute=%.1f%n", jobs / elapsedMinutes);
+        System.out.printf("averageQueueWaitMillis=%d maxQueueWaitMillis=%d%n",
+                stats.getAverageQueueWaitMillis(), stats.getMaxQueueWaitMillis());
+    }
+}
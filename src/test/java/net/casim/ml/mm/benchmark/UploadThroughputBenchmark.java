@@ -0,0 +1,78 @@
+package net.casim.ml.mm.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.casim.ml.mm.service.FileUploadService;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams a generated file of the given size through {@link FileUploadService#store} and reports throughput and
+ * peak heap in use. Run with a small heap (e.g. {@code -Xmx128m}) to confirm memory does not grow with file size.
+ * <p>
+ * Arguments: {@code [sizeMb=1024] [dir=<temp dir>]}
+ */
+public class UploadThroughputBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        long sizeMb = args.length > 0 ? Long.parseLong(args[0]) : 1024;
+        Path dir = args.length > 1 ? Path.of(args[1]) : Files.createTempDirectory("upload-benchmark");
+        long size = sizeMb * 1024 * 1024;
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        AtomicLong peakHeap = new AtomicLong();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                0, 10, TimeUnit.MILLISECONDS);
+
+        FileUploadService fileUploadService = new FileUploadService(null, event -> { }, dir.toString(),
+                new SimpleMeterRegistry());
+        long startedAt = System.nanoTime();
+        FileUploadService.StoredFile storedFile = fileUploadService.store(new GeneratedInputStream(size));
+        double seconds = (System.nanoTime() - startedAt) / 1_000_000_000.0;
+
+        sampler.shutdownNow();
+        Files.deleteIfExists(storedFile.getPath());
+
+        System.out.printf("sizeMb=%d seconds=%.2f%n", sizeMb, seconds);
+        System.out.printf("throughputMbPerSecond=%.1f%n", sizeMb / seconds);
+        System.out.printf("peakHeapMb=%.1f maxHeapMb=%.1f%n",
+                peakHeap.get() / 1048576.0, Runtime.getRuntime().maxMemory() / 1048576.0);
+        System.out.printf("sha256=%s%n", storedFile.getContentHash());
+    }
+
+    private static class GeneratedInputStream extends InputStream {
+
+        private final long size;
+        private long position;
+
+        GeneratedInputStream(long size) {
+            this.size = size;
+        }
+
+        @Override
+        public int read() {
+            return position < size ? (int) (position++ & 0xff) : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position >= size) {
+                return -1;
+            }
+            int n = (int) Math.min(len, size - position);
+            for (int i = 0; i < n; i++) {
+                b[off + i] = (byte) (position + i);
+            }
+            position += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package net.casim.ml.mm.service;
+
+import net.casim.ml.mm.data.request.PredictionRequest;
+import net.casim.ml.mm.exception.ResourceNotFoundException;
+import net.casim.ml.mm.training.Prediction;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class BatchPredictionServiceTest {
+
+    private final ModelRegistry modelRegistry = mock(ModelRegistry.class);
+    private final UUID modelId = UUID.randomUUID();
+    private final List<Integer> chunkSizes = new ArrayList<>();
+    private final BatchPredictionService service = new BatchPredictionService(modelRegistry, 3, 2);
+
+    @Test
+    public void testStreamPredictsInChunksAndKeepsOrder() throws Exception {
+        echoRegistry();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        service.stream(modelId, body("{\"text\":\"a\"}\n{\"text\":\"b\"}\n\n{\"text\":\"c\"}\n{\"text\":\"d\"}\n"
+                + "{\"text\":\"e\"}"), response);
+
+        assertEquals("application/x-ndjson", response.getContentType());
+        assertEquals("""
+                {"label":"a","confidence":0.5}
+                {"label":"b","confidence":0.5}
+                {"label":"c","confidence":0.5}
+                {"label":"d","confidence":0.5}
+                {"label":"e","confidence":0.5}
+                """, response.getContentAsString());
+        assertEquals(List.of(2, 2, 1), chunkSizes);
+    }
+
+    @Test
+    public void testStreamFailsBeforeWritingForUnknownModel() {
+        when(modelRegistry.predict(eq(modelId), anyList())).thenThrow(new ResourceNotFoundException("Model not found"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThrows(ResourceNotFoundException.class, () -> service.stream(modelId, body(""), response));
+        assertFalse(response.isCommitted());
+        assertEquals(0, response.getContentLength());
+    }
+
+    @Test
+    public void testBatchRejectsTooManyRecordsAndMissingText() {
+        echoRegistry();
+
+        assertEquals(List.of("x", "y"), service.predict(modelId, List.of(record("x"), record("y"))).stream()
+                .map(Prediction::getLabel).toList());
+        assertThrows(IllegalArgumentException.class, () -> service.predict(modelId,
+                List.of(record("a"), record("b"), record("c"), record("d"))));
+        assertThrows(IllegalArgumentException.class, () -> service.predict(modelId, List.of(record(null))));
+        assertThrows(IllegalArgumentException.class, () -> service.stream(modelId, body("{\"label\":\"a\"}"),
+                new MockHttpServletResponse()));
+    }
+
+    private void echoRegistry() {
+        when(modelRegistry.predict(eq(modelId), anyList())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(1);
+            chunkSizes.add(texts.size());
+            return texts.stream().map(text -> new Prediction(text, 0.5)).toList();
+        });
+    }
+
+    private static ByteArrayInputStream body(String ndjson) {
+        return new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static PredictionRequest record(String text) {
+        PredictionRequest record = new PredictionRequest();
+        record.setText(text);
+        return record;
+    }
+}
@@ -0,0 +1,233 @@
+package net.casim.ml.mm.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.casim.ml.mm.data.LLMModel;
+import net.casim.ml.mm.data.TrainingData;
+import net.casim.ml.mm.data.request.InitiateUploadRequest;
+import net.casim.ml.mm.data.response.UploadSessionStatus;
+import net.casim.ml.mm.exception.ResourceNotFoundException;
+import net.casim.ml.mm.repository.TrainingDataRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class ChunkedUploadServiceTest {
+
+    private static final int CHUNK_SIZE = 1024;
+
+    @TempDir
+    Path uploadDir;
+
+    private ChunkedUploadService chunkedUploadService;
+    private TrainingDataRepository trainingDataRepository;
+    private ModelService modelService;
+    private UUID modelId;
+    private byte[] content;
+    private String contentHash;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        trainingDataRepository = mock(TrainingDataRepository.class);
+        when(trainingDataRepository.save(any(TrainingData.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        modelService = mock(ModelService.class);
+        modelId = UUID.randomUUID();
+        LLMModel model = new LLMModel();
+        model.setId(modelId);
+        when(modelService.getModelById(modelId)).thenReturn(model);
+        when(modelService.getModelForUpdate(modelId)).thenReturn(model);
+
+        chunkedUploadService = chunkedUploadService(Duration.ofHours(1), Duration.ofHours(1));
+
+        content = new byte[10 * CHUNK_SIZE + 123];
+        new Random(7).nextBytes(content);
+        contentHash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        chunkedUploadService.shutdown();
+    }
+
+    @Test
+    public void testParallelOutOfOrderChunksAreAssembled() throws Exception {
+        UploadSessionStatus status = chunkedUploadService.initiate(modelId, request(contentHash));
+        assertEquals(11, status.getMissingChunks().size());
+
+        List<Integer> chunks = new ArrayList<>();
+        for (int i = 0; i < 11; i++) {
+            chunks.add(i);
+        }
+        Collections.shuffle(chunks, new Random(1));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<UploadSessionStatus>> writes = new ArrayList<>();
+        for (int chunk : chunks) {
+            writes.add(executor.submit(() -> writeChunk(status.getUploadId(), chunk)));
+        }
+        for (Future<UploadSessionStatus> write : writes) {
+            write.get();
+        }
+        executor.shutdown();
+
+        UploadSessionStatus complete = chunkedUploadService.getStatus(modelId, status.getUploadId());
+        assertEquals(content.length, complete.getReceivedBytes());
+        assertTrue(complete.getMissingChunks().isEmpty());
+
+        TrainingData trainingData = chunkedUploadService.commit(modelId, status.getUploadId());
+        assertEquals(contentHash, trainingData.getContentHash());
+        assertEquals(content.length, trainingData.getSize());
+        assertArrayEquals(content, Files.readAllBytes(Path.of(trainingData.getFilePath())));
+        assertThrows(ResourceNotFoundException.class, () -> chunkedUploadService.getStatus(modelId, status.getUploadId()));
+    }
+
+    @Test
+    public void testUploadCanBeResumedAfterIncompleteChunk() throws Exception {
+        UUID uploadId = chunkedUploadService.initiate(modelId, request(null)).getUploadId();
+        writeChunk(uploadId, 0);
+        byte[] truncated = new byte[CHUNK_SIZE / 2];
+
+        assertThrows(IllegalArgumentException.class, () -> chunkedUploadService.writeChunk(modelId, uploadId,
+                "bytes 1024-2047/" + content.length, new ByteArrayInputStream(truncated)));
+        assertThrows(IllegalStateException.class, () -> chunkedUploadService.commit(modelId, uploadId));
+
+        UploadSessionStatus status = chunkedUploadService.getStatus(modelId, uploadId);
+        assertEquals(CHUNK_SIZE, status.getReceivedBytes());
+        for (int chunk : status.getMissingChunks()) {
+            writeChunk(uploadId, chunk);
+        }
+        assertEquals(contentHash, chunkedUploadService.commit(modelId, uploadId).getContentHash());
+    }
+
+    @Test
+    public void testMisalignedRangeIsRejected() throws Exception {
+        UUID uploadId = chunkedUploadService.initiate(modelId, request(null)).getUploadId();
+
+        assertThrows(IllegalArgumentException.class, () -> chunkedUploadService.writeChunk(modelId, uploadId,
+                "bytes 10-1033/" + content.length, new ByteArrayInputStream(new byte[CHUNK_SIZE])));
+        assertThrows(IllegalArgumentException.class, () -> chunkedUploadService.writeChunk(modelId, uploadId,
+                "bytes 0-1023/99", new ByteArrayInputStream(new byte[CHUNK_SIZE])));
+        assertThrows(ResourceNotFoundException.class, () -> chunkedUploadService.getStatus(UUID.randomUUID(), uploadId));
+    }
+
+    @Test
+    public void testAbortDeletesPartialFile() throws Exception {
+        UUID uploadId = chunkedUploadService.initiate(modelId, request(null)).getUploadId();
+        writeChunk(uploadId, 3);
+
+        chunkedUploadService.abort(modelId, uploadId);
+
+        try (var files = Files.list(uploadDir.resolve("tmp"))) {
+            assertEquals(0, files.count());
+        }
+        assertThrows(ResourceNotFoundException.class, () -> writeChunk(uploadId, 4));
+    }
+
+    @Test
+    public void testFailedCommitKeepsTheChunks() throws Exception {
+        UUID uploadId = chunkedUploadService.initiate(modelId, request(contentHash)).getUploadId();
+        for (int chunk = 0; chunk < 11; chunk++) {
+            writeChunk(uploadId, chunk);
+        }
+        byte[] corrupted = new byte[CHUNK_SIZE];
+        chunkedUploadService.writeChunk(modelId, uploadId, "bytes 2048-3071/" + content.length,
+                new ByteArrayInputStream(corrupted));
+
+        assertThrows(IllegalArgumentException.class, () -> chunkedUploadService.commit(modelId, uploadId));
+        assertTrue(chunkedUploadService.getStatus(modelId, uploadId).getMissingChunks().isEmpty());
+
+        writeChunk(uploadId, 2);
+        TrainingData trainingData = chunkedUploadService.commit(modelId, uploadId);
+        assertArrayEquals(content, Files.readAllBytes(Path.of(trainingData.getFilePath())));
+    }
+
+    @Test
+    public void testCommitCanBeRetriedAfterTheRowFailedToSave() throws Exception {
+        UUID uploadId = chunkedUploadService.initiate(modelId, request(contentHash)).getUploadId();
+        for (int chunk = 0; chunk < 11; chunk++) {
+            writeChunk(uploadId, chunk);
+        }
+        when(trainingDataRepository.save(any(TrainingData.class)))
+                .thenThrow(new IllegalStateException("Database unavailable"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        assertThrows(IllegalStateException.class, () -> chunkedUploadService.commit(modelId, uploadId));
+        try (var blobs = Files.walk(uploadDir.resolve("blobs"))) {
+            assertTrue(blobs.noneMatch(Files::isRegularFile));
+        }
+
+        TrainingData trainingData = chunkedUploadService.commit(modelId, uploadId);
+        assertArrayEquals(content, Files.readAllBytes(Path.of(trainingData.getFilePath())));
+    }
+
+    @Test
+    public void testIdleSessionsExpireWithoutNewUploads() throws Exception {
+        chunkedUploadService.shutdown();
+        chunkedUploadService = chunkedUploadService(Duration.ofMillis(1), Duration.ofMillis(10));
+        UUID uploadId = chunkedUploadService.initiate(modelId, request(null)).getUploadId();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        try (var files = Files.list(uploadDir.resolve("tmp"))) {
+            assertEquals(1, files.count());
+        }
+        while (System.nanoTime() < deadline && isOpen(uploadId)) {
+            Thread.sleep(10);
+        }
+        assertFalse(isOpen(uploadId));
+        try (var files = Files.list(uploadDir.resolve("tmp"))) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    private boolean isOpen(UUID uploadId) {
+        try {
+            chunkedUploadService.getStatus(modelId, uploadId);
+            return true;
+        } catch (ResourceNotFoundException e) {
+            return false;
+        }
+    }
+
+    private ChunkedUploadService chunkedUploadService(Duration sessionTimeout, Duration expiryInterval) {
+        return new ChunkedUploadService(modelService,
+                new FileUploadService(trainingDataRepository, event -> { }, uploadDir.toString(),
+                        new SimpleMeterRegistry()),
+                DataSize.ofBytes(CHUNK_SIZE), DataSize.ofMegabytes(1), sessionTimeout, expiryInterval);
+    }
+
+    private UploadSessionStatus writeChunk(UUID uploadId, int chunk) throws Exception {
+        int start = chunk * CHUNK_SIZE;
+        int end = Math.min(start + CHUNK_SIZE, content.length);
+        return chunkedUploadService.writeChunk(modelId, uploadId,
+                "bytes " + start + "-" + (end - 1) + "/" + content.length,
+                new ByteArrayInputStream(content, start, end - start));
+    }
+
+    private InitiateUploadRequest request(String sha256) {
+        InitiateUploadRequest request = new InitiateUploadRequest();
+        request.setName("data.csv");
+        request.setSize(content.length);
+        request.setSha256(sha256);
+        return request;
+    }
+}
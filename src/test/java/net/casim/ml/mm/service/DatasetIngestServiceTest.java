@@ -0,0 +1,115 @@
+package net.casim.ml.mm.service;
+
+import net.casim.ml.mm.data.TrainingData;
+import net.casim.ml.mm.repository.TrainingDataRepository;
+import net.casim.ml.mm.training.ColumnarDataset;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class DatasetIngestServiceTest {
+
+    private static final String HASH = "ab".repeat(32);
+
+    @TempDir
+    Path tempDir;
+
+    private TrainingDataRepository trainingDataRepository;
+    private DatasetIngestService ingestService;
+    private TrainingData data;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        trainingDataRepository = mock(TrainingDataRepository.class);
+        when(trainingDataRepository.updateColumnarPath(anyString(), anyString())).thenReturn(1);
+        ingestService = new DatasetIngestService(trainingDataRepository, true);
+
+        Path blob = tempDir.resolve(HASH);
+        Files.writeString(blob, "label,text\nham,see you at lunch\nspam,WIN a FREE prize\n\nspam,\nham,Lunch at noon?\n");
+        data = new TrainingData();
+        data.setName("messages.csv");
+        data.setContentHash(HASH);
+        data.setFilePath(blob.toString());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ingestService.shutdown();
+    }
+
+    @Test
+    public void testIngestWritesDatasetAndRecordsIt() throws Exception {
+        Path directory = ingestService.ingest(data).get(10, TimeUnit.SECONDS);
+
+        assertEquals(ColumnarDataset.directoryFor(tempDir.resolve(HASH)), directory);
+        verify(trainingDataRepository).updateColumnarPath(HASH, directory.toString());
+        ColumnarDataset dataset = ColumnarDataset.open(directory);
+        assertArrayEquals(new String[]{"ham", "spam"}, dataset.getLabels());
+        assertEquals(3, dataset.getManifest().getRows());
+        assertEquals(1, dataset.getManifest().getSkippedRows());
+        // see you at lunch win a free prize noon
+        assertEquals(9, dataset.getManifest().getVocabularySize());
+        try (ColumnarDataset.RowCursor rows = dataset.rows(0, dataset.getBlockCount())) {
+            assertTrue(rows.next());
+            assertEquals(0, rows.getLabel());
+            assertEquals(11, rows.getOffset());
+            assertEquals(4, rows.getTokenCount());
+            assertTrue(rows.next());
+            assertEquals(1, rows.getLabel());
+            assertArrayEquals(new int[]{4, 5, 6, 7}, Arrays.copyOf(rows.getTokens(), rows.getTokenCount()));
+            assertTrue(rows.next());
+            assertEquals(0, rows.getLabel());
+            assertArrayEquals(new int[]{3, 2, 8}, Arrays.copyOf(rows.getTokens(), rows.getTokenCount()));
+            assertFalse(rows.next());
+        }
+        try (var files = Files.list(tempDir)) {
+            assertEquals(2, files.count(), "no temporary directory is left behind");
+        }
+    }
+
+    @Test
+    public void testExistingDatasetIsReused() throws Exception {
+        Path directory = ingestService.ingest(data).get(10, TimeUnit.SECONDS);
+        Path manifest = directory.resolve("manifest.json");
+        long written = Files.getLastModifiedTime(manifest).toMillis();
+        Files.setLastModifiedTime(manifest, FileTime.fromMillis(written - 60_000));
+
+        assertEquals(directory, ingestService.ingest(data).get(10, TimeUnit.SECONDS));
+
+        assertEquals(written - 60_000, Files.getLastModifiedTime(manifest).toMillis());
+        verify(trainingDataRepository, times(2)).updateColumnarPath(HASH, directory.toString());
+    }
+
+    @Test
+    public void testDatasetOfDeletedBlobIsRemoved() throws Exception {
+        when(trainingDataRepository.updateColumnarPath(anyString(), anyString())).thenReturn(0);
+
+        Path directory = ingestService.ingest(data).get(10, TimeUnit.SECONDS);
+
+        assertFalse(Files.exists(directory));
+    }
+
+    @Test
+    public void testFailedIngestCompletesExceptionally() throws Exception {
+        Files.delete(tempDir.resolve(HASH));
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> ingestService.ingest(data).get(10, TimeUnit.SECONDS));
+
+        assertInstanceOf(IOException.class, e.getCause());
+        verifyNoInteractions(trainingDataRepository);
+    }
+}
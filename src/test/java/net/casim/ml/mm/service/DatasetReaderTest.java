@@ -0,0 +1,163 @@
+package net.casim.ml.mm.service;
+
+import net.casim.ml.mm.dataset.ByteSlice;
+import net.casim.ml.mm.dataset.DatasetFormat;
+import net.casim.ml.mm.dataset.DatasetReader;
+import net.casim.ml.mm.dataset.DatasetRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DatasetReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testSegmentsAndRangesReturnEveryLineOnce() throws Exception {
+        StringBuilder text = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            String line = "line " + i + " " + "z".repeat(i % 50) + " é";
+            text.append(line).append(i % 3 == 0 ? "\r\n" : "\n");
+            expected.add(line);
+            if (i % 17 == 0) {
+                text.append("  \n");
+            }
+        }
+        Path file = write("lines.txt", text.toString());
+
+        for (long segmentSize : new long[]{7, 64, DatasetReader.DEFAULT_SEGMENT_SIZE}) {
+            for (int ranges : new int[]{1, 3, 40}) {
+                long[] boundaries = DatasetReader.split(Files.size(file), ranges);
+                List<String> actual = new ArrayList<>();
+                for (int i = 0; i < boundaries.length - 1; i++) {
+                    try (DatasetReader reader = new DatasetReader(file, "lines.txt", DatasetFormat.TEXT,
+                            boundaries[i], boundaries[i + 1], segmentSize)) {
+                        while (reader.next()) {
+                            actual.add(reader.getRecord().getString(0));
+                        }
+                    }
+                }
+                assertEquals(expected, actual, "segment " + segmentSize + ", " + ranges + " ranges");
+            }
+        }
+    }
+
+    @Test
+    public void testDelimitedFieldsAreUnquotedLazily() throws Exception {
+        Path file = write("data.csv", "label,text,score\n"
+                + " spam , \"buy now, \"\"cheap\"\"\" ,0.9\n"
+                + "ham,hello, world\n"
+                + "\"unterminated,x\n");
+
+        try (DatasetReader reader = new DatasetReader(file, "data.csv")) {
+            assertEquals(DatasetFormat.CSV, reader.getFormat());
+            assertEquals(1, reader.skip(1));
+
+            assertTrue(reader.next());
+            DatasetRecord record = reader.getRecord();
+            assertEquals(3, record.getFieldCount());
+            assertEquals("spam", record.getString(0));
+            assertEquals("buy now, \"cheap\"", record.getString(1));
+            assertEquals("0.9", record.getString(2));
+            assertNull(record.getField(3));
+
+            assertTrue(reader.next());
+            assertEquals(3, record.getFieldCount());
+            assertEquals("hello, world", record.getRemainder(1).toString());
+            assertEquals("world", record.getString(2));
+
+            assertTrue(reader.next());
+            assertEquals("\"unterminated", record.getString(0));
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void testJsonFieldsAreFoundByName() throws Exception {
+        Path file = write("data.jsonl", "{\"label\": \"a\", \"meta\": {\"x\": [1, \"}\"]}, \"text\": \"plain\"}\n"
+                + "{\"text\":\"tab\\there \\u00e9\\\"\",\"label\":7,\"extra\":null}\n"
+                + "{\"label\": \"b\"\n"
+                + "not json\n");
+
+        try (DatasetReader reader = new DatasetReader(file, "data.jsonl")) {
+            assertEquals(DatasetFormat.JSONL, reader.getFormat());
+
+            assertTrue(reader.next());
+            DatasetRecord record = reader.getRecord();
+            assertTrue(record.isValid());
+            assertEquals("a", record.getString("label"));
+            assertEquals("plain", record.getString("text"));
+            assertNull(record.getField("meta"));
+            assertNull(record.getField("missing"));
+
+            assertTrue(reader.next());
+            assertEquals("tab\there é\"", record.getString("text"));
+            assertEquals("7", record.getString("label"));
+            assertNull(record.getField("extra"));
+
+            assertTrue(reader.next());
+            assertFalse(record.isValid());
+            assertTrue(reader.next());
+            assertFalse(record.isValid());
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void testSampleIsStableAcrossRanges() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            text.append("row ").append(i).append('\n');
+        }
+        Path file = write("rows.txt", text.toString());
+
+        List<Long> whole = sampledOffsets(file, 0, Long.MAX_VALUE);
+        long[] boundaries = DatasetReader.split(Files.size(file), 5);
+        List<Long> pieces = new ArrayList<>();
+        for (int i = 0; i < boundaries.length - 1; i++) {
+            pieces.addAll(sampledOffsets(file, boundaries[i], boundaries[i + 1]));
+        }
+
+        assertEquals(whole, pieces);
+        assertTrue(whole.size() > 800 && whole.size() < 1200, "sampled " + whole.size());
+    }
+
+    @Test
+    public void testByteSliceDecodesUtf8() {
+        ByteSlice slice = ByteSlice.of("aé€😀");
+
+        assertEquals(10, slice.length());
+        assertEquals('a', slice.codePointAt(0));
+        assertEquals('é', slice.codePointAt(1));
+        assertEquals('€', slice.codePointAt(3));
+        assertEquals(0x1f600, slice.codePointAt(6));
+        assertEquals(ByteSlice.wrap("aé€😀".getBytes(StandardCharsets.UTF_8)), slice);
+        assertEquals(0xfffd, ByteSlice.wrap(new byte[]{(byte) 0xc3}).codePointAt(0));
+    }
+
+    private List<Long> sampledOffsets(Path file, long start, long end) throws Exception {
+        List<Long> offsets = new ArrayList<>();
+        try (DatasetReader reader = new DatasetReader(file, "rows.txt", DatasetFormat.TEXT, start, end, 4096)
+                .sample(0.1, 42)) {
+            while (reader.next()) {
+                offsets.add(reader.getRecord().getOffset());
+            }
+        }
+        return offsets;
+    }
+
+    private Path write(String name, String content) throws Exception {
+        Path file = tempDir.resolve(name);
+        Files.writeString(file, content);
+        return file;
+    }
+}
@@ -0,0 +1,141 @@
+package net.casim.ml.mm.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.casim.ml.mm.data.LLMModel;
+import net.casim.ml.mm.data.TrainingData;
+import net.casim.ml.mm.repository.TrainingDataRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class FileUploadServiceTest {
+
+    @TempDir
+    Path uploadDir;
+
+    private TrainingDataRepository trainingDataRepository;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private FileUploadService fileUploadService;
+    private byte[] content;
+    private String contentHash;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        trainingDataRepository = mock(TrainingDataRepository.class);
+        when(trainingDataRepository.save(any(TrainingData.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        fileUploadService = new FileUploadService(trainingDataRepository, event -> { }, uploadDir.toString(),
+                meterRegistry);
+
+        content = new byte[1_000_003];
+        new Random(42).nextBytes(content);
+        contentHash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+
+    @Test
+    public void testStoreWritesBlobKeyedByHash() throws Exception {
+        FileUploadService.StoredFile storedFile = fileUploadService.store(new ByteArrayInputStream(content));
+
+        assertEquals(uploadDir.resolve("blobs").resolve(contentHash.substring(0, 2)).resolve(contentHash),
+                storedFile.getPath());
+        assertEquals(content.length, storedFile.getSize());
+        assertEquals(contentHash, storedFile.getContentHash());
+        assertArrayEquals(content, Files.readAllBytes(storedFile.getPath()));
+    }
+
+    @Test
+    public void testSameContentIsStoredOnce() throws Exception {
+        LLMModel model = new LLMModel();
+        TrainingData first = fileUploadService.saveTrainingData(model, "a.csv", new ByteArrayInputStream(content), null);
+        TrainingData second = fileUploadService.saveTrainingData(model, "b.csv", new ByteArrayInputStream(content), null);
+
+        assertEquals(first.getFilePath(), second.getFilePath());
+        assertEquals("b.csv", second.getName());
+        assertEquals(contentHash, second.getContentHash());
+        assertEquals(1, countFiles(uploadDir.resolve("blobs")));
+        assertEquals(0, countFiles(uploadDir.resolve("tmp")));
+        assertEquals(2, meterRegistry.get("uploads.size").summary().count());
+        assertEquals(2.0 * content.length, meterRegistry.get("uploads.size").summary().totalAmount());
+        assertEquals(2, meterRegistry.get("uploads.throughput").tag("type", "stream").summary().count());
+        assertEquals(0, meterRegistry.get("uploads.throughput").tag("type", "chunk").summary().count());
+    }
+
+    @Test
+    public void testAttachExistingSkipsUpload() throws Exception {
+        LLMModel model = new LLMModel();
+
+        assertTrue(fileUploadService.attachExisting(model, "a.csv", contentHash).isEmpty());
+        fileUploadService.store(new ByteArrayInputStream(content));
+        Optional<TrainingData> attached = fileUploadService.attachExisting(model, "a.csv", contentHash.toUpperCase());
+
+        assertTrue(attached.isPresent());
+        assertEquals(content.length, attached.get().getSize());
+        assertSame(model, attached.get().getModel());
+    }
+
+    @Test
+    public void testHashMismatchIsRejected() throws Exception {
+        String otherHash = "0".repeat(64);
+
+        assertThrows(IllegalArgumentException.class, () -> fileUploadService.saveTrainingData(
+                new LLMModel(), "a.csv", new ByteArrayInputStream(content), otherHash));
+        assertThrows(IllegalArgumentException.class,
+                () -> fileUploadService.attachExisting(new LLMModel(), "a.csv", "../../etc/passwd"));
+        assertEquals(0, countFiles(uploadDir));
+        verify(trainingDataRepository, never()).save(any());
+    }
+
+    @Test
+    public void testReleaseDeletesOnlyUnreferencedBlobs() throws Exception {
+        Path blob = fileUploadService.store(new ByteArrayInputStream(content)).getPath();
+
+        when(trainingDataRepository.countByContentHash(contentHash)).thenReturn(1L);
+        fileUploadService.release(List.of(contentHash));
+        assertTrue(Files.exists(blob));
+
+        when(trainingDataRepository.countByContentHash(contentHash)).thenReturn(0L);
+        fileUploadService.release(List.of(contentHash));
+        assertFalse(Files.exists(blob));
+    }
+
+    @Test
+    public void testFailedUploadLeavesNoFile() throws Exception {
+        InputStream failing = new InputStream() {
+            private int remaining = 1000;
+
+            @Override
+            public int read() throws IOException {
+                if (remaining-- <= 0) {
+                    throw new IOException("Connection reset");
+                }
+                return 1;
+            }
+        };
+
+        assertThrows(IOException.class, () -> fileUploadService.store(failing));
+        assertEquals(0, countFiles(uploadDir));
+    }
+
+    private static long countFiles(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return 0;
+        }
+        try (var files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package net.casim.ml.mm.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.casim.ml.mm.config.JwtAuthenticationFilter;
+import net.casim.ml.mm.data.User;
+import net.casim.ml.mm.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class JwtAuthenticationFilterTest {
+
+    private static final String SECRET = "c2VjcmV0LWtleS1mb3ItdGVzdHMtd2l0aC1lbm91Z2gtYml0cw==";
+
+    private JwtService jwtService;
+    private UserService userService;
+    private UserRepository userRepository;
+    private UserTokenVersionCache tokenVersionCache;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private User user;
+
+    @BeforeEach
+    public void setUp() {
+        jwtService = new JwtService(new JwtKeyRing("HS256", SECRET, 60_000, Duration.ofHours(24), "", true,
+                Duration.ofMinutes(1)), 60_000, 100, new SimpleMeterRegistry());
+        userService = mock(UserService.class);
+        userRepository = mock(UserRepository.class);
+        tokenVersionCache = new UserTokenVersionCache(userRepository, Duration.ofMinutes(1), 100, new SimpleMeterRegistry());
+        user = new User();
+        user.setUsername("alice");
+        user.setRoles(List.of("ADMIN"));
+        when(userRepository.findTokenVersionByUsername("alice")).thenReturn(Optional.of(0));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void testStatelessModeTakesAuthoritiesFromClaims() throws Exception {
+        String token = jwtService.generateToken(user);
+
+        for (int i = 0; i < 3; i++) {
+            Authentication authentication = filter(true, token);
+            assertNotNull(authentication);
+            assertEquals(List.of("ROLE_ADMIN"),
+                    authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList());
+            SecurityContextHolder.clearContext();
+        }
+
+        verifyNoInteractions(userService);
+        verify(userRepository, times(1)).findTokenVersionByUsername("alice");
+    }
+
+    @Test
+    public void testStatelessModeRejectsTokensFromBeforeRevocation() throws Exception {
+        String token = jwtService.generateToken(user);
+        when(userRepository.findTokenVersionByUsername("alice")).thenReturn(Optional.of(1));
+        tokenVersionCache.invalidate("alice");
+
+        assertNull(filter(true, token));
+
+        user.setTokenVersion(1);
+        assertNotNull(filter(true, jwtService.generateToken(user)));
+        SecurityContextHolder.clearContext();
+        assertNull(filter(true, "not-a-token"));
+
+        for (String result : List.of("rejected", "authenticated", "invalid")) {
+            assertEquals(1, meterRegistry.get("jwt.filter").tag("result", result).timer().count());
+        }
+    }
+
+    @Test
+    public void testDatabaseModeUsesCurrentRoles() throws Exception {
+        String token = jwtService.generateToken(user);
+        User demoted = new User();
+        demoted.setUsername("alice");
+        demoted.setRoles(List.of("USER"));
+        when(userService.getUserByUsername("alice")).thenReturn(Optional.of(demoted));
+
+        Authentication authentication = filter(false, token);
+
+        assertEquals(List.of("ROLE_USER"),
+                authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList());
+    }
+
+    private Authentication filter(boolean stateless, String token) throws Exception {
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtService, (request, response, handler, ex) -> null,
+                userService, tokenVersionCache, stateless, meterRegistry);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/models");
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+}
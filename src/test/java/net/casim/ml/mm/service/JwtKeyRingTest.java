@@ -0,0 +1,201 @@
+package net.casim.ml.mm.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.casim.ml.mm.data.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class JwtKeyRingTest {
+
+    private static final long TOKEN_LIFETIME = 3_600_000;
+
+    @TempDir
+    Path tempDir;
+
+    private final List<JwtKeyRing> keyRings = new ArrayList<>();
+    private User user;
+
+    @BeforeEach
+    public void setUp() {
+        user = new User();
+        user.setUsername("alice");
+        user.setRoles(List.of("ADMIN"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        keyRings.forEach(JwtKeyRing::shutdown);
+    }
+
+    @Test
+    public void testTokensSignedBeforeRotationVerifyUntilTheirKeyIsDropped() {
+        JwtKeyRing keyRing = keyRing("ES256", "");
+        JwtService jwtService = new JwtService(keyRing, TOKEN_LIFETIME, 100, new SimpleMeterRegistry());
+        String oldToken = jwtService.generateToken(user);
+        String oldKid = keyRing.activeKey().getKid();
+
+        Instant now = Instant.now();
+        keyRing.rotate(now);
+        String newToken = jwtService.generateToken(user);
+
+        assertNotEquals(oldKid, keyRing.activeKey().getKid());
+        assertEquals("alice", jwtService.parseClaims(oldToken).getSubject());
+        assertEquals("alice", jwtService.parseClaims(newToken).getSubject());
+
+        keyRing.rotate(now.plusMillis(TOKEN_LIFETIME + 1));
+        assertNull(keyRing.verificationKey(oldKid));
+        assertThrows(JwtException.class, () -> jwtService.parseClaims(oldToken));
+        assertEquals("alice", jwtService.parseClaims(newToken).getSubject());
+    }
+
+    @Test
+    public void testJwksPublishesNextKeyBeforeItSigns() throws Exception {
+        JwtKeyRing keyRing = keyRing("RS256", "");
+        String activeKid = keyRing.activeKey().getKid();
+        String tag = keyRing.getJwksTag();
+
+        JsonNode keys = new ObjectMapper().readTree(keyRing.getJwks()).get("keys");
+        assertEquals(2, keys.size());
+        assertEquals("RSA", keys.get(0).get("kty").asText());
+        assertEquals("RS256", keys.get(0).get("alg").asText());
+        assertFalse(keyRing.getJwks().contains("\"d\""));
+
+        String nextKid = null;
+        for (JsonNode key : keys) {
+            if (!key.get("kid").asText().equals(activeKid)) {
+                nextKid = key.get("kid").asText();
+            }
+        }
+        keyRing.rotate();
+
+        assertEquals(nextKid, keyRing.activeKey().getKid());
+        assertEquals(3, new ObjectMapper().readTree(keyRing.getJwks()).get("keys").size());
+        assertNotEquals(tag, keyRing.getJwksTag());
+    }
+
+    @Test
+    public void testKeyFileKeepsTokensValidAcrossRestarts() {
+        String keyFile = tempDir.resolve("jwt-keys.json").toString();
+        JwtKeyRing first = keyRing("ES256", keyFile);
+        first.rotate();
+        String token = new JwtService(first, TOKEN_LIFETIME, 100, new SimpleMeterRegistry()).generateToken(user);
+
+        JwtKeyRing restarted = keyRing("ES256", keyFile);
+
+        assertEquals(first.activeKey().getKid(), restarted.activeKey().getKid());
+        assertEquals(first.getJwks(), restarted.getJwks());
+        assertEquals("alice", new JwtService(restarted, TOKEN_LIFETIME, 100, new SimpleMeterRegistry())
+                .parseClaims(token).getSubject());
+    }
+
+    @Test
+    public void testTokenFromAnotherAlgorithmIsRejected() {
+        String hmacToken = new JwtService(
+                keyRing("HS256", "c2VjcmV0LWtleS1mb3ItdGVzdHMtd2l0aC1lbm91Z2gtYml0cw=="),
+                TOKEN_LIFETIME, 100, new SimpleMeterRegistry()).generateToken(user);
+        JwtService es256Service = new JwtService(keyRing("ES256", ""), TOKEN_LIFETIME, 100, new SimpleMeterRegistry());
+
+        assertThrows(JwtException.class, () -> es256Service.verify(hmacToken));
+    }
+
+    @Test
+    public void testAsymmetricKeysNeedAKeyFile() {
+        assertThrows(IllegalStateException.class, () -> keyRing("RS256", "", true));
+        assertThrows(IllegalStateException.class,
+                () -> keyRing("ES256", tempDir.resolve("missing.json").toString(), false));
+        assertFalse(keyRing("HS256", "", true).isAsymmetric());
+    }
+
+    @Test
+    public void testInstancesSharingAKeyFileVerifyEachOthersTokens() {
+        String keyFile = tempDir.resolve("shared-keys.json").toString();
+        JwtKeyRing owner = keyRing("ES256", keyFile, true);
+        JwtKeyRing other = keyRing("ES256", keyFile, false);
+        JwtService ownerService = new JwtService(owner, TOKEN_LIFETIME, 100, new SimpleMeterRegistry());
+        JwtService otherService = new JwtService(other, TOKEN_LIFETIME, 100, new SimpleMeterRegistry());
+        assertEquals("alice", ownerService.parseClaims(otherService.generateToken(user)).getSubject());
+
+        // The second rotation activates a key the other instance has never seen, so it re-reads the file
+        owner.rotate();
+        owner.rotate();
+        String token = ownerService.generateToken(user);
+        assertEquals("alice", otherService.parseClaims(token).getSubject());
+        assertEquals(owner.activeKey().getKid(), other.activeKey().getKid());
+        assertFalse(other.reload());
+    }
+
+    @Test
+    public void testOnlyTheOwnerRotates() {
+        String keyFile = tempDir.resolve("shared-keys.json").toString();
+        JwtKeyRing owner = keyRing("RS256", keyFile, true);
+        JwtKeyRing other = keyRing("RS256", keyFile, false);
+        String activeKid = owner.activeKey().getKid();
+        Instant due = Instant.now().plus(Duration.ofHours(25));
+
+        other.maintain(due);
+        assertEquals(activeKid, other.activeKey().getKid());
+        assertEquals(activeKid, owner.activeKey().getKid());
+
+        owner.maintain(due);
+        assertNotEquals(activeKid, owner.activeKey().getKid());
+        other.maintain(due);
+        assertEquals(owner.activeKey().getKid(), other.activeKey().getKid());
+        assertEquals(owner.getJwks(), other.getJwks());
+    }
+
+    @Test
+    public void testKeyFileIsOnlyReadableByItsOwner() throws Exception {
+        Path keyFile = tempDir.resolve("keys.json");
+        JwtKeyRing keyRing = keyRing("ES256", keyFile.toString());
+        assumeTrue(Files.getFileStore(tempDir).supportsFileAttributeView(PosixFileAttributeView.class));
+        assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(keyFile));
+
+        keyRing.rotate();
+        assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(keyFile));
+    }
+
+    @Test
+    public void testRotationThatCannotBeSavedKeepsTheCurrentKeys() throws Exception {
+        Path keyFile = tempDir.resolve("keys.json");
+        JwtKeyRing keyRing = keyRing("ES256", keyFile.toString());
+        JwtService jwtService = new JwtService(keyRing, TOKEN_LIFETIME, 100, new SimpleMeterRegistry());
+        String activeKid = keyRing.activeKey().getKid();
+        byte[] saved = Files.readAllBytes(keyFile);
+        // A non-empty directory where the temporary file goes cannot be replaced
+        Files.createDirectories(tempDir.resolve("keys.json.tmp").resolve("blocked"));
+
+        assertThrows(IllegalStateException.class, keyRing::rotate);
+        assertEquals(activeKid, keyRing.activeKey().getKid());
+        assertArrayEquals(saved, Files.readAllBytes(keyFile));
+        assertEquals("alice", jwtService.parseClaims(jwtService.generateToken(user)).getSubject());
+    }
+
+    private JwtKeyRing keyRing(String algorithm, String keyFile) {
+        return keyRing(algorithm, keyFile.isEmpty() && !algorithm.equals("HS256")
+                ? tempDir.resolve(algorithm + "-" + keyRings.size() + ".json").toString() : keyFile, true);
+    }
+
+    private JwtKeyRing keyRing(String algorithm, String keyFile, boolean rotate) {
+        JwtKeyRing keyRing = new JwtKeyRing(algorithm, "c2VjcmV0LWtleS1mb3ItdGVzdHMtd2l0aC1lbm91Z2gtYml0cw==",
+                TOKEN_LIFETIME, Duration.ofHours(24), keyFile, rotate, Duration.ofMinutes(1));
+        keyRings.add(keyRing);
+        return keyRing;
+    }
+}
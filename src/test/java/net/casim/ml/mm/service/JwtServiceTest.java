@@ -0,0 +1,101 @@
+package net.casim.ml.mm.service;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.casim.ml.mm.data.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JwtServiceTest {
+
+    private static final String SECRET = "c2VjcmV0LWtleS1mb3ItdGVzdHMtd2l0aC1lbm91Z2gtYml0cw==";
+
+    private SimpleMeterRegistry meterRegistry;
+    private JwtService jwtService;
+    private User user;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        jwtService = new JwtService(new JwtKeyRing("HS256", SECRET, 60_000, Duration.ofHours(24), "", true,
+                Duration.ofMinutes(1)), 60_000, 100,
+                meterRegistry);
+        user = new User();
+        user.setUsername("alice");
+        user.setRoles(List.of("ADMIN"));
+    }
+
+    @Test
+    public void testVerifyReturnsClaimsAndCachesToken() {
+        String token = jwtService.generateToken(user);
+
+        JwtService.VerifiedToken first = jwtService.verify(token);
+        JwtService.VerifiedToken second = jwtService.verify(token);
+
+        assertEquals("alice", first.getUsername());
+        assertEquals(List.of("ROLE_ADMIN"), first.getRoles());
+        assertSame(first, second);
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count());
+        assertTrue(jwtService.isTokenValid(token, user));
+    }
+
+    @Test
+    public void testTamperedTokenIsRejected() {
+        String token = jwtService.generateToken(user);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertThrows(JwtException.class, () -> jwtService.verify(tampered));
+    }
+
+    @Test
+    public void testExpiredTokenIsRejectedAndNotCached() {
+        MutableClock clock = new MutableClock(Instant.parse("2024-11-01T12:00:00.750Z"));
+        JwtService shortLived = new JwtService(new JwtKeyRing("HS256", SECRET, 1_000, Duration.ofHours(24), "", true,
+                Duration.ofMinutes(1)), 1_000,
+                100, new SimpleMeterRegistry(), clock);
+        String token = shortLived.generateToken(user);
+        assertEquals("alice", shortLived.verify(token).getUsername());
+
+        clock.advance(Duration.ofMillis(1_100));
+
+        assertThrows(ExpiredJwtException.class, () -> shortLived.verify(token));
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
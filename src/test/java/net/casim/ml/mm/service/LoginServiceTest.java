@@ -0,0 +1,94 @@
+package net.casim.ml.mm.service;
+
+import net.casim.ml.mm.data.User;
+import net.casim.ml.mm.exception.TooManyRequestsException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class LoginServiceTest {
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private PasswordEncoder passwordEncoder;
+
+    private LoginService loginService;
+    private User user;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        user = new User();
+        user.setUsername("testUser");
+        user.setPassword("encodedPassword");
+        when(userService.getUserByUsername("testUser")).thenReturn(Optional.of(user));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (loginService != null) {
+            loginService.shutdown();
+        }
+    }
+
+    @Test
+    public void testAuthenticateChecksPasswordOnHashingPool() throws Exception {
+        loginService = new LoginService(userService, passwordEncoder, 1, 10, 10, 10, 10, 10);
+        when(passwordEncoder.matches("password", "encodedPassword")).thenReturn(true);
+
+        assertEquals(Optional.of(user), loginService.authenticate("testUser", "password", "10.0.0.1").get());
+        assertEquals(Optional.empty(), loginService.authenticate("testUser", "wrong", "10.0.0.1").get());
+        assertEquals(Optional.empty(), loginService.authenticate("unknown", "password", "10.0.0.1").get());
+    }
+
+    @Test
+    public void testAuthenticateRejectsWhenHashingPoolIsSaturated() throws Exception {
+        loginService = new LoginService(userService, passwordEncoder, 1, 1, 100, 100, 100, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        when(passwordEncoder.matches(anyString(), anyString())).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return true;
+        });
+
+        CompletableFuture<Optional<User>> running = loginService.authenticate("testUser", "password", "10.0.0.1");
+        while (loginService.getQueuedChecks() > 0) {
+            Thread.onSpinWait();
+        }
+        CompletableFuture<Optional<User>> queued = loginService.authenticate("testUser", "password", "10.0.0.1");
+
+        assertThrows(TooManyRequestsException.class,
+                () -> loginService.authenticate("testUser", "password", "10.0.0.1"));
+        release.countDown();
+        assertTrue(running.get(10, TimeUnit.SECONDS).isPresent());
+        assertTrue(queued.get(10, TimeUnit.SECONDS).isPresent());
+    }
+
+    @Test
+    public void testAuthenticateRateLimitsPerUsernameAndAddress() {
+        loginService = new LoginService(userService, passwordEncoder, 1, 10, 2, 1, 4, 1);
+
+        loginService.authenticate("testUser", "password", "10.0.0.1");
+        loginService.authenticate("testUser", "password", "10.0.0.1");
+        TooManyRequestsException e = assertThrows(TooManyRequestsException.class,
+                () -> loginService.authenticate("testUser", "password", "10.0.0.1"));
+        assertTrue(e.getRetryAfter().getSeconds() > 0);
+
+        loginService.authenticate("otherUser", "password", "10.0.0.1");
+        assertThrows(TooManyRequestsException.class,
+                () -> loginService.authenticate("anotherUser", "password", "10.0.0.1"));
+        loginService.authenticate("anotherUser", "password", "10.0.0.2");
+    }
+}
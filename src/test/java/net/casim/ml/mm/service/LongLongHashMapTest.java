@@ -0,0 +1,51 @@
+package net.casim.ml.mm.service;
+
+import net.casim.ml.mm.utils.LongLongHashMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LongLongHashMapTest {
+
+    @Test
+    public void testCountsMatchHashMapThroughResizes() {
+        LongLongHashMap map = new LongLongHashMap();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 100_000; i++) {
+            long key = random.nextInt(20_000) - 10_000L;
+            map.addTo(key, 1);
+            expected.merge(key, 1L, Long::sum);
+        }
+
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, count) -> assertEquals(count, map.get(key)));
+        assertEquals(0, map.get(1_000_000));
+        assertFalse(map.containsKey(1_000_000));
+        assertTrue(map.containsKey(0));
+    }
+
+    @Test
+    public void testAddAllMergesCounts() {
+        LongLongHashMap a = new LongLongHashMap();
+        LongLongHashMap b = new LongLongHashMap(1000);
+        a.addTo(1, 2);
+        a.addTo(0, 1);
+        b.addTo(1, 3);
+        b.addTo(Long.MIN_VALUE, 5);
+
+        a.addAll(b);
+
+        assertEquals(3, a.size());
+        assertEquals(5, a.get(1));
+        assertEquals(1, a.get(0));
+        assertEquals(5, a.get(Long.MIN_VALUE));
+        long[] sum = new long[1];
+        a.forEach((key, value) -> sum[0] += value);
+        assertEquals(11, sum[0]);
+    }
+}
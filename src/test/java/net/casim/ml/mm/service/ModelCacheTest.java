@@ -0,0 +1,87 @@
+package net.casim.ml.mm.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.casim.ml.mm.data.LLMModel;
+import net.casim.ml.mm.data.TrainingData;
+import net.casim.ml.mm.data.response.TrainingStatusEvent;
+import net.casim.ml.mm.repository.ModelRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ModelCacheTest {
+
+    private final ModelRepository modelRepository = mock(ModelRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ModelCache modelCache = new ModelCache(modelRepository, Duration.ofMinutes(1), 100, meterRegistry);
+    private final UUID modelId = UUID.randomUUID();
+    private LLMModel model;
+
+    @BeforeEach
+    public void setUp() {
+        model = model("Not Trained");
+        when(modelRepository.findDetachedById(modelId)).thenReturn(Optional.of(model));
+    }
+
+    @Test
+    public void testRepeatedReadsHitTheCache() {
+        for (int i = 0; i < 3; i++) {
+            assertSame(model, modelCache.get(modelId).orElseThrow());
+        }
+
+        verify(modelRepository, times(1)).findDetachedById(modelId);
+        assertEquals(2, meterRegistry.get("cache.gets").tags("cache", "models.metadata", "result", "hit")
+                .functionCounter().count());
+        assertEquals(1, meterRegistry.get("cache.gets").tags("cache", "models.metadata", "result", "miss")
+                .functionCounter().count());
+    }
+
+    @Test
+    public void testStatusEventsAndUploadsInvalidate() {
+        modelCache.get(modelId);
+        modelCache.onTrainingStatus(TrainingStatusEvent.progress(modelId, "Training", 50));
+        modelCache.get(modelId);
+        verify(modelRepository, times(1)).findDetachedById(modelId);
+
+        LLMModel trained = model("Trained");
+        when(modelRepository.findDetachedById(modelId)).thenReturn(Optional.of(trained));
+        modelCache.onTrainingStatus(TrainingStatusEvent.status(modelId, "Trained", 100, 90.0));
+        assertEquals("Trained", modelCache.get(modelId).orElseThrow().getStatus());
+
+        TrainingData trainingData = new TrainingData();
+        trainingData.setModel(trained);
+        modelCache.onTrainingDataStored(new TrainingDataStoredEvent(trainingData));
+        modelCache.get(modelId);
+        verify(modelRepository, times(3)).findDetachedById(modelId);
+    }
+
+    @Test
+    public void testReloadBypassesAndRefreshesTheCache() {
+        modelCache.get(modelId);
+        LLMModel trained = model("Trained");
+        when(modelRepository.findDetachedById(modelId)).thenReturn(Optional.of(trained));
+
+        assertSame(trained, modelCache.reload(modelId).orElseThrow());
+        assertSame(trained, modelCache.get(modelId).orElseThrow());
+        verify(modelRepository, times(2)).findDetachedById(modelId);
+
+        when(modelRepository.findDetachedById(modelId)).thenReturn(Optional.empty());
+        assertTrue(modelCache.reload(modelId).isEmpty());
+        assertTrue(modelCache.get(modelId).isEmpty());
+        assertTrue(modelCache.get(modelId).isEmpty());
+        verify(modelRepository, times(5)).findDetachedById(modelId);
+    }
+
+    private LLMModel model(String status) {
+        LLMModel model = new LLMModel();
+        model.setId(modelId);
+        model.setStatus(status);
+        return model;
+    }
+}
@@ -0,0 +1,178 @@
+package net.casim.ml.mm.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.casim.ml.mm.data.LLMModel;
+import net.casim.ml.mm.data.ModelLayer;
+import net.casim.ml.mm.data.response.TrainingStatusEvent;
+import net.casim.ml.mm.exception.ResourceNotFoundException;
+import net.casim.ml.mm.repository.ModelRepository;
+import net.casim.ml.mm.training.Prediction;
+import net.casim.ml.mm.training.TrainedModel;
+import net.casim.ml.mm.training.TrainingEngine;
+import net.casim.ml.mm.training.TrainingEngines;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class ModelRegistryTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ModelRepository modelRepository = mock(ModelRepository.class);
+    private final ModelTrainer modelTrainer = mock(ModelTrainer.class);
+    private final TrainingEngine engine = mock(TrainingEngine.class);
+    private final AtomicInteger loads = new AtomicInteger();
+    private final CountDownLatch loadStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseLoad = new CountDownLatch(1);
+    private ModelRegistry registry;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        when(engine.getName()).thenReturn("test");
+        when(engine.getSupportedLayers()).thenReturn(Set.of(ModelLayer.TEXT_CLASSIFIER));
+        when(modelRepository.findWithLayersById(any())).thenAnswer(invocation -> {
+            LLMModel model = new LLMModel();
+            model.setId(invocation.getArgument(0));
+            model.setName("model");
+            model.setLayers(List.of(ModelLayer.TEXT_CLASSIFIER));
+            return Optional.of(model);
+        });
+        when(modelTrainer.artifactPath(any(), any()))
+                .thenAnswer(invocation -> tempDir.resolve(invocation.getArgument(0).toString() + ".bin"));
+        when(engine.load(any())).thenAnswer(invocation -> {
+            int load = loads.incrementAndGet();
+            loadStarted.countDown();
+            releaseLoad.await(10, TimeUnit.SECONDS);
+            return fixedModel("label" + load, 600);
+        });
+        registry = new ModelRegistry(modelRepository, new TrainingEngines(List.of(engine)), modelTrainer,
+                DataSize.ofBytes(1000), 2, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        registry.shutdown();
+    }
+
+    @Test
+    public void testConcurrentPredictionsLoadModelOnce() throws Exception {
+        UUID modelId = trainedModel();
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Prediction>> predictions = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                predictions.add(clients.submit(() -> registry.predict(modelId, "text")));
+            }
+            assertTrue(loadStarted.await(10, TimeUnit.SECONDS));
+            releaseLoad.countDown();
+            for (Future<Prediction> prediction : predictions) {
+                assertEquals("label1", prediction.get(10, TimeUnit.SECONDS).getLabel());
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+
+        assertEquals("label1", registry.predict(modelId, "text").getLabel());
+        assertEquals(1, loads.get());
+        verify(modelRepository, times(1)).findWithLayersById(modelId);
+    }
+
+    @Test
+    public void testTrainingAndEvictionReloadModel() throws Exception {
+        releaseLoad.countDown();
+        UUID modelId = trainedModel();
+        assertEquals("label1", registry.predict(modelId, "text").getLabel());
+
+        registry.onTrainingStatus(TrainingStatusEvent.progress(modelId, "Being Trained", 50));
+        registry.onTrainingStatus(TrainingStatusEvent.status(modelId, "Training Failed", 0, null));
+        assertEquals("label1", registry.predict(modelId, "text").getLabel());
+
+        registry.onTrainingStatus(TrainingStatusEvent.status(modelId, "Trained", 100, 90.0));
+        assertEquals("label2", registry.predict(modelId, "text").getLabel());
+
+        registry.evict(modelId);
+        assertEquals("label3", registry.predict(modelId, "text").getLabel());
+    }
+
+    @Test
+    public void testLoadedModelsAreBoundedBySize() throws Exception {
+        releaseLoad.countDown();
+        UUID first = trainedModel();
+        UUID second = trainedModel();
+        registry.predict(first, "text");
+        registry.predict(second, "text");
+
+        // Weights are applied and evictions run on the loader threads, after the predictions return
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (registry.getLoadedModels() > 1 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, registry.getLoadedModels());
+    }
+
+    @Test
+    public void testUntrainedOrMissingModelIsNotLoaded() throws Exception {
+        releaseLoad.countDown();
+        UUID modelId = UUID.randomUUID();
+        assertThrows(IllegalStateException.class, () -> registry.predict(modelId, "text"));
+
+        Files.createFile(tempDir.resolve(modelId + ".bin"));
+        assertEquals("label1", registry.predict(modelId, "text").getLabel());
+
+        UUID missing = UUID.randomUUID();
+        when(modelRepository.findWithLayersById(missing)).thenReturn(Optional.empty());
+        assertThrows(ResourceNotFoundException.class, () -> registry.predict(missing, "text"));
+    }
+
+    @Test
+    public void testFailedLoadIsNotCached() throws Exception {
+        releaseLoad.countDown();
+        UUID modelId = trainedModel();
+        when(engine.load(any())).thenThrow(new IllegalStateException("corrupt artifact"))
+                .thenReturn(fixedModel("label", 100));
+
+        assertThrows(IllegalStateException.class, () -> registry.predict(modelId, "text"));
+        assertEquals("label", registry.predict(modelId, "text").getLabel());
+    }
+
+    private UUID trainedModel() throws Exception {
+        UUID modelId = UUID.randomUUID();
+        Files.createFile(tempDir.resolve(modelId + ".bin"));
+        return modelId;
+    }
+
+    private static TrainedModel fixedModel(String label, long size) {
+        return new TrainedModel() {
+            @Override
+            public Prediction predict(String text) {
+                return new Prediction(label, 1);
+            }
+
+            @Override
+            public long getSizeInBytes() {
+                return size;
+            }
+        };
+    }
+}
@@ -0,0 +1,164 @@
+package net.casim.ml.mm.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.casim.ml.mm.config.QueryCountInspector;
+import net.casim.ml.mm.data.LLMModel;
+import net.casim.ml.mm.data.ModelLayer;
+import net.casim.ml.mm.data.TrainingData;
+import net.casim.ml.mm.data.TrainingResults;
+import net.casim.ml.mm.data.response.ModelSummary;
+import net.casim.ml.mm.repository.ModelRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+public class ModelRepositoryTest {
+
+    @Autowired
+    private ModelRepository modelRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeEach
+    public void setUp() {
+        createModels(25);
+    }
+
+    @Test
+    public void testKeysetPagesCoverAllModelsOnce() {
+        List<UUID> seen = new ArrayList<>();
+        UUID after = null;
+        List<ModelSummary> page;
+        do {
+            page = modelRepository.findSummaries(null, null, after, 10);
+            page.forEach(summary -> seen.add(summary.getId()));
+            after = page.isEmpty() ? null : page.get(page.size() - 1).getId();
+        } while (page.size() == 10);
+
+        assertEquals(25, seen.size());
+        assertEquals(25, new HashSet<>(seen).size());
+    }
+
+    @Test
+    public void testSummariesFilterByStatusAndLayer() {
+        assertEquals(5, modelRepository.findSummaries("Trained", null, null, 100).size());
+        assertEquals(13, modelRepository.findSummaries(null, ModelLayer.TEXT_CLASSIFIER, null, 100).size());
+        assertEquals(12, modelRepository.countSummaries(null, ModelLayer.OPTICAL_RECOGNIZER));
+        assertEquals(3, modelRepository.countSummaries("Trained", ModelLayer.TEXT_CLASSIFIER));
+    }
+
+    @Test
+    public void testListingModelsUsesConstantNumberOfStatements() throws Exception {
+        long statementsFor25 = statementsToSerializeAllModels();
+        createModels(75);
+        long statementsFor100 = statementsToSerializeAllModels();
+
+        assertEquals(4, statementsFor25);
+        assertEquals(statementsFor25, statementsFor100);
+    }
+
+    @Test
+    public void testDetachedModelSerializesWithoutStatements() throws Exception {
+        entityManager.flush();
+        entityManager.clear();
+        UUID id = modelRepository.findSummaries(null, ModelLayer.TEXT_CLASSIFIER, null, 1).get(0).getId();
+
+        LLMModel model = modelRepository.findDetachedById(id).orElseThrow();
+        QueryCountInspector.reset();
+        String json = objectMapper.writeValueAsString(model);
+
+        assertEquals(0, QueryCountInspector.currentCount());
+        assertFalse(entityManager.getEntityManager().contains(model));
+        assertTrue(json.contains("TEXT_CLASSIFIER"));
+        assertTrue(json.contains("data-"));
+        assertTrue(modelRepository.findDetachedById(UUID.randomUUID()).isEmpty());
+    }
+
+    @Test
+    public void testTrainingResultsAreNotDecodedOnLoadFlushOrSerialization() throws Exception {
+        LLMModel model = new LLMModel();
+        model.setName("Trained model");
+        model.setTrainingResults(TrainingResults.of(Map.of("accuracy", 0.9, "perClass",
+                Map.of("spam", Map.of("precision", 0.8, "recall", 0.7, "f1", 0.75, "support", 12)))));
+        UUID id = modelRepository.save(model).getId();
+        entityManager.flush();
+        entityManager.clear();
+
+        TrainingResults results = modelRepository.findById(id).orElseThrow().getTrainingResults();
+        QueryCountInspector.reset();
+        entityManager.flush();
+        assertEquals(0, QueryCountInspector.currentCount());
+        String json = objectMapper.writeValueAsString(modelRepository.findById(id).orElseThrow());
+
+        assertFalse(results.isDecoded());
+        assertTrue(json.contains("\"support\":12"));
+        assertEquals(0.9, results.getAccuracy());
+        assertEquals(12, results.getPerClass().get("spam").getSupport());
+        assertFalse(results.isDecoded());
+        assertTrue(modelRepository.findDetachedById(modelRepository.findAll().stream()
+                .filter(m -> m.getName().startsWith("Model")).findFirst().orElseThrow().getId())
+                .orElseThrow().getTrainingResults().isEmpty());
+    }
+
+    @Test
+    public void testTrainingResultsLargerThanAVarbinaryAreStored() {
+        // The engine reports on at most 100 classes, but their labels can be of any length
+        Map<String, Object> perClass = new LinkedHashMap<>();
+        for (int i = 0; i < 100; i++) {
+            perClass.put(i + "-" + "label".repeat(200), Map.of("precision", 0.8, "recall", 0.7, "f1", 0.75,
+                    "support", i));
+        }
+        LLMModel model = modelRepository.save(new LLMModel());
+        entityManager.flush();
+        model.setStatus("Trained");
+        model.setTrainingResults(TrainingResults.of(Map.of("accuracy", 0.9, "perClass", perClass)));
+        assertTrue(model.getTrainingResults().encode(TrainingResults.Encoding.JSON).length > 65536);
+        entityManager.flush();
+        entityManager.clear();
+
+        TrainingResults results = modelRepository.findById(model.getId()).orElseThrow().getTrainingResults();
+        assertEquals(100, results.getPerClass().size());
+        assertEquals(99, results.getPerClass().get("99-" + "label".repeat(200)).getSupport());
+        assertEquals(0.9, results.getAccuracy());
+    }
+
+    private long statementsToSerializeAllModels() throws Exception {
+        entityManager.flush();
+        entityManager.clear();
+        QueryCountInspector.reset();
+        objectMapper.writeValueAsString(modelRepository.findAll());
+        return QueryCountInspector.currentCount();
+    }
+
+    private void createModels(int count) {
+        for (int i = 0; i < count; i++) {
+            LLMModel model = new LLMModel();
+            model.setName("Model " + i);
+            model.setStatus(i % 5 == 0 ? "Trained" : "Not Trained");
+            model.setLayers(new ArrayList<>(i % 2 == 0
+                    ? List.of(ModelLayer.TEXT_CLASSIFIER)
+                    : List.of(ModelLayer.VISUAL_CLASSIFIER, ModelLayer.OPTICAL_RECOGNIZER)));
+            modelRepository.save(model);
+
+            TrainingData trainingData = new TrainingData();
+            trainingData.setName("data-" + i + ".csv");
+            trainingData.setModel(model);
+            entityManager.persist(trainingData);
+        }
+    }
+}
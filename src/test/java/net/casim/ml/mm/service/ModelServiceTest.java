@@ -7,14 +7,18 @@ import net.casim.ml.mm.data.request.CreateModelRequest;
 import net.casim.ml.mm.exception.ResourceNotFoundException;
 import net.casim.ml.mm.repository.ModelRepository;
 import net.casim.ml.mm.repository.TrainingDataRepository;
+import net.casim.ml.mm.training.TrainingEngine;
+import net.casim.ml.mm.training.TrainingEngines;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -28,6 +32,30 @@ public class ModelServiceTest {
     @Mock
     private TrainingDataRepository trainingDataRepository;
 
+    @Mock
+    private TrainingScheduler trainingScheduler;
+
+    @Mock
+    private TrainingStatusStreamService trainingStatusStreamService;
+
+    @Mock
+    private FileUploadService fileUploadService;
+
+    @Mock
+    private ModelTrainer modelTrainer;
+
+    @Mock
+    private ModelRegistry modelRegistry;
+
+    @Mock
+    private PredictionBatcher predictionBatcher;
+
+    @Mock
+    private ModelCache modelCache;
+
+    @Spy
+    private TrainingEngines trainingEngines = new TrainingEngines(List.of(textEngine()));
+
     @InjectMocks
     private ModelService modelService;
 
@@ -43,6 +71,7 @@ public class ModelServiceTest {
         model.setId(modelId);
         model.setName("Test Model");
         model.setStatus("Not Trained");
+        model.setLayers(List.of(ModelLayer.TEXT_CLASSIFIER));
 
         // Set up TrainingData associated with the model
         trainingData = new TrainingData();
@@ -72,43 +101,114 @@ public class ModelServiceTest {
         assertEquals("Test Model", createdModel.getName());
         assertEquals("Not Trained", createdModel.getStatus());
         verify(modelRepository, times(1)).save(any(LLMModel.class));
+        verify(modelCache).invalidate(modelId);
     }
 
     @Test
     public void testGetModelByIdSuccess() {
-        when(modelRepository.findById(modelId)).thenReturn(Optional.of(model));
+        when(modelCache.get(modelId)).thenReturn(Optional.of(model));
         LLMModel foundModel = modelService.getModelById(modelId);
 
         assertNotNull(foundModel);
         assertEquals("Test Model", foundModel.getName());
-        verify(modelRepository, times(1)).findById(modelId);
+        verify(modelCache, times(1)).get(modelId);
+        verifyNoInteractions(modelRepository);
     }
 
     @Test
     public void testGetModelByIdNotFound() {
-        when(modelRepository.findById(modelId)).thenReturn(Optional.empty());
+        when(modelCache.get(modelId)).thenReturn(Optional.empty());
         assertThrows(ResourceNotFoundException.class, () -> modelService.getModelById(modelId));
-        verify(modelRepository, times(1)).findById(modelId);
+        verify(modelCache, times(1)).get(modelId);
     }
 
     @Test
-    public void testGetTrainingStatus() {
+    public void testGetModelByIdFreshReloadsCache() {
+        when(modelCache.reload(modelId)).thenReturn(Optional.of(model));
+
+        assertSame(model, modelService.getModelById(modelId, true));
+        verify(modelCache, times(1)).reload(modelId);
+        verify(modelCache, never()).get(modelId);
+    }
+
+    @Test
+    public void testGetModelForUpdateBypassesCache() {
         when(modelRepository.findById(modelId)).thenReturn(Optional.of(model));
+
+        assertSame(model, modelService.getModelForUpdate(modelId));
+        verifyNoInteractions(modelCache);
+
+        when(modelRepository.findById(modelId)).thenReturn(Optional.empty());
+        assertThrows(ResourceNotFoundException.class, () -> modelService.getModelForUpdate(modelId));
+    }
+
+    @Test
+    public void testGetTrainingStatus() {
+        when(modelCache.get(modelId)).thenReturn(Optional.of(model));
         String status = modelService.getTrainingStatus(modelId);
 
         assertEquals("Not Trained", status);
-        verify(modelRepository, times(1)).findById(modelId);
+        verify(modelCache, times(1)).get(modelId);
+    }
+
+    @Test
+    public void testTrainModel() {
+        when(modelCache.get(modelId)).thenReturn(Optional.of(model));
+        when(trainingScheduler.submit(modelId, 0, false)).thenReturn(TrainingScheduler.Submission.QUEUED);
+
+        assertEquals(TrainingScheduler.Submission.QUEUED, modelService.trainModel(modelId));
+        verify(trainingScheduler, times(1)).submit(modelId, 0, false);
+    }
+
+    @Test
+    public void testTrainModelNotFound() {
+        when(modelCache.get(modelId)).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> modelService.trainModel(modelId));
+        verify(trainingScheduler, never()).submit(any(), anyInt(), anyBoolean());
+    }
+
+    @Test
+    public void testTrainModelWithoutAnEngineForItsLayersIsRejected() {
+        model.setLayers(List.of(ModelLayer.VISUAL_CLASSIFIER, ModelLayer.OPTICAL_RECOGNIZER));
+        when(modelCache.get(modelId)).thenReturn(Optional.of(model));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> modelService.trainModel(modelId));
+        assertTrue(e.getMessage().contains("TEXT_CLASSIFIER"));
+        verify(trainingScheduler, never()).submit(any(), anyInt(), anyBoolean());
+    }
+
+    @Test
+    public void testStreamTrainingStatusStartsWithCurrentStatus() {
+        when(modelCache.get(modelId)).thenReturn(Optional.of(model));
+
+        modelService.streamTrainingStatus(modelId);
+
+        verify(trainingStatusStreamService, times(1)).subscribe(eq(modelId),
+                argThat(event -> "Not Trained".equals(event.getStatus()) && event.getProgress() == 0));
     }
 
     @Test
-    public void testTrainModel() throws Exception {
+    public void testDeleteModelReleasesBlobs() {
+        trainingData.setContentHash("a".repeat(64));
         when(modelRepository.findById(modelId)).thenReturn(Optional.of(model));
-        when(trainingDataRepository.findByModelId(modelId)).thenReturn(Optional.of(trainingData));
+        when(trainingDataRepository.findAllByModelId(modelId)).thenReturn(List.of(trainingData));
+
+        modelService.deleteModel(modelId);
 
-        modelService.trainModel(modelId);
+        verify(trainingScheduler).cancel(modelId);
+        verify(trainingDataRepository).deleteAll(List.of(trainingData));
+        verify(modelRepository).delete(model);
+        verify(fileUploadService).release(List.of("a".repeat(64)));
+        verify(modelTrainer).deleteArtifacts(modelId);
+        verify(modelRegistry).evict(modelId);
+        verify(modelCache).invalidate(modelId);
+    }
 
-        Thread.sleep(100); // Small wait for async to kick off
-        verify(modelRepository, atLeastOnce()).save(model);
-        verify(trainingDataRepository, atLeastOnce()).save(trainingData);
+    private static TrainingEngine textEngine() {
+        TrainingEngine engine = mock(TrainingEngine.class);
+        when(engine.getName()).thenReturn("text");
+        when(engine.getSupportedLayers()).thenReturn(Set.of(ModelLayer.TEXT_CLASSIFIER));
+        return engine;
     }
 }
@@ -0,0 +1,288 @@
+package net.casim.ml.mm.service;
+
+import net.casim.ml.mm.data.ModelLayer;
+import net.casim.ml.mm.data.TrainingData;
+import net.casim.ml.mm.dataset.DatasetReader;
+import net.casim.ml.mm.training.ColumnarDataset;
+import net.casim.ml.mm.training.LabeledTextReader;
+import net.casim.ml.mm.training.NaiveBayesTextEngine;
+import net.casim.ml.mm.training.Prediction;
+import net.casim.ml.mm.training.TrainedModel;
+import net.casim.ml.mm.training.TrainingEngine;
+import net.casim.ml.mm.training.TrainingEngines;
+import net.casim.ml.mm.training.TrainingRequest;
+import net.casim.ml.mm.training.TrainingResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NaiveBayesTextEngineTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final NaiveBayesTextEngine engine = new NaiveBayesTextEngine(2);
+
+    @Test
+    public void testTrainReportsMetricsFromHeldOutRows() throws Exception {
+        StringBuilder csv = new StringBuilder("label,text\n");
+        for (int i = 0; i < 500; i++) {
+            csv.append("sports,\"The team won the match, score ").append(i).append("\"\n");
+            csv.append("finance,Shares and bonds rallied as the market closed ").append(i).append('\n');
+        }
+        TrainingData data = trainingData("news.csv", csv.toString());
+        List<Integer> progress = new ArrayList<>();
+
+        TrainingResult result = engine.train(request(data), progress::add);
+
+        Map<String, Object> metrics = result.getMetrics();
+        assertEquals(1.0, result.getAccuracy());
+        long evaluationRows = (Long) metrics.get("evaluationRows");
+        assertEquals(1000L, (Long) metrics.get("trainingRows") + evaluationRows);
+        assertTrue(evaluationRows > 150 && evaluationRows < 250, "held out " + evaluationRows);
+        assertEquals(2, metrics.get("classes"));
+        assertEquals(1.0, metrics.get("macroF1"));
+        assertTrue((Long) metrics.get("rowsPerSecond") > 0);
+        assertTrue(((Map<?, ?>) metrics.get("perClass")).containsKey("sports"));
+        assertFalse(progress.isEmpty());
+    }
+
+    @Test
+    public void testTrainReadsJsonLinesAndSkipsBadRows() throws Exception {
+        StringBuilder jsonl = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            jsonl.append("{\"label\":\"positive\",\"text\":\"great lovely excellent\"}\n");
+            jsonl.append("{\"label\":\"negative\",\"text\":\"awful terrible bad\"}\n");
+        }
+        jsonl.append("{\"label\":\"negative\"}\nnot json\n");
+
+        TrainingResult result = engine.train(request(trainingData("reviews.jsonl", jsonl.toString())), p -> { });
+
+        assertEquals(1.0, result.getAccuracy());
+        assertEquals(2L, result.getMetrics().get("skippedRows"));
+        assertEquals(6, result.getMetrics().get("vocabularySize"));
+    }
+
+    @Test
+    public void testResultDoesNotDependOnThreadCount() throws Exception {
+        StringBuilder tsv = new StringBuilder();
+        Random random = new Random(7);
+        while (tsv.length() < 6 * 1024 * 1024) {
+            int label = random.nextInt(3);
+            tsv.append("topic").append(label).append('\t');
+            for (int word = 0; word < 20; word++) {
+                tsv.append(' ').append(random.nextInt(10) < 3 ? "t" + label + "w" + random.nextInt(50) : "w" + random.nextInt(500));
+            }
+            tsv.append('\n');
+        }
+        TrainingData data = trainingData("topics.tsv", tsv.toString());
+        NaiveBayesTextEngine single = new NaiveBayesTextEngine(1);
+        NaiveBayesTextEngine parallel = new NaiveBayesTextEngine(4);
+        try {
+            Map<String, Object> expected = single.train(request(data), p -> { }).getMetrics();
+            Map<String, Object> actual = parallel.train(request(data), p -> { }).getMetrics();
+
+            assertEquals(4, expected.get("shards"));
+            assertEquals(6, actual.get("shards"));
+            for (String metric : List.of("trainingRows", "evaluationRows", "vocabularySize", "accuracy", "perClass")) {
+                assertEquals(expected.get(metric), actual.get(metric), metric);
+            }
+        } finally {
+            single.shutdown();
+            parallel.shutdown();
+        }
+    }
+
+    @Test
+    public void testColumnarDatasetTrainsTheSameModel() throws Exception {
+        StringBuilder csv = new StringBuilder("label,text\n");
+        Random random = new Random(11);
+        for (int i = 0; i < 150_000; i++) {
+            int label = random.nextInt(4);
+            csv.append(label == 3 ? "\"Ünïcode\"" : "c" + label).append(',');
+            csv.append(random.nextInt(50) == 0 ? "\"quoted, \"\"text\"\"\" " : "");
+            for (int word = 0; word < 6; word++) {
+                csv.append(random.nextInt(10) < 4 ? "L" + label + "W" + random.nextInt(40) : "wörd" + random.nextInt(300));
+                csv.append(word % 3 == 2 ? ", " : " ");
+            }
+            csv.append(random.nextInt(1000) == 0 ? "\n,\n" : "\n");
+        }
+        TrainingData data = trainingData("large.csv", csv.toString());
+        Map<String, Object> expected = engine.train(request(data), p -> { }).getMetrics();
+
+        Path directory = ColumnarDataset.directoryFor(Path.of(data.getFilePath()));
+        ColumnarDataset.Manifest manifest = ColumnarDataset.write(Path.of(data.getFilePath()), data.getName(), directory);
+        data.setColumnarPath(directory.toString());
+        List<Integer> progress = new ArrayList<>();
+        Map<String, Object> actual = engine.train(request(data), progress::add).getMetrics();
+
+        assertEquals(3, ColumnarDataset.open(directory).getBlockCount());
+        assertEquals(manifest.getRows(), (Long) actual.get("trainingRows") + (Long) actual.get("evaluationRows"));
+        assertEquals(0L, expected.get("columnarFiles"));
+        assertEquals(1L, actual.get("columnarFiles"));
+        assertFalse(progress.isEmpty());
+        for (String metric : List.of("trainingRows", "evaluationRows", "skippedRows", "classes", "vocabularySize",
+                "accuracy", "macroF1", "perClass")) {
+            assertEquals(expected.get(metric), actual.get(metric), metric);
+        }
+
+        // A dataset made from other content is ignored
+        data.setSize(data.getSize() + 1);
+        assertEquals(0L, engine.train(request(data), p -> { }).getMetrics().get("columnarFiles"));
+    }
+
+    @Test
+    public void testIncrementalTrainingMatchesFullTraining() throws Exception {
+        TrainingData first = trainingData("first.csv", corpus(new Random(3), 20_000));
+        TrainingData added = trainingData("added.csv", corpus(new Random(4), 2_000));
+        Path fullArtifact = tempDir.resolve("full/model.bin");
+        Path artifact = tempDir.resolve("incremental/model.bin");
+        Map<String, Object> full = engine.train(new TrainingRequest(UUID.randomUUID(), ModelLayer.TEXT_CLASSIFIER,
+                List.of(first, added), List.of(first, added), fullArtifact), p -> { }).getMetrics();
+        engine.train(new TrainingRequest(UUID.randomUUID(), ModelLayer.TEXT_CLASSIFIER, List.of(first), List.of(first),
+                artifact), p -> { });
+
+        Map<String, Object> incremental = engine.train(new TrainingRequest(UUID.randomUUID(),
+                ModelLayer.TEXT_CLASSIFIER, List.of(added, first), List.of(added), artifact), p -> { }).getMetrics();
+
+        assertEquals("full", full.get("mode"));
+        assertEquals("incremental", incremental.get("mode"));
+        assertEquals("all", incremental.get("evaluatedOn"));
+        long countedRows = (Long) incremental.get("countedRows");
+        assertTrue(countedRows > 1_500 && countedRows < 2_000, "counted " + countedRows);
+        for (String metric : List.of("trainingRows", "evaluationRows", "classes", "vocabularySize", "accuracy",
+                "macroF1", "perClass")) {
+            assertEquals(full.get(metric), incremental.get(metric), metric);
+        }
+        assertEquals(Files.size(fullArtifact), Files.size(artifact));
+    }
+
+    @Test
+    public void testIncrementalTrainingFallsBackToFullTraining() throws Exception {
+        TrainingData first = trainingData("first.csv", corpus(new Random(3), 2_000));
+        TrainingData second = trainingData("second.csv", corpus(new Random(4), 2_000));
+        TrainingData added = trainingData("added.csv", corpus(new Random(5), 500));
+        Path artifact = tempDir.resolve("model.bin");
+        engine.train(new TrainingRequest(UUID.randomUUID(), ModelLayer.TEXT_CLASSIFIER, List.of(first, second),
+                List.of(first, second), artifact), p -> { });
+
+        // The artifact counted a file that has since been deleted
+        Map<String, Object> metrics = engine.train(new TrainingRequest(UUID.randomUUID(), ModelLayer.TEXT_CLASSIFIER,
+                List.of(first, added), List.of(added), artifact), p -> { }).getMetrics();
+        assertEquals("full", metrics.get("mode"));
+        assertEquals(metrics.get("trainingRows"), metrics.get("countedRows"));
+        assertTrue(metrics.get("fullTrainingReason").toString().contains("changed"));
+
+        Files.write(artifact, new byte[]{1, 2, 3});
+        metrics = engine.train(new TrainingRequest(UUID.randomUUID(), ModelLayer.TEXT_CLASSIFIER,
+                List.of(first, added, second), List.of(second), artifact), p -> { }).getMetrics();
+        assertEquals("full", metrics.get("mode"));
+        assertTrue(metrics.get("fullTrainingReason").toString().contains("could not be read"));
+
+        // The corrupt artifact was replaced, so the next training continues from it
+        metrics = engine.train(new TrainingRequest(UUID.randomUUID(), ModelLayer.TEXT_CLASSIFIER,
+                List.of(first, added, second), List.of(), artifact), p -> { }).getMetrics();
+        assertEquals("incremental", metrics.get("mode"));
+        assertEquals(0L, metrics.get("countedRows"));
+        assertEquals("all", metrics.get("evaluatedOn"));
+    }
+
+    @Test
+    public void testLoadedModelPredictsFromArtifact() throws Exception {
+        TrainingData data = trainingData("topics.csv", corpus(new Random(5), 5_000));
+        Path artifact = tempDir.resolve("model/model.bin");
+        engine.train(new TrainingRequest(UUID.randomUUID(), ModelLayer.TEXT_CLASSIFIER, List.of(data), List.of(data),
+                artifact), p -> { });
+
+        TrainedModel model = engine.load(artifact);
+
+        Prediction prediction = model.predict("t2w4 T2W17 w3 w150");
+        assertEquals("topic2", prediction.getLabel());
+        assertTrue(prediction.getConfidence() > 0.5 && prediction.getConfidence() <= 1, "" + prediction.getConfidence());
+        assertEquals(1.0 / 3, model.predict("").getConfidence(), 0.05);
+        assertTrue(model.getSizeInBytes() > 16L * 230, "" + model.getSizeInBytes());
+    }
+
+    @Test
+    public void testReadersOverAdjacentRangesReadEveryLineOnce() throws Exception {
+        StringBuilder csv = new StringBuilder("label,text\r\n");
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String text = "row " + i + " x" + "y".repeat(i % 37);
+            csv.append(i % 2 == 0 ? "even" : "odd").append(',').append(text).append("\r\n");
+            expected.add(text);
+        }
+        Path file = Path.of(trainingData("rows.csv", csv.toString()).getFilePath());
+        long size = Files.size(file);
+
+        for (int ranges : new int[]{1, 2, 7, 64}) {
+            long[] boundaries = DatasetReader.split(size, ranges);
+            List<String> actual = new ArrayList<>();
+            for (int i = 0; i < boundaries.length - 1; i++) {
+                try (LabeledTextReader reader = new LabeledTextReader(file, "rows.csv", boundaries[i], boundaries[i + 1])) {
+                    while (reader.next()) {
+                        actual.add(reader.getText().toString());
+                    }
+                }
+            }
+            assertEquals(expected, actual, ranges + " ranges");
+        }
+    }
+
+    @Test
+    public void testTrainRejectsSingleLabel() throws Exception {
+        TrainingData data = trainingData("one.tsv", "spam\tbuy now\nspam\tcheap pills\nspam\tfree money\n");
+
+        assertThrows(IllegalArgumentException.class, () -> engine.train(request(data), p -> { }));
+    }
+
+    @Test
+    public void testEnginesAreSelectedByLayer() {
+        TrainingEngines engines = new TrainingEngines(List.of(engine));
+
+        TrainingEngines.Match match = engines.forLayers(List.of(ModelLayer.VISUAL_CLASSIFIER,
+                ModelLayer.TEXT_CLASSIFIER));
+        assertSame(engine, match.getEngine());
+        assertEquals(ModelLayer.TEXT_CLASSIFIER, match.getLayer());
+        assertThrows(IllegalStateException.class, () -> engines.forLayers(List.of(ModelLayer.OPTICAL_RECOGNIZER)));
+        assertThrows(IllegalStateException.class, () -> new TrainingEngines(List.<TrainingEngine>of(engine, engine)));
+    }
+
+    private static String corpus(Random random, int rows) {
+        StringBuilder csv = new StringBuilder("label,text\n");
+        for (int i = 0; i < rows; i++) {
+            int label = random.nextInt(3);
+            csv.append("topic").append(label).append(',');
+            for (int word = 0; word < 8; word++) {
+                csv.append(random.nextInt(10) < 3 ? "t" + label + "w" + random.nextInt(30) : "w" + random.nextInt(200))
+                        .append(' ');
+            }
+            csv.append('\n');
+        }
+        return csv.toString();
+    }
+
+    private TrainingData trainingData(String name, String content) throws Exception {
+        Path file = tempDir.resolve(name);
+        Files.writeString(file, content);
+        TrainingData data = new TrainingData();
+        data.setId(UUID.randomUUID());
+        data.setName(name);
+        data.setFilePath(file.toString());
+        data.setSize(Files.size(file));
+        return data;
+    }
+
+    private static TrainingRequest request(TrainingData data) {
+        return new TrainingRequest(UUID.randomUUID(), ModelLayer.TEXT_CLASSIFIER, List.of(data));
+    }
+}
@@ -0,0 +1,138 @@
+package net.casim.ml.mm.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.casim.ml.mm.training.Prediction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class PredictionBatcherTest {
+
+    private final ModelRegistry modelRegistry = mock(ModelRegistry.class);
+    private final UUID modelId = UUID.randomUUID();
+    private final List<List<String>> batches = new ArrayList<>();
+    private final ExecutorService clients = Executors.newFixedThreadPool(8);
+    private PredictionBatcher batcher;
+
+    @AfterEach
+    public void tearDown() {
+        clients.shutdownNow();
+        batcher.shutdown();
+    }
+
+    @Test
+    public void testConcurrentPredictionsRunInBatchesOfMaxSize() throws Exception {
+        echoRegistry();
+        batcher = new PredictionBatcher(modelRegistry, true, 4, Duration.ofHours(1), 1, new SimpleMeterRegistry());
+
+        List<Future<Prediction>> predictions = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            String text = "text" + i;
+            predictions.add(clients.submit(() -> batcher.predict(modelId, text)));
+        }
+
+        for (int i = 0; i < 8; i++) {
+            assertEquals("text" + i, predictions.get(i).get(10, TimeUnit.SECONDS).getLabel());
+        }
+        synchronized (batches) {
+            assertEquals(List.of(4, 4), batches.stream().map(List::size).toList());
+        }
+    }
+
+    @Test
+    public void testBatchRunsAfterMaxDelay() throws Exception {
+        echoRegistry();
+        batcher = new PredictionBatcher(modelRegistry, true, 64, Duration.ofMillis(10), 1, new SimpleMeterRegistry());
+
+        assertEquals("alone", clients.submit(() -> batcher.predict(modelId, "alone")).get(10, TimeUnit.SECONDS)
+                .getLabel());
+        assertEquals("again", batcher.predict(modelId, "again").getLabel());
+        assertEquals(List.of(List.of("alone"), List.of("again")), batches);
+    }
+
+    @Test
+    public void testFailedBatchFailsEveryPrediction() throws Exception {
+        when(modelRegistry.predict(eq(modelId), anyList())).thenThrow(new IllegalStateException("Not trained"));
+        batcher = new PredictionBatcher(modelRegistry, true, 2, Duration.ofHours(1), 1, new SimpleMeterRegistry());
+
+        Future<Prediction> first = clients.submit(() -> batcher.predict(modelId, "a"));
+        Future<Prediction> second = clients.submit(() -> batcher.predict(modelId, "b"));
+
+        for (Future<Prediction> prediction : List.of(first, second)) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> prediction.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+        }
+    }
+
+    @Test
+    public void testBatchThrowingAnErrorFailsEveryPrediction() throws Exception {
+        when(modelRegistry.predict(eq(modelId), anyList())).thenThrow(new NoClassDefFoundError("smile/Classifier"));
+        batcher = new PredictionBatcher(modelRegistry, true, 2, Duration.ofHours(1), 1, new SimpleMeterRegistry());
+
+        Future<Prediction> first = clients.submit(() -> batcher.predict(modelId, "a"));
+        Future<Prediction> second = clients.submit(() -> batcher.predict(modelId, "b"));
+
+        for (Future<Prediction> prediction : List.of(first, second)) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> prediction.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(NoClassDefFoundError.class, e.getCause());
+        }
+    }
+
+    @Test
+    public void testShutdownFailsRunningPredictions() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CompletableFuture<Void> release = new CompletableFuture<>();
+        when(modelRegistry.predict(eq(modelId), anyList())).thenAnswer(invocation -> {
+            running.countDown();
+            release.join();
+            return List.of();
+        });
+        batcher = new PredictionBatcher(modelRegistry, true, 64, Duration.ZERO, 1, new SimpleMeterRegistry());
+
+        Future<Prediction> prediction = clients.submit(() -> batcher.predict(modelId, "a"));
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        batcher.shutdown();
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> prediction.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        assertThrows(RejectedExecutionException.class, () -> batcher.predict(modelId, "b"));
+        release.complete(null);
+    }
+
+    @Test
+    public void testDisabledBatcherPredictsOnCallingThread() {
+        when(modelRegistry.predict(modelId, "text")).thenReturn(new Prediction("label", 0.9));
+        batcher = new PredictionBatcher(modelRegistry, false, 64, Duration.ZERO, 1, new SimpleMeterRegistry());
+
+        assertEquals("label", batcher.predict(modelId, "text").getLabel());
+        verify(modelRegistry, never()).predict(any(), anyList());
+    }
+
+    private void echoRegistry() {
+        when(modelRegistry.predict(eq(modelId), anyList())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(1);
+            synchronized (batches) {
+                batches.add(List.copyOf(texts));
+            }
+            return texts.stream().map(text -> new Prediction(text, 1)).toList();
+        });
+    }
+}
@@ -0,0 +1,87 @@
+package net.casim.ml.mm.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.casim.ml.mm.data.TrainingResults;
+import net.casim.ml.mm.utils.TrainingResultsConverter;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrainingResultsTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testJsonColumnIsServedWithoutDecoding() throws Exception {
+        TrainingResultsConverter converter = new TrainingResultsConverter();
+        byte[] column = converter.convertToDatabaseColumn(TrainingResults.of(metrics()));
+        assertEquals(objectMapper.writeValueAsString(metrics()), new String(column, StandardCharsets.UTF_8));
+
+        TrainingResults loaded = converter.convertToEntityAttribute(column);
+        assertSame(column, converter.convertToDatabaseColumn(loaded));
+        assertEquals(objectMapper.writeValueAsString(metrics()), objectMapper.writeValueAsString(loaded));
+        assertEquals(0.75, loaded.getMacroF1());
+        assertFalse(loaded.isDecoded());
+
+        assertEquals(metrics(), loaded.getMetrics());
+        assertTrue(loaded.isDecoded());
+        assertThrows(UnsupportedOperationException.class, () -> loaded.getMetrics().put("accuracy", 1.0));
+    }
+
+    @Test
+    public void testSmileColumnIsSmallerAndReadableWithEitherSetting() throws Exception {
+        TrainingResultsConverter smile = new TrainingResultsConverter(TrainingResults.Encoding.SMILE);
+        TrainingResultsConverter json = new TrainingResultsConverter(TrainingResults.Encoding.JSON);
+        byte[] smileColumn = smile.convertToDatabaseColumn(TrainingResults.of(metrics()));
+        byte[] jsonColumn = json.convertToDatabaseColumn(TrainingResults.of(metrics()));
+        assertTrue(smileColumn.length < jsonColumn.length);
+
+        TrainingResults loaded = json.convertToEntityAttribute(smileColumn);
+        assertEquals(objectMapper.writeValueAsString(metrics()), objectMapper.writeValueAsString(loaded));
+        assertEquals(new TrainingResults.ClassMetrics(0.5, 0.25, 0.333, 4), loaded.getPerClass().get("ham"));
+        assertFalse(loaded.isDecoded());
+        assertArrayEquals(jsonColumn, json.convertToDatabaseColumn(loaded));
+        assertEquals(loaded, smile.convertToEntityAttribute(jsonColumn));
+    }
+
+    @Test
+    public void testEmptyResults() throws Exception {
+        TrainingResultsConverter converter = new TrainingResultsConverter();
+        assertSame(TrainingResults.empty(), converter.convertToEntityAttribute(null));
+        assertSame(TrainingResults.empty(), TrainingResults.of(Map.of()));
+        assertNull(converter.convertToDatabaseColumn(TrainingResults.empty()));
+        assertEquals("{}", objectMapper.writeValueAsString(TrainingResults.empty()));
+        assertNull(TrainingResults.empty().getAccuracy());
+        assertTrue(TrainingResults.empty().getPerClass().isEmpty());
+        assertEquals(metrics(), objectMapper.readValue(objectMapper.writeValueAsString(metrics()),
+                TrainingResults.class).getMetrics());
+    }
+
+    private static Map<String, Object> metrics() {
+        Map<String, Object> spam = new LinkedHashMap<>();
+        spam.put("precision", 0.9);
+        spam.put("recall", 0.8);
+        spam.put("f1", 0.847);
+        spam.put("support", 10);
+        Map<String, Object> ham = new LinkedHashMap<>();
+        ham.put("precision", 0.5);
+        ham.put("recall", 0.25);
+        ham.put("f1", 0.333);
+        ham.put("support", 4);
+        Map<String, Object> perClass = new LinkedHashMap<>();
+        perClass.put("spam", spam);
+        perClass.put("ham", ham);
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("engine", "naive-bayes-text");
+        metrics.put("accuracy", 0.8);
+        metrics.put("macroF1", 0.75);
+        metrics.put("perClass", perClass);
+        metrics.put("confusionMatrix", List.of(List.of(8, 2), List.of(3, 1)));
+        return metrics;
+    }
+}
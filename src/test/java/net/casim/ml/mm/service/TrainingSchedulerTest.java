@@ -0,0 +1,257 @@
+package net.casim.ml.mm.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.casim.ml.mm.data.LLMModel;
+import net.casim.ml.mm.data.ModelLayer;
+import net.casim.ml.mm.data.TrainingJob;
+import net.casim.ml.mm.data.TrainingJobState;
+import net.casim.ml.mm.repository.TrainingJobRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class TrainingSchedulerTest {
+
+    @Autowired
+    private TrainingJobRepository jobRepository;
+
+    private ModelTrainer modelTrainer;
+    private final ModelCache modelCache = mock(ModelCache.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private TrainingScheduler scheduler;
+
+    @BeforeEach
+    public void setUp() {
+        modelTrainer = mock(ModelTrainer.class);
+        scheduler = newScheduler();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        scheduler.shutdown();
+        jobRepository.deleteAll();
+    }
+
+    @Test
+    public void testQueuedJobsRunByPriorityThenFifo() throws Exception {
+        UUID low1 = UUID.randomUUID();
+        UUID high = UUID.randomUUID();
+        UUID low2 = UUID.randomUUID();
+        List<UUID> order = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        doAnswer(invocation -> {
+            order.add(invocation.getArgument(0));
+            done.countDown();
+            return null;
+        }).when(modelTrainer).train(any(), anyBoolean());
+        LLMModel textModel = new LLMModel();
+        textModel.setLayers(List.of(ModelLayer.TEXT_CLASSIFIER));
+        when(modelCache.get(high)).thenReturn(Optional.of(textModel));
+
+        scheduler.submit(low1, 0);
+        Thread.sleep(5);
+        scheduler.submit(high, 5);
+        Thread.sleep(5);
+        scheduler.submit(low2, 0);
+        scheduler.start();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(high, low1, low2), order);
+        awaitState(low2, TrainingJobState.SUCCEEDED);
+        assertEquals(1, meterRegistry.get("training.job.wait").tag("layer", "TEXT_CLASSIFIER").timer().count());
+        assertEquals(2, meterRegistry.get("training.job.wait").tag("layer", "none").timer().count());
+        assertEquals(1, meterRegistry.get("training.job.run").tags("layer", "TEXT_CLASSIFIER", "outcome", "succeeded")
+                .timer().count());
+    }
+
+    @Test
+    public void testSubmitDeduplicatesByModel() {
+        UUID modelId = UUID.randomUUID();
+
+        assertEquals(TrainingScheduler.Submission.QUEUED, scheduler.submit(modelId, 0));
+        assertEquals(TrainingScheduler.Submission.ALREADY_QUEUED, scheduler.submit(modelId, 9));
+        assertTrue(scheduler.isQueuedOrRunning(modelId));
+        assertEquals(1, jobRepository.count());
+    }
+
+    @Test
+    public void testSubmitRejectsWhenQueueIsFull() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(TrainingScheduler.Submission.QUEUED, scheduler.submit(UUID.randomUUID(), 0));
+        }
+
+        assertEquals(TrainingScheduler.Submission.QUEUE_FULL, scheduler.submit(UUID.randomUUID(), 0));
+        assertEquals(3, scheduler.getStats().getQueued());
+        assertEquals(1, scheduler.getStats().getRejected());
+        assertEquals(3, meterRegistry.get("training.queue.depth").gauge().value());
+        assertEquals(0, meterRegistry.get("training.slots.busy").gauge().value());
+    }
+
+    @Test
+    public void testConcurrentSubmissionsFromTwoInstancesRespectLimits() throws Exception {
+        TrainingScheduler other = newScheduler();
+        UUID modelId = UUID.randomUUID();
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<TrainingScheduler.Submission>> sameModel = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                TrainingScheduler instance = i % 2 == 0 ? scheduler : other;
+                sameModel.add(clients.submit(() -> instance.submit(modelId, 0)));
+            }
+            assertEquals(1, count(sameModel, TrainingScheduler.Submission.QUEUED));
+            assertEquals(7, count(sameModel, TrainingScheduler.Submission.ALREADY_QUEUED));
+
+            List<Future<TrainingScheduler.Submission>> otherModels = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                TrainingScheduler instance = i % 2 == 0 ? scheduler : other;
+                otherModels.add(clients.submit(() -> instance.submit(UUID.randomUUID(), 0)));
+            }
+            assertEquals(2, count(otherModels, TrainingScheduler.Submission.QUEUED));
+            assertEquals(6, count(otherModels, TrainingScheduler.Submission.QUEUE_FULL));
+        } finally {
+            clients.shutdownNow();
+            other.shutdown();
+        }
+        assertEquals(3, jobRepository.countByState(TrainingJobState.QUEUED));
+    }
+
+    @Test
+    public void testJobIsClaimedOnlyOnce() {
+        scheduler.submit(UUID.randomUUID(), 0);
+        UUID jobId = jobRepository.findAll().get(0).getId();
+        Instant now = Instant.now();
+
+        assertEquals(1, jobRepository.claim(jobId, "instance-a", now, now.plusSeconds(30)));
+        assertEquals(0, jobRepository.claim(jobId, "instance-b", now, now.plusSeconds(30)));
+        assertEquals("instance-a", jobRepository.findById(jobId).orElseThrow().getLeaseOwner());
+    }
+
+    @Test
+    public void testExpiredLeasesAreRecovered() {
+        TrainingJob retried = runningJob(1, Instant.now().minusSeconds(5));
+        TrainingJob exhausted = runningJob(3, Instant.now().minusSeconds(5));
+        TrainingJob healthy = runningJob(1, Instant.now().plusSeconds(60));
+
+        assertEquals(2, scheduler.recoverExpiredLeases());
+
+        assertEquals(TrainingJobState.QUEUED, jobRepository.findById(retried.getId()).orElseThrow().getState());
+        assertEquals(TrainingJobState.FAILED, jobRepository.findById(exhausted.getId()).orElseThrow().getState());
+        assertEquals(TrainingJobState.RUNNING, jobRepository.findById(healthy.getId()).orElseThrow().getState());
+        verify(modelTrainer).resetInterrupted(retried.getModelId());
+        verify(modelTrainer).resetInterrupted(exhausted.getModelId());
+    }
+
+    @Test
+    public void testCancelFailsTheActiveJobsOfTheModel() {
+        UUID deleted = UUID.randomUUID();
+        UUID kept = UUID.randomUUID();
+        scheduler.submit(deleted, 0);
+        scheduler.submit(kept, 0);
+
+        assertEquals(1, scheduler.cancel(deleted));
+
+        assertFalse(scheduler.isQueuedOrRunning(deleted));
+        assertTrue(scheduler.isQueuedOrRunning(kept));
+        assertEquals(1, jobRepository.countByState(TrainingJobState.QUEUED));
+        TrainingJob cancelled = jobRepository.findAll().stream()
+                .filter(job -> job.getModelId().equals(deleted))
+                .findFirst().orElseThrow();
+        assertEquals(TrainingJobState.FAILED, cancelled.getState());
+        assertEquals("Model deleted", cancelled.getLastError());
+        assertNotNull(cancelled.getFinishedAt());
+    }
+
+    @Test
+    public void testCancelStopsTheRunningJobAndKeepsTheSlotUsable() throws Exception {
+        UUID deleted = UUID.randomUUID();
+        UUID next = UUID.randomUUID();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch nextTrained = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            if (invocation.getArgument(0).equals(deleted)) {
+                running.countDown();
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } else {
+                nextTrained.countDown();
+            }
+            return null;
+        }).when(modelTrainer).train(any(), anyBoolean());
+        scheduler.submit(deleted, 0);
+        scheduler.start();
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        assertEquals(1, scheduler.cancel(deleted));
+
+        verify(modelTrainer, timeout(5000)).deleteArtifacts(deleted);
+        verify(modelTrainer, never()).resetInterrupted(deleted);
+        assertEquals(TrainingJobState.FAILED, jobRepository.findAll().get(0).getState());
+        scheduler.submit(next, 0);
+        assertTrue(nextTrained.await(5, TimeUnit.SECONDS));
+        awaitState(next, TrainingJobState.SUCCEEDED);
+    }
+
+    private static long count(List<Future<TrainingScheduler.Submission>> submissions,
+                              TrainingScheduler.Submission expected) throws Exception {
+        long count = 0;
+        for (Future<TrainingScheduler.Submission> submission : submissions) {
+            if (submission.get(10, TimeUnit.SECONDS) == expected) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private TrainingScheduler newScheduler() {
+        return new TrainingScheduler(jobRepository, modelTrainer, modelCache, 1, 3,
+                Duration.ofSeconds(30), Duration.ofMillis(50), 3, meterRegistry);
+    }
+
+    private TrainingJob runningJob(int attempts, Instant leaseExpiresAt) {
+        TrainingJob job = new TrainingJob();
+        job.setModelId(UUID.randomUUID());
+        job.setState(TrainingJobState.RUNNING);
+        job.setAttempts(attempts);
+        job.setCreatedAt(Instant.now().minusSeconds(120));
+        job.setStartedAt(Instant.now().minusSeconds(90));
+        job.setLeaseOwner("crashed-instance");
+        job.setLeaseExpiresAt(leaseExpiresAt);
+        return jobRepository.save(job);
+    }
+
+    private void awaitState(UUID modelId, TrainingJobState state) throws InterruptedException {
+        Map<UUID, TrainingJobState> states = new ConcurrentHashMap<>();
+        for (int i = 0; i < 100; i++) {
+            jobRepository.findAll().forEach(job -> states.put(job.getModelId(), job.getState()));
+            if (states.get(modelId) == state) {
+                return;
+            }
+            Thread.sleep(20);
+        }
+        fail("Job for model " + modelId + " did not reach " + state);
+    }
+}
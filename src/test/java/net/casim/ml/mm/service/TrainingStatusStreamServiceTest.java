@@ -0,0 +1,72 @@
+package net.casim.ml.mm.service;
+
+import net.casim.ml.mm.data.response.TrainingStatusEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrainingStatusStreamServiceTest {
+
+    private final TrainingStatusStreamService service =
+            new TrainingStatusStreamService(Duration.ofMinutes(1), Duration.ofHours(1));
+    private final ExecutorService clients = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    public void tearDown() {
+        clients.shutdownNow();
+        service.shutdown();
+    }
+
+    @Test
+    public void testSubscriberJoiningWhileTheLastOneLeavesIsKept() throws Exception {
+        for (int i = 0; i < 2000; i++) {
+            UUID modelId = UUID.randomUUID();
+            // Completed, so the next event sent to it fails and drops it, emptying the model's subscribers
+            service.subscribe(modelId, event(modelId)).complete();
+
+            CyclicBarrier start = new CyclicBarrier(2);
+            Future<SseEmitter> joining = clients.submit(() -> {
+                start.await();
+                return service.subscribe(modelId, event(modelId));
+            });
+            Future<?> leaving = clients.submit(() -> {
+                start.await();
+                service.onTrainingStatus(event(modelId));
+                return null;
+            });
+            joining.get(10, TimeUnit.SECONDS);
+            leaving.get(10, TimeUnit.SECONDS);
+
+            assertEquals(1, service.subscriberCount(modelId), "subscribers of model " + i);
+        }
+    }
+
+    @Test
+    public void testLastUnsubscribeRemovesTheModel() {
+        UUID modelId = UUID.randomUUID();
+        service.subscribe(modelId, event(modelId)).complete();
+        SseEmitter open = service.subscribe(modelId, event(modelId));
+        assertEquals(2, service.subscriberCount(modelId));
+
+        service.onTrainingStatus(event(modelId));
+        assertEquals(1, service.subscriberCount(modelId));
+
+        open.complete();
+        service.onTrainingStatus(event(modelId));
+        assertEquals(0, service.subscriberCount(modelId));
+    }
+
+    private static TrainingStatusEvent event(UUID modelId) {
+        return TrainingStatusEvent.progress(modelId, "Training", 50);
+    }
+}
@@ -25,6 +25,9 @@ public class UserServiceTest {
     @Mock
     private BCryptPasswordEncoder passwordEncoder;
 
+    @Mock
+    private UserTokenVersionCache tokenVersionCache;
+
     @InjectMocks
     private UserService userService;
 
@@ -97,4 +100,27 @@ public class UserServiceTest {
         assertFalse(foundUser.isPresent());
         verify(userRepository, times(1)).findUserByUsername("unknownUser");
     }
+
+    @Test
+    public void testUpdateRolesInvalidatesIssuedTokens() {
+        when(userRepository.findUserByUsername("testUser")).thenReturn(Optional.of(user));
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        User updatedUser = userService.updateRoles("testUser", List.of("admin"));
+
+        assertEquals(List.of("ADMIN"), updatedUser.getRoles());
+        assertEquals(1, updatedUser.getTokenVersion());
+        verify(tokenVersionCache).invalidate("testUser");
+    }
+
+    @Test
+    public void testRevokeTokensBumpsTokenVersion() {
+        when(userRepository.findUserByUsername("testUser")).thenReturn(Optional.of(user));
+
+        userService.revokeTokens("testUser");
+        userService.revokeTokens("testUser");
+
+        assertEquals(2, user.getTokenVersion());
+        verify(tokenVersionCache, times(2)).invalidate("testUser");
+    }
 }